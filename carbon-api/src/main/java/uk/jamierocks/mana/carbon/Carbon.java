@@ -17,12 +17,12 @@
 package uk.jamierocks.mana.carbon;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.eventbus.EventBus;
 import com.sk89q.intake.dispatcher.Dispatcher;
 import uk.jamierocks.mana.carbon.irc.IRCManager;
 import uk.jamierocks.mana.carbon.module.ModuleManager;
-import uk.jamierocks.mana.carbon.plugin.PluginContainer;
 import uk.jamierocks.mana.carbon.plugin.PluginManager;
 import uk.jamierocks.mana.carbon.service.ServiceRegistry;
 
@@ -35,19 +35,44 @@ import uk.jamierocks.mana.carbon.service.ServiceRegistry;
 public abstract class Carbon {
 
     /**
-     * This will be forcefully overridden by Carbon upon its initialisation.
+     * The instance handed over upon construction, until it is moved into {@link Holder}.
      */
-    protected static final PluginContainer CONTAINER = null;
+    private static Carbon bootstrapInstance;
+
+    /**
+     * Creates Carbon, making it available through {@link #getCarbon()}.
+     *
+     * <p>Only one instance of Carbon may ever be created.</p>
+     *
+     * @throws IllegalStateException If Carbon has already been created, or
+     *     {@link #getCarbon()} was called before it was
+     * @since 2.0.0
+     */
+    protected Carbon() {
+        synchronized (Carbon.class) {
+            checkState(bootstrapInstance == null, "Carbon has already been initialised!");
+            bootstrapInstance = this;
+        }
+
+        // Holder is initialised here, rather than upon first use, so getCarbon() need check nothing
+        try {
+            checkState(Holder.INSTANCE == this, "Carbon has already been initialised!");
+        } catch (ExceptionInInitializerError | NoClassDefFoundError e) {
+            throw new IllegalStateException("Carbon.getCarbon() was called before Carbon was created!", e);
+        }
+    }
 
     /**
      * Gets the instance of {@link Carbon} currently running.
      *
+     * <p>This must not be called before Carbon has been created, as the
+     * failure would prevent Carbon from ever being created.</p>
+     *
      * @return The current instance of Carbon
      * @since 1.0.0
      */
     public static Carbon getCarbon() {
-        checkNotNull(CONTAINER, "CONTAINER is null!");
-        return (Carbon) CONTAINER.getInstance().get();
+        return Holder.INSTANCE;
     }
 
     /**
@@ -105,4 +130,19 @@ public abstract class Carbon {
      * @since 2.0.0
      */
     public abstract CarbonConfiguration getConfiguration();
+
+    /**
+     * Holds the instance of Carbon in a constant, which the JIT is able to fold.
+     * It is initialised by the constructor of Carbon.
+     */
+    private static final class Holder {
+
+        private static final Carbon INSTANCE = init();
+
+        private static Carbon init() {
+            synchronized (Carbon.class) {
+                return checkNotNull(bootstrapInstance, "Carbon has not been initialised!");
+            }
+        }
+    }
 }
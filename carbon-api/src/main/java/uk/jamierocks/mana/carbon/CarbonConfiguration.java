@@ -16,9 +16,13 @@
 
 package uk.jamierocks.mana.carbon;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.collect.Lists;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -32,11 +36,13 @@ public final class CarbonConfiguration {
     private final CommentedConfigurationNode node;
     private Irc irc;
     private Commands commands;
+    private Metrics metrics;
 
     public CarbonConfiguration(CommentedConfigurationNode node) {
         this.node = node;
-        this.irc = new Irc(node);
+        this.irc = new Irc(node.getNode("irc"));
         this.commands = new Commands(node.getNode("commands"));
+        this.metrics = new Metrics(node.getNode("metrics"));
     }
 
     /**
@@ -69,6 +75,16 @@ public final class CarbonConfiguration {
         return this.commands;
     }
 
+    /**
+     * Gets the metrics configuration.
+     *
+     * @return The metrics config
+     * @since 2.0.0
+     */
+    public Metrics getMetrics() {
+        return this.metrics;
+    }
+
     /**
      * Represents the irc configuration.
      *
@@ -77,11 +93,17 @@ public final class CarbonConfiguration {
     public static class Irc {
 
         private List<Network> networks = Lists.newArrayList();
+        private Startup startup;
+        private Outbound outbound;
+        private Inbound inbound;
 
         public Irc(CommentedConfigurationNode node) {
             for (CommentedConfigurationNode network : node.getNode("networks").getChildrenList()) {
                 this.networks.add(new Network(network));
             }
+            this.startup = new Startup(node.getNode("startup"));
+            this.outbound = new Outbound(node.getNode("outbound"));
+            this.inbound = new Inbound(node.getNode("inbound"));
         }
 
         /**
@@ -94,6 +116,255 @@ public final class CarbonConfiguration {
             return Lists.newArrayList(this.networks);
         }
 
+        /**
+         * Gets the startup configuration.
+         *
+         * @return The startup config
+         * @since 2.0.0
+         */
+        public Startup getStartup() {
+            return this.startup;
+        }
+
+        /**
+         * Gets the outbound message configuration.
+         *
+         * @return The outbound config
+         * @since 2.0.0
+         */
+        public Outbound getOutbound() {
+            return this.outbound;
+        }
+
+        /**
+         * Gets the inbound event configuration.
+         *
+         * @return The inbound config
+         * @since 2.0.0
+         */
+        public Inbound getInbound() {
+            return this.inbound;
+        }
+
+        /**
+         * Represents the configuration of connecting to networks on startup.
+         *
+         * @since 2.0.0
+         */
+        public static class Startup {
+
+            private int quorum;
+            private int timeout;
+
+            public Startup(CommentedConfigurationNode node) {
+                this.quorum = node.getNode("quorum").getInt(1);
+                this.timeout = node.getNode("timeout").getInt(30);
+            }
+
+            /**
+             * Gets the number of networks that must be connected to before
+             * initialisation continues, or {@code 0} for all of them.
+             *
+             * @return The quorum
+             * @since 2.0.0
+             */
+            public int getQuorum() {
+                return this.quorum;
+            }
+
+            /**
+             * Gets the maximum time to wait for the quorum, in seconds.
+             *
+             * @return The timeout
+             * @since 2.0.0
+             */
+            public int getTimeout() {
+                return this.timeout;
+            }
+        }
+
+        /**
+         * Represents the configuration of outgoing messages, which is shared
+         * by every network.
+         *
+         * @since 2.0.0
+         */
+        public static class Outbound {
+
+            // The longest nick, user, host and channel name allowed for, when the actual ones are not known
+            private static final int MAX_NICK = 30;
+            private static final int MAX_USER = 10;
+            private static final int MAX_HOST = 63;
+            private static final int MAX_TARGET = 50;
+
+            private int burst;
+            private double rate;
+            private int queueSize;
+            private boolean coalesce;
+            private int maxLineLength;
+
+            public Outbound(CommentedConfigurationNode node) {
+                this.burst = node.getNode("burst").getInt(5);
+                this.rate = node.getNode("rate").getDouble(0.5);
+                this.queueSize = node.getNode("queue-size").getInt(256);
+                this.coalesce = node.getNode("coalesce").getBoolean(true);
+                this.maxLineLength = node.getNode("max-line-length").getInt(510);
+
+                checkArgument(this.burst >= 1, "irc.outbound.burst must be at least 1, but is %s", this.burst);
+                checkArgument(this.rate > 0, "irc.outbound.rate must be greater than 0, but is %s", this.rate);
+                checkArgument(this.getMaxMessageLength() > 0, "irc.outbound.max-line-length is too short to hold a "
+                        + "message, at %s", this.maxLineLength);
+            }
+
+            /**
+             * Gets the number of messages that may be sent at once, before
+             * being limited to the rate.
+             *
+             * @return The burst
+             * @since 2.0.0
+             */
+            public int getBurst() {
+                return this.burst;
+            }
+
+            /**
+             * Gets the sustained rate messages may be sent at, in messages
+             * per second.
+             *
+             * @return The rate
+             * @since 2.0.0
+             */
+            public double getRate() {
+                return this.rate;
+            }
+
+            /**
+             * Gets the maximum number of messages that may be waiting for
+             * each priority, after which the oldest are dropped.
+             *
+             * @return The queue size
+             * @since 2.0.0
+             */
+            public int getQueueSize() {
+                return this.queueSize;
+            }
+
+            /**
+             * Gets whether waiting messages to the same target may be joined
+             * into a single message.
+             *
+             * @return {@code True} if messages are coalesced, {@code false} otherwise
+             * @since 2.0.0
+             */
+            public boolean isCoalesce() {
+                return this.coalesce;
+            }
+
+            /**
+             * Gets the maximum length of a line, in UTF-8 bytes, as the
+             * network relays it to recipients - including the bot's own
+             * {@code :nick!user@host} prefix and the {@code PRIVMSG} framing.
+             *
+             * @return The maximum line length
+             * @since 2.0.0
+             */
+            public int getMaxLineLength() {
+                return this.maxLineLength;
+            }
+
+            /**
+             * Gets the maximum length of a message to the given target, in
+             * UTF-8 bytes, such that the line relayed to recipients fits
+             * within the {@link #getMaxLineLength() maximum line length}.
+             *
+             * <p>The bot's user and host are not known, so the longest
+             * allowed are assumed.</p>
+             *
+             * @param nick The bot's nick
+             * @param target The target, either a channel or a nick
+             * @return The maximum message length
+             * @since 2.0.0
+             */
+            public int getMaxMessageLength(String nick, String target) {
+                checkNotNull(nick, "nick is null!");
+                checkNotNull(target, "target is null!");
+                return this.maxLineLength - overhead(utf8Length(nick), utf8Length(target));
+            }
+
+            /**
+             * Gets the maximum length of a message to any target, in UTF-8
+             * bytes, assuming the longest nick and target allowed.
+             *
+             * @return The maximum message length
+             * @see #getMaxMessageLength(String, String)
+             * @since 2.0.0
+             */
+            public int getMaxMessageLength() {
+                return this.maxLineLength - overhead(MAX_NICK, MAX_TARGET);
+            }
+
+            private static int overhead(int nick, int target) {
+                // ":nick!user@host PRIVMSG target :"
+                return 1 + nick + 1 + MAX_USER + 1 + MAX_HOST + " PRIVMSG ".length() + target + " :".length();
+            }
+
+            private static int utf8Length(String text) {
+                return text.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+
+        /**
+         * Represents the configuration of the queue events received from
+         * the networks wait in, before being handled.
+         *
+         * @since 2.0.0
+         */
+        public static class Inbound {
+
+            private int capacity;
+            private double highWaterMark;
+            private int chatterSample;
+
+            public Inbound(CommentedConfigurationNode node) {
+                this.capacity = node.getNode("capacity").getInt(1024);
+                this.highWaterMark = node.getNode("high-water-mark").getDouble(0.75);
+                this.chatterSample = node.getNode("chatter-sample").getInt(10);
+            }
+
+            /**
+             * Gets the maximum number of events that may be waiting, after
+             * which further commands and chatter are dropped.
+             *
+             * @return The capacity
+             * @since 2.0.0
+             */
+            public int getCapacity() {
+                return this.capacity;
+            }
+
+            /**
+             * Gets the fraction of the capacity above which chatter is
+             * sampled, rather than all of it being handled.
+             *
+             * @return The high-water mark
+             * @since 2.0.0
+             */
+            public double getHighWaterMark() {
+                return this.highWaterMark;
+            }
+
+            /**
+             * Gets the ratio chatter is sampled at above the high-water
+             * mark, e.g. {@code 10} keeps one message in every ten.
+             *
+             * @return The chatter sample
+             * @since 2.0.0
+             */
+            public int getChatterSample() {
+                return this.chatterSample;
+            }
+        }
+
         /**
          * Represents an IRC network.
          *
@@ -187,9 +458,15 @@ public final class CarbonConfiguration {
     public static class Commands {
 
         private String prefix;
+        private Execution execution;
+        private RateLimit rateLimit;
+        private Suggestions suggestions;
 
         public Commands(CommentedConfigurationNode node) {
             this.prefix = node.getNode("prefix").getString(".");
+            this.execution = new Execution(node.getNode("execution"));
+            this.rateLimit = new RateLimit(node.getNode("rate-limit"));
+            this.suggestions = new Suggestions(node.getNode("suggestions"));
         }
 
         /**
@@ -201,5 +478,368 @@ public final class CarbonConfiguration {
         public String getPrefix() {
             return this.prefix;
         }
+
+        /**
+         * Gets the command execution configuration.
+         *
+         * @return The execution config
+         * @since 2.0.0
+         */
+        public Execution getExecution() {
+            return this.execution;
+        }
+
+        /**
+         * Gets the command rate limiting configuration.
+         *
+         * @return The rate limit config
+         * @since 2.0.0
+         */
+        public RateLimit getRateLimit() {
+            return this.rateLimit;
+        }
+
+        /**
+         * Gets the configuration for suggesting commands, when an unknown
+         * command is used.
+         *
+         * @return The suggestions config
+         * @since 2.0.0
+         */
+        public Suggestions getSuggestions() {
+            return this.suggestions;
+        }
+
+        /**
+         * Represents the command execution configuration.
+         *
+         * @since 2.0.0
+         */
+        public static class Execution {
+
+            private String mode;
+            private int threads;
+            private int queueDepth;
+            private String rejectionPolicy;
+
+            public Execution(CommentedConfigurationNode node) {
+                this.mode = node.getNode("mode").getString("pool");
+                this.threads = node.getNode("threads").getInt(4);
+                this.queueDepth = node.getNode("queue-depth").getInt(16);
+                this.rejectionPolicy = node.getNode("rejection-policy").getString("reply");
+            }
+
+            /**
+             * Gets the mode commands are executed in, one of {@code direct},
+             * {@code pool} or {@code virtual}.
+             *
+             * @return The execution mode
+             * @since 2.0.0
+             */
+            public String getMode() {
+                return this.mode;
+            }
+
+            /**
+             * Gets the number of worker threads used in the {@code pool} mode.
+             *
+             * @return The number of threads
+             * @since 2.0.0
+             */
+            public int getThreads() {
+                return this.threads;
+            }
+
+            /**
+             * Gets the maximum number of commands that may be waiting for a
+             * single channel.
+             *
+             * @return The queue depth
+             * @since 2.0.0
+             */
+            public int getQueueDepth() {
+                return this.queueDepth;
+            }
+
+            /**
+             * Gets the policy used when a channel's queue is full, either
+             * {@code reply} or {@code drop}.
+             *
+             * @return The rejection policy
+             * @since 2.0.0
+             */
+            public String getRejectionPolicy() {
+                return this.rejectionPolicy;
+            }
+        }
+
+        /**
+         * Represents the command rate limiting configuration.
+         *
+         * <p>Every command has its own limits for each user, each channel
+         * and for itself as a whole, which default to those given at the
+         * top level, and may be overridden under {@code commands}, by the
+         * command's primary alias.</p>
+         *
+         * @since 2.0.0
+         */
+        public static class RateLimit {
+
+            private final CommentedConfigurationNode node;
+            private boolean enabled;
+            private boolean exemptAdministrators;
+            private Limit user;
+            private Limit channel;
+            private Limit command;
+
+            public RateLimit(CommentedConfigurationNode node) {
+                this.node = node;
+                this.enabled = node.getNode("enabled").getBoolean(true);
+                this.exemptAdministrators = node.getNode("exempt-administrators").getBoolean(true);
+                this.user = new Limit(node.getNode("user"), 3, 0.2);
+                this.channel = new Limit(node.getNode("channel"), 10, 1);
+                this.command = new Limit(node.getNode("command"), 30, 5);
+            }
+
+            /**
+             * Gets whether commands are rate limited.
+             *
+             * @return {@code True} if commands are rate limited
+             * @since 2.0.0
+             */
+            public boolean isEnabled() {
+                return this.enabled;
+            }
+
+            /**
+             * Gets whether administrators are exempt from rate limiting.
+             *
+             * @return {@code True} if administrators are exempt
+             * @since 2.0.0
+             */
+            public boolean isExemptAdministrators() {
+                return this.exemptAdministrators;
+            }
+
+            /**
+             * Gets the limit for each user of the given command.
+             *
+             * @param command The primary alias of the command
+             * @return The limit
+             * @since 2.0.0
+             */
+            public Limit getUserLimit(String command) {
+                return new Limit(this.node.getNode("commands", command, "user"), this.user);
+            }
+
+            /**
+             * Gets the limit for each channel of the given command.
+             *
+             * @param command The primary alias of the command
+             * @return The limit
+             * @since 2.0.0
+             */
+            public Limit getChannelLimit(String command) {
+                return new Limit(this.node.getNode("commands", command, "channel"), this.channel);
+            }
+
+            /**
+             * Gets the limit for the given command, across every user and
+             * channel.
+             *
+             * @param command The primary alias of the command
+             * @return The limit
+             * @since 2.0.0
+             */
+            public Limit getCommandLimit(String command) {
+                return new Limit(this.node.getNode("commands", command, "command"), this.command);
+            }
+        }
+
+        /**
+         * Represents the configuration for suggesting commands, when an
+         * unknown command is used.
+         *
+         * @since 2.0.0
+         */
+        public static class Suggestions {
+
+            private boolean enabled;
+            private int maxDistance;
+            private int maxSuggestions;
+            private Limit user;
+            private Limit channel;
+
+            public Suggestions(CommentedConfigurationNode node) {
+                this.enabled = node.getNode("enabled").getBoolean(true);
+                this.maxDistance = node.getNode("max-distance").getInt(2);
+                this.maxSuggestions = node.getNode("max-suggestions").getInt(3);
+                this.user = new Limit(node.getNode("user"), 1, 0.05);
+                this.channel = new Limit(node.getNode("channel"), 2, 0.1);
+            }
+
+            /**
+             * Gets whether commands are suggested for unknown commands.
+             *
+             * @return {@code True} if commands are suggested
+             * @since 2.0.0
+             */
+            public boolean isEnabled() {
+                return this.enabled;
+            }
+
+            /**
+             * Gets the greatest number of edits an unknown command may be
+             * from a command suggested for it.
+             *
+             * @return The maximum edit distance
+             * @since 2.0.0
+             */
+            public int getMaxDistance() {
+                return this.maxDistance;
+            }
+
+            /**
+             * Gets the greatest number of commands suggested at once.
+             *
+             * @return The maximum number of suggestions
+             * @since 2.0.0
+             */
+            public int getMaxSuggestions() {
+                return this.maxSuggestions;
+            }
+
+            /**
+             * Gets the limit on suggestions made to each user.
+             *
+             * @return The limit
+             * @since 2.0.0
+             */
+            public Limit getUserLimit() {
+                return this.user;
+            }
+
+            /**
+             * Gets the limit on suggestions made in each channel.
+             *
+             * @return The limit
+             * @since 2.0.0
+             */
+            public Limit getChannelLimit() {
+                return this.channel;
+            }
+        }
+
+        /**
+         * Represents a rate limit, as a token bucket.
+         *
+         * @since 2.0.0
+         */
+        public static class Limit {
+
+            private int burst;
+            private double rate;
+
+            public Limit(CommentedConfigurationNode node, int burst, double rate) {
+                this.burst = node.getNode("burst").getInt(burst);
+                this.rate = node.getNode("rate").getDouble(rate);
+            }
+
+            public Limit(CommentedConfigurationNode node, Limit defaults) {
+                this(node, defaults.getBurst(), defaults.getRate());
+            }
+
+            /**
+             * Gets the number of times that may be used at once.
+             *
+             * @return The burst
+             * @since 2.0.0
+             */
+            public int getBurst() {
+                return this.burst;
+            }
+
+            /**
+             * Gets the sustained rate, per second, or {@code 0} for no
+             * limit.
+             *
+             * @return The rate
+             * @since 2.0.0
+             */
+            public double getRate() {
+                return this.rate;
+            }
+
+            /**
+             * Gets whether this is no limit at all.
+             *
+             * @return {@code True} if unlimited
+             * @since 2.0.0
+             */
+            public boolean isUnlimited() {
+                return this.rate <= 0 || this.burst <= 0;
+            }
+        }
+    }
+
+    /**
+     * Represents the metrics configuration.
+     *
+     * @since 2.0.0
+     */
+    public static class Metrics {
+
+        private boolean httpEnabled;
+        private String httpHost;
+        private int httpPort;
+        private boolean jmx;
+
+        public Metrics(CommentedConfigurationNode node) {
+            this.httpEnabled = node.getNode("http", "enabled").getBoolean(false);
+            this.httpHost = node.getNode("http", "host").getString("127.0.0.1");
+            this.httpPort = node.getNode("http", "port").getInt(9404);
+            this.jmx = node.getNode("jmx").getBoolean(true);
+        }
+
+        /**
+         * Gets whether metrics are served over HTTP, for scraping.
+         *
+         * @return {@code True} if metrics are served over HTTP
+         * @since 2.0.0
+         */
+        public boolean isHttpEnabled() {
+            return this.httpEnabled;
+        }
+
+        /**
+         * Gets the host the HTTP server is bound to, which is only the
+         * loopback address by default.
+         *
+         * @return The host
+         * @since 2.0.0
+         */
+        public String getHttpHost() {
+            return this.httpHost;
+        }
+
+        /**
+         * Gets the port the HTTP server listens on.
+         *
+         * @return The port
+         * @since 2.0.0
+         */
+        public int getHttpPort() {
+            return this.httpPort;
+        }
+
+        /**
+         * Gets whether metrics are exposed as JMX MBeans.
+         *
+         * @return {@code True} if metrics are exposed over JMX
+         * @since 2.0.0
+         */
+        public boolean isJmxEnabled() {
+            return this.jmx;
+        }
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.jamierocks.mana.carbon.event.command;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.sk89q.intake.CommandMapping;
+import com.sk89q.intake.dispatcher.Dispatcher;
+import uk.jamierocks.mana.carbon.event.Event;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An event for when commands are registered to, or unregistered from, the
+ * command dispatcher.
+ *
+ * <p>Posted once the dispatcher has been updated, so anything derived
+ * from its commands may be rebuilt from it.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public class CommandsChangedEvent implements Event {
+
+    private final Dispatcher dispatcher;
+    private final List<CommandMapping> registered;
+    private final List<CommandMapping> unregistered;
+
+    /**
+     * Creates a commands changed event, for the given dispatcher and the
+     * commands that were registered to and unregistered from it.
+     *
+     * @param dispatcher The dispatcher whose commands changed
+     * @param registered The commands registered
+     * @param unregistered The commands unregistered
+     * @since 2.0.0
+     */
+    public CommandsChangedEvent(Dispatcher dispatcher, Collection<CommandMapping> registered,
+            Collection<CommandMapping> unregistered) {
+        this.dispatcher = checkNotNull(dispatcher, "dispatcher is null!");
+        this.registered = ImmutableList.copyOf(checkNotNull(registered, "registered is null!"));
+        this.unregistered = ImmutableList.copyOf(checkNotNull(unregistered, "unregistered is null!"));
+    }
+
+    /**
+     * Gets the dispatcher whose commands changed.
+     *
+     * @return The dispatcher
+     * @since 2.0.0
+     */
+    public Dispatcher getDispatcher() {
+        return this.dispatcher;
+    }
+
+    /**
+     * Gets the commands that were registered.
+     *
+     * @return The registered commands
+     * @since 2.0.0
+     */
+    public List<CommandMapping> getRegistered() {
+        return this.registered;
+    }
+
+    /**
+     * Gets the commands that were unregistered, as they were mapped
+     * before being unregistered.
+     *
+     * @return The unregistered commands
+     * @since 2.0.0
+     */
+    public List<CommandMapping> getUnregistered() {
+        return this.unregistered;
+    }
+}
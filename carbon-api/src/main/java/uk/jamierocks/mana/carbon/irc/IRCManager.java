@@ -23,6 +23,7 @@ import org.kitteh.irc.client.library.Client;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A manager for IRC networks / servers.
@@ -49,6 +50,46 @@ public interface IRCManager {
      */
     Collection<Client> getClients();
 
+    /**
+     * Returns a future completed once the client for the given id has
+     * connected, and registered with the network, if available.
+     *
+     * @param id The client id
+     * @return The connection future
+     * @since 2.0.0
+     */
+    Optional<CompletableFuture<Client>> getConnection(String id);
+
+    /**
+     * Returns the {@link MessageScheduler} for the client of the given id,
+     * if available.
+     *
+     * @param id The client id
+     * @return The message scheduler
+     * @since 2.0.0
+     */
+    Optional<MessageScheduler> getScheduler(String id);
+
+    /**
+     * Sends a message to the given target, through the scheduler of the
+     * given client - or directly, should the client not have one.
+     *
+     * @param client The client
+     * @param target The channel or nick to send the message to
+     * @param message The message
+     * @param priority The priority of the message
+     * @since 2.0.0
+     */
+    default void sendMessage(Client client, String target, String message, MessagePriority priority) {
+        checkNotNull(client, "client is null!");
+        final Optional<MessageScheduler> scheduler = this.getScheduler(client.getName());
+        if (scheduler.isPresent()) {
+            scheduler.get().send(target, message, priority);
+        } else {
+            client.sendMessage(target, message);
+        }
+    }
+
     /**
      * Returns an immutable list of all the bot administrators.
      *
@@ -57,6 +98,36 @@ public interface IRCManager {
      */
     List<String> getAdministrators();
 
+    /**
+     * Returns whether the given user is a bot administrator.
+     *
+     * @param user The user's full name, as in {@link #getAdministrators()}
+     * @return {@code True} if the user is an administrator, {@code false} otherwise
+     * @since 2.0.0
+     */
+    default boolean isAdministrator(String user) {
+        checkNotNull(user, "user is null!");
+        return this.getAdministrators().contains(user);
+    }
+
+    /**
+     * Adds the given user to the bot administrators, saving the change.
+     *
+     * @param user The user's full name
+     * @return {@code True} if the user was added, {@code false} otherwise
+     * @since 2.0.0
+     */
+    boolean addAdministrator(String user);
+
+    /**
+     * Removes the given user from the bot administrators, saving the change.
+     *
+     * @param user The user's full name
+     * @return {@code True} if the user was removed, {@code false} otherwise
+     * @since 2.0.0
+     */
+    boolean removeAdministrator(String user);
+
     /**
      * Registers the given listener to all of the IRC clients.
      *
@@ -67,4 +138,15 @@ public interface IRCManager {
         checkNotNull(listener);
         this.getClients().forEach(c -> c.getEventManager().registerEventListener(listener));
     }
+
+    /**
+     * Unregisters the given listener from all of the IRC clients.
+     *
+     * @param listener The listener
+     * @since 2.0.0
+     */
+    default void unregisterIRCEventListener(Object listener) {
+        checkNotNull(listener);
+        this.getClients().forEach(c -> c.getEventManager().unregisterEventListener(listener));
+    }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.irc;
+
+/**
+ * The priority of an outgoing message, from the highest to the lowest.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public enum MessagePriority {
+
+    /**
+     * Replies to bot administrators.
+     *
+     * @since 2.0.0
+     */
+    ADMIN,
+
+    /**
+     * Replies to users.
+     *
+     * @since 2.0.0
+     */
+    NORMAL,
+
+    /**
+     * Bulk output, such as long listings.
+     *
+     * @since 2.0.0
+     */
+    BULK
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.irc;
+
+/**
+ * Schedules the outgoing messages of a single network, sending them as
+ * fast as the network's flood control allows.
+ *
+ * <p>Messages of a higher {@link MessagePriority} are always sent first,
+ * and targets of the same priority take turns.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public interface MessageScheduler {
+
+    /**
+     * Queues the given message to be sent to the given target.
+     *
+     * @param target The target, either a channel or a nick
+     * @param message The message
+     * @param priority The priority of the message
+     * @since 2.0.0
+     */
+    void send(String target, String message, MessagePriority priority);
+
+    /**
+     * Queues the given message to be sent to the given target, with the
+     * {@link MessagePriority#NORMAL normal} priority.
+     *
+     * @param target The target, either a channel or a nick
+     * @param message The message
+     * @since 2.0.0
+     */
+    default void send(String target, String message) {
+        this.send(target, message, MessagePriority.NORMAL);
+    }
+
+    /**
+     * Gets the number of messages waiting to be sent.
+     *
+     * @return The queue depth
+     * @since 2.0.0
+     */
+    int getQueueDepth();
+
+    /**
+     * Gets the number of messages of the given priority waiting to be sent.
+     *
+     * @param priority The priority
+     * @return The queue depth
+     * @since 2.0.0
+     */
+    int getQueueDepth(MessagePriority priority);
+
+    /**
+     * Gets the total number of messages sent.
+     *
+     * @return The messages sent
+     * @since 2.0.0
+     */
+    long getSent();
+
+    /**
+     * Gets the rate messages have been sent at over the last minute, in
+     * messages per second.
+     *
+     * @return The send rate
+     * @since 2.0.0
+     */
+    double getSendRate();
+}
@@ -40,6 +40,42 @@ public interface ModuleManager {
      */
     void registerModule(Object plugin, Class<?> module);
 
+    /**
+     * Disables the module with the given identifier, unregistering
+     * everything it registered with Carbon.
+     *
+     * <p>The module stays disabled across restarts, until it is enabled
+     * again.</p>
+     *
+     * @param id The module id
+     * @return {@code True} if the module was disabled, {@code false} if it is not loaded
+     * @since 2.0.0
+     */
+    boolean disable(String id);
+
+    /**
+     * Enables the module with the given identifier, which must have been
+     * registered, and loads it.
+     *
+     * <p>The module stays enabled across restarts, whatever the
+     * configuration says.</p>
+     *
+     * @param id The module id
+     * @return {@code True} if the module was enabled, {@code false} otherwise
+     * @since 2.0.0
+     */
+    boolean enable(String id);
+
+    /**
+     * Reloads the module with the given identifier, unregistering
+     * everything it registered with Carbon and loading it afresh.
+     *
+     * @param id The module id
+     * @return {@code True} if the module was reloaded, {@code false} otherwise
+     * @since 2.0.0
+     */
+    boolean reload(String id);
+
     /**
      * Returns the owner of the given module, if available.
      *
@@ -24,6 +24,13 @@ import java.lang.annotation.Target;
 /**
  * Used by plugins, to signify that they are a plugin.
  *
+ * <p>Plugins are constructed, and handle lifecycle events, in waves - a
+ * plugin's dependencies always having finished before it starts. By
+ * default the plugins of a wave are handled one at a time, on the thread
+ * loading plugins or posting the event. A plugin which sets
+ * {@link #concurrent()} is instead handled on a plugin loader thread, at
+ * the same time as the other plugins of its wave.</p>
+ *
  * @author Jamie Mansfield
  * @since 1.0.0
  */
@@ -54,4 +61,36 @@ public @interface Plugin {
      * @since 1.0.0
      */
     String version();
+
+    /**
+     * Gets the identifiers of the plugins this plugin depends on.
+     *
+     * <p>The plugin is only loaded once all of its dependencies have been,
+     * and is not loaded at all should any of them be missing.</p>
+     *
+     * @return The dependencies
+     * @since 2.0.0
+     */
+    String[] dependencies() default {};
+
+    /**
+     * Gets the identifiers of the plugins this plugin should be loaded
+     * after, should they be present.
+     *
+     * @return The plugins to load after
+     * @since 2.0.0
+     */
+    String[] loadAfter() default {};
+
+    /**
+     * Gets whether the plugin may be constructed, and handle lifecycle
+     * events, at the same time as the other plugins it is loaded alongside.
+     *
+     * <p>Only set this should the plugin's constructor and lifecycle event
+     * handlers be safe to run concurrently with those of other plugins.</p>
+     *
+     * @return {@code True} if the plugin may be handled concurrently
+     * @since 2.0.0
+     */
+    boolean concurrent() default false;
 }
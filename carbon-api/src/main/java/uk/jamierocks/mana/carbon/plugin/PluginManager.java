@@ -61,4 +61,26 @@ public interface PluginManager {
      * @since 1.0.0
      */
     boolean isLoaded(String id);
+
+    /**
+     * Unloads the plugin with the given identifier, unregistering everything
+     * it registered with Carbon.
+     *
+     * <p>Plugins that other loaded plugins depend on cannot be unloaded.</p>
+     *
+     * @param id The plugin's id
+     * @return {@code True} if the plugin was unloaded, {@code false} otherwise
+     * @since 2.0.0
+     */
+    boolean unload(String id);
+
+    /**
+     * Reloads the plugin with the given identifier, from the jar it was
+     * originally loaded from.
+     *
+     * @param id The plugin's id
+     * @return {@code True} if the plugin was reloaded, {@code false} otherwise
+     * @since 2.0.0
+     */
+    boolean reload(String id);
 }
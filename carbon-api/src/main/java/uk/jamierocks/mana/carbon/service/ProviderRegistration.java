@@ -44,6 +44,23 @@ public interface ProviderRegistration<T> {
      * @since 1.0.0
      */
     static <T> ProviderRegistration<T> of(Object plugin, Class<T> service, T provider) throws ProviderRegistrationException {
+        return ProviderRegistration.of(plugin, service, provider, 0);
+    }
+
+    /**
+     * Constructs a registration with the given value.
+     *
+     * @param plugin The instance of the plugin of which is registering the provider
+     * @param service The service
+     * @param provider The provider for the service
+     * @param rank The rank of the provider
+     * @param <T> The type of the service
+     * @return A plugin registration
+     * @throws ProviderRegistrationException If a {@link PluginContainer} is not found for the given plugin instance
+     * @since 2.0.0
+     */
+    static <T> ProviderRegistration<T> of(Object plugin, Class<T> service, T provider, int rank)
+            throws ProviderRegistrationException {
         checkNotNull(plugin, "plugin is null!");
         checkNotNull(service, "service is null!");
         checkNotNull(provider, "provider is null!");
@@ -68,6 +85,11 @@ public interface ProviderRegistration<T> {
             public PluginContainer getPlugin() {
                 return pluginContainer.get();
             }
+
+            @Override
+            public int getRank() {
+                return rank;
+            }
         };
     }
 
@@ -94,4 +116,14 @@ public interface ProviderRegistration<T> {
      * @since 1.0.0
      */
     PluginContainer getPlugin();
+
+    /**
+     * Gets the rank of this registration, higher ranks are preferred.
+     *
+     * @return The rank
+     * @since 2.0.0
+     */
+    default int getRank() {
+        return 0;
+    }
 }
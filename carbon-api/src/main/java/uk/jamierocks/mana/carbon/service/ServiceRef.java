@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service;
+
+import java.util.Optional;
+
+/**
+ * A live reference to the current provider of a service.
+ *
+ * <p>The reference is updated by the {@link ServiceRegistry} whenever the
+ * providers for its service change, so it can be held on to indefinitely.
+ * Reading from a reference does not lock or allocate.</p>
+ *
+ * @param <T> The type of the service
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public interface ServiceRef<T> {
+
+    /**
+     * Gets the service this reference is for.
+     *
+     * @return The service
+     * @since 2.0.0
+     */
+    Class<T> getService();
+
+    /**
+     * Gets the current provider for the service, if one is available.
+     *
+     * @return The provider if available
+     * @since 2.0.0
+     */
+    Optional<T> get();
+
+    /**
+     * Gets the current provider for the service, or the fallback if one is
+     * not available.
+     *
+     * @param fallback The fallback
+     * @return The provider if available, the fallback otherwise
+     * @since 2.0.0
+     */
+    T orElse(T fallback);
+
+    /**
+     * Gets the current registration for the service, if one is available.
+     *
+     * @return The registration if available
+     * @since 2.0.0
+     */
+    Optional<ProviderRegistration<T>> getRegistration();
+}
@@ -16,11 +16,16 @@
 
 package uk.jamierocks.mana.carbon.service;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
  * A registry for services and their providers.
  *
+ * <p>A service may have many providers, each registered with a rank. The
+ * provider with the highest rank is the one provided, with providers of
+ * equal rank provided in the order they were registered.</p>
+ *
  * @author Jamie Mansfield
  * @since 1.0.0
  */
@@ -35,7 +40,22 @@ public interface ServiceRegistry {
      * @param <T> The type of the service
      * @since 1.0.0
      */
-    <T> void registerProvider(Object plugin, Class<T> service, T provider);
+    default <T> void registerProvider(Object plugin, Class<T> service, T provider) {
+        this.registerProvider(plugin, service, provider, 0);
+    }
+
+    /**
+     * Registers the given provider to the given service within the registry,
+     * with the given rank.
+     *
+     * @param plugin The instance of the plugin of which is registering the provider
+     * @param service The service
+     * @param provider The provider for the service
+     * @param rank The rank of the provider, higher ranks are preferred
+     * @param <T> The type of the service
+     * @since 2.0.0
+     */
+    <T> void registerProvider(Object plugin, Class<T> service, T provider, int rank);
 
     /**
      * Returns the provider for the given service, if one is available.
@@ -74,6 +94,31 @@ public interface ServiceRegistry {
      */
     <T> Optional<ProviderRegistration<T>> provideRegistration(Class<T> service);
 
+    /**
+     * Returns an immutable list of all the registrations for the given
+     * service, from the most preferred to the least.
+     *
+     * @param service The service
+     * @param <T> The type of the service
+     * @return The registrations
+     * @since 2.0.0
+     */
+    <T> List<ProviderRegistration<T>> provideAllRegistrations(Class<T> service);
+
+    /**
+     * Returns a reference to the given service, which always reflects the
+     * current provider.
+     *
+     * <p>References are intended to be fetched once and held on to, as
+     * reading a reference is far cheaper than looking up the service.</p>
+     *
+     * @param service The service
+     * @param <T> The type of the service
+     * @return The service reference
+     * @since 2.0.0
+     */
+    <T> ServiceRef<T> getRef(Class<T> service);
+
     /**
      * Returns weather the given service has a registered provider.
      *
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service.exception;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * The asynchronous pipeline behind the {@link ExceptionReporter}.
+ *
+ * <p>Reports are queued by the reporting thread and handled by a single
+ * worker thread, which fingerprints each exception by its type and top
+ * stack frames. The first report of a fingerprint is passed on straight
+ * away, while any duplicates within the following window are counted and
+ * passed on as one aggregated report when the window closes.</p>
+ *
+ * <p>Should the queue fill up, further reports are dropped and counted,
+ * rather than blocking the reporting thread.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class ExceptionPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("Carbon - ExceptionReporter");
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int RECENT_CAPACITY = 32;
+    private static final int FINGERPRINT_FRAMES = 5;
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(60);
+
+    private final BiConsumer<String, Throwable> sink;
+    private final BlockingQueue<Report> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Map<String, Aggregate> aggregates = Maps.newHashMap();
+    private final LinkedHashMap<String, ReportedFailure> recent = new LinkedHashMap<String, ReportedFailure>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ReportedFailure> eldest) {
+            return this.size() > RECENT_CAPACITY;
+        }
+    };
+
+    ExceptionPipeline(BiConsumer<String, Throwable> sink) {
+        this.sink = sink;
+
+        final Thread worker = new Thread(this::work, "Carbon Exception Reporter");
+        worker.setDaemon(true);
+        worker.start();
+
+        // Anything still queued on exit is reported, as exits often follow fatal errors
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "Carbon Exception Reporter Shutdown"));
+    }
+
+    /**
+     * Queues the given report, without blocking.
+     *
+     * @param message The message
+     * @param throwable The exception
+     */
+    void submit(String message, Throwable throwable) {
+        if (!this.queue.offer(new Report(message, throwable, System.currentTimeMillis(), System.nanoTime()))) {
+            this.dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the recent distinct failures, from the most recent to the least.
+     *
+     * @return The recent failures
+     */
+    List<ReportedFailure> getRecentFailures() {
+        synchronized (this.recent) {
+            return ImmutableList.copyOf(Lists.reverse(Lists.newArrayList(this.recent.values())));
+        }
+    }
+
+    private void work() {
+        while (true) {
+            final Report report;
+            try {
+                report = this.queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                synchronized (this) {
+                    if (report != null) {
+                        this.handle(report);
+                    }
+                    this.flush(System.nanoTime(), false);
+                }
+            } catch (Throwable t) {
+                // The worker must outlive any single report
+                LOGGER.error("Failed to handle an exception report", t);
+            }
+
+            final long dropped = this.dropped.getAndSet(0);
+            if (dropped > 0) {
+                LOGGER.warn("Dropped " + dropped + " exception reports, as the queue was full");
+            }
+        }
+    }
+
+    private synchronized void drain() {
+        Report report;
+        while ((report = this.queue.poll()) != null) {
+            this.handle(report);
+        }
+        this.flush(System.nanoTime(), true);
+    }
+
+    private void handle(Report report) {
+        final String fingerprint = fingerprint(report.throwable);
+
+        Aggregate aggregate = this.aggregates.get(fingerprint);
+        if (aggregate == null) {
+            aggregate = new Aggregate(report.nanos);
+            this.aggregates.put(fingerprint, aggregate);
+            this.emit(report.message, report.throwable);
+        } else {
+            aggregate.suppressed++;
+        }
+        aggregate.latest = report;
+
+        synchronized (this.recent) {
+            final ReportedFailure previous = this.recent.get(fingerprint);
+            this.recent.put(fingerprint, new ReportedFailure(fingerprint, report.message, report.throwable,
+                    previous == null ? report.millis : previous.getFirstSeen(), report.millis,
+                    previous == null ? 1 : previous.getCount() + 1));
+        }
+    }
+
+    private void flush(long now, boolean all) {
+        final Iterator<Aggregate> iterator = this.aggregates.values().iterator();
+        while (iterator.hasNext()) {
+            final Aggregate aggregate = iterator.next();
+            if (all || now - aggregate.windowStart >= WINDOW) {
+                if (aggregate.suppressed > 0) {
+                    this.emit(aggregate.latest.message + " (repeated " + aggregate.suppressed + " more times in "
+                            + TimeUnit.NANOSECONDS.toSeconds(now - aggregate.windowStart) + " seconds)",
+                            aggregate.latest.throwable);
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    private void emit(String message, Throwable throwable) {
+        try {
+            this.sink.accept(message, throwable);
+        } catch (Throwable t) {
+            LOGGER.error("The exception service failed to report: " + message, t);
+        }
+    }
+
+    private static String fingerprint(Throwable throwable) {
+        if (throwable == null) {
+            return "null";
+        }
+
+        final StringBuilder builder = new StringBuilder(throwable.getClass().getName());
+        final StackTraceElement[] trace = throwable.getStackTrace();
+        for (int i = 0; i < Math.min(FINGERPRINT_FRAMES, trace.length); i++) {
+            builder.append('|')
+                    .append(trace[i].getClassName()).append('.').append(trace[i].getMethodName())
+                    .append(':').append(trace[i].getLineNumber());
+        }
+        return builder.toString();
+    }
+
+    private static final class Report {
+
+        private final String message;
+        private final Throwable throwable;
+        private final long millis;
+        private final long nanos;
+
+        private Report(String message, Throwable throwable, long millis, long nanos) {
+            this.message = message;
+            this.throwable = throwable;
+            this.millis = millis;
+            this.nanos = nanos;
+        }
+    }
+
+    private static final class Aggregate {
+
+        private final long windowStart;
+        private Report latest;
+        private long suppressed;
+
+        private Aggregate(long windowStart) {
+            this.windowStart = windowStart;
+        }
+    }
+}
@@ -19,11 +19,18 @@ package uk.jamierocks.mana.carbon.service.exception;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import uk.jamierocks.mana.carbon.Carbon;
+import uk.jamierocks.mana.carbon.service.ServiceRef;
+
+import java.util.List;
 
 /**
  * Provides static access to the methods defined in {@link ExceptionService}.
  * In failure to retrieve the exception service, it uses a fallback.
  *
+ * <p>Reports are handed to an asynchronous pipeline, so reporting never
+ * blocks the calling thread. Repeated reports of the same failure are
+ * aggregated, see {@link #getRecentFailures()}.</p>
+ *
  * @author Jamie Mansfield
  * @since 1.1.0
  */
@@ -55,7 +62,45 @@ public final class ExceptionReporter {
      */
     public static void report(String message, Throwable throwable) {
         checkNotNull(message, "message is null!");
-        Carbon.getCarbon().getServiceRegistry()
-                .provideOrFallback(ExceptionService.class, FALLBACK).report(message, throwable);
+        Service.PIPELINE.submit(message, throwable);
+    }
+
+    /**
+     * Gets the recent distinct failures that have been reported, from the
+     * most recent to the least.
+     *
+     * @return The recent failures
+     * @since 2.0.0
+     */
+    public static List<ReportedFailure> getRecentFailures() {
+        return Service.PIPELINE.getRecentFailures();
+    }
+
+    /**
+     * Holds the pipeline feeding the exception service, which is created
+     * upon the first report.
+     *
+     * <p>The reference to the exception service is resolved by the pipeline's
+     * worker, once Carbon is available, so reports made before then are
+     * handled by the fallback rather than failing the holder.</p>
+     */
+    private static final class Service {
+
+        private static final ExceptionPipeline PIPELINE =
+                new ExceptionPipeline((message, throwable) -> service().report(message, throwable));
+
+        private static volatile ServiceRef<ExceptionService> ref;
+
+        private static ExceptionService service() {
+            ServiceRef<ExceptionService> ref = Service.ref;
+            if (ref == null) {
+                try {
+                    Service.ref = ref = Carbon.getCarbon().getServiceRegistry().getRef(ExceptionService.class);
+                } catch (RuntimeException e) {
+                    return FALLBACK;
+                }
+            }
+            return ref.orElse(FALLBACK);
+        }
     }
 }
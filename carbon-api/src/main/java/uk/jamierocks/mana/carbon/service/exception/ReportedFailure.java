@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service.exception;
+
+/**
+ * A distinct failure recently reported through the {@link ExceptionReporter}.
+ *
+ * <p>Failures are distinct by their fingerprint, made of the exception's
+ * type and its top stack frames.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class ReportedFailure {
+
+    private final String fingerprint;
+    private final String message;
+    private final Throwable throwable;
+    private final long firstSeen;
+    private final long lastSeen;
+    private final long count;
+
+    ReportedFailure(String fingerprint, String message, Throwable throwable, long firstSeen, long lastSeen, long count) {
+        this.fingerprint = fingerprint;
+        this.message = message;
+        this.throwable = throwable;
+        this.firstSeen = firstSeen;
+        this.lastSeen = lastSeen;
+        this.count = count;
+    }
+
+    /**
+     * Gets the fingerprint of the failure.
+     *
+     * @return The fingerprint
+     * @since 2.0.0
+     */
+    public String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * Gets the message of the latest report of the failure.
+     *
+     * @return The message
+     * @since 2.0.0
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * Gets the exception of the latest report of the failure.
+     *
+     * @return The exception
+     * @since 2.0.0
+     */
+    public Throwable getThrowable() {
+        return this.throwable;
+    }
+
+    /**
+     * Gets the time the failure was first reported, in milliseconds since the epoch.
+     *
+     * @return The time first seen
+     * @since 2.0.0
+     */
+    public long getFirstSeen() {
+        return this.firstSeen;
+    }
+
+    /**
+     * Gets the time the failure was last reported, in milliseconds since the epoch.
+     *
+     * @return The time last seen
+     * @since 2.0.0
+     */
+    public long getLastSeen() {
+        return this.lastSeen;
+    }
+
+    /**
+     * Gets the number of times the failure has been reported.
+     *
+     * @return The count
+     * @since 2.0.0
+     */
+    public long getCount() {
+        return this.count;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service.metrics;
+
+/**
+ * A count of something that has happened, such as commands executed.
+ *
+ * <p>Counters may be incremented concurrently from any number of threads,
+ * without contention.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public interface Counter {
+
+    /**
+     * Increments the counter by one.
+     *
+     * @since 2.0.0
+     */
+    default void increment() {
+        this.add(1);
+    }
+
+    /**
+     * Adds the given amount to the counter.
+     *
+     * @param amount The amount, which should not be negative
+     * @since 2.0.0
+     */
+    void add(long amount);
+
+    /**
+     * Gets the current count.
+     *
+     * @return The count
+     * @since 2.0.0
+     */
+    long getCount();
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service.metrics;
+
+/**
+ * A distribution of recorded values, usually latencies in nanoseconds.
+ *
+ * <p>Recording a value never allocates, so histograms may be used on the
+ * hottest of paths. Values are held to a precision of roughly one percent,
+ * as with an HDR histogram.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public interface Histogram {
+
+    /**
+     * Records the given value.
+     *
+     * @param value The value, which should not be negative
+     * @since 2.0.0
+     */
+    void record(long value);
+
+    /**
+     * Records the nanoseconds elapsed since the given start time, as
+     * given by {@link System#nanoTime()}.
+     *
+     * @param start The start time
+     * @since 2.0.0
+     */
+    default void recordSince(long start) {
+        this.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Gets the number of values recorded.
+     *
+     * @return The count
+     * @since 2.0.0
+     */
+    long getCount();
+
+    /**
+     * Gets the sum of all values recorded.
+     *
+     * @return The sum
+     * @since 2.0.0
+     */
+    long getSum();
+
+    /**
+     * Gets the largest value recorded.
+     *
+     * @return The maximum, or {@code 0} if nothing has been recorded
+     * @since 2.0.0
+     */
+    long getMax();
+
+    /**
+     * Gets the value at the given percentile of those recorded.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The value, or {@code 0} if nothing has been recorded
+     * @since 2.0.0
+     */
+    long getValueAtPercentile(double percentile);
+}
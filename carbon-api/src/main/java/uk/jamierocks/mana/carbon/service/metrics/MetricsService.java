@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Represents a metrics service for Carbon, through which Carbon and its
+ * plugins report on their own behaviour.
+ *
+ * <p>Metrics are named with dot separated, lower case words, and should be
+ * prefixed with the id of the plugin reporting them - for example,
+ * {@code carbon.commands.executed}.</p>
+ *
+ * <p>A metric may be split by labels, such as the network or command it
+ * is for, by naming it with {@link #name(String, String...)}. Every
+ * metric sharing a name, whatever its labels, should be of the same
+ * kind.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public interface MetricsService {
+
+    /**
+     * Creates the name of a metric with the given labels, in the form
+     * {@code name{key="value",...}}.
+     *
+     * @param name The name of the metric
+     * @param labels The keys and values of the labels, in turn
+     * @return The labelled name
+     * @since 2.0.0
+     */
+    static String name(String name, String... labels) {
+        checkNotNull(name, "name is null!");
+        checkArgument(labels.length % 2 == 0, "labels must be keys and values in turn!");
+        if (labels.length == 0) {
+            return name;
+        }
+
+        final StringBuilder builder = new StringBuilder(name).append('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i != 0) {
+                builder.append(',');
+            }
+            builder.append(labels[i]).append("=\"");
+            for (char c : labels[i + 1].toCharArray()) {
+                switch (c) {
+                    case '\\':
+                        builder.append("\\\\");
+                        break;
+                    case '"':
+                        builder.append("\\\"");
+                        break;
+                    case '\n':
+                        builder.append("\\n");
+                        break;
+                    default:
+                        builder.append(c);
+                        break;
+                }
+            }
+            builder.append('"');
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Gets the counter with the given name, creating it should it not
+     * already exist.
+     *
+     * @param name The name of the counter
+     * @return The counter
+     * @since 2.0.0
+     */
+    Counter counter(String name);
+
+    /**
+     * Gets the histogram with the given name, creating it should it not
+     * already exist.
+     *
+     * @param name The name of the histogram
+     * @return The histogram
+     * @since 2.0.0
+     */
+    Histogram histogram(String name);
+
+    /**
+     * Registers a gauge with the given name, replacing any gauge already
+     * registered with it.
+     *
+     * <p>The gauge is read whenever the metrics are, and so should be
+     * cheap - such as reading the size of a queue.</p>
+     *
+     * @param name The name of the gauge
+     * @param gauge The gauge
+     * @since 2.0.0
+     */
+    void gauge(String name, DoubleSupplier gauge);
+
+    /**
+     * Removes the gauge with the given name.
+     *
+     * @param name The name of the gauge
+     * @since 2.0.0
+     */
+    void removeGauge(String name);
+
+    /**
+     * Gets an immutable map of all the counters, by name.
+     *
+     * @return The counters
+     * @since 2.0.0
+     */
+    Map<String, Counter> getCounters();
+
+    /**
+     * Gets an immutable map of all the histograms, by name.
+     *
+     * @return The histograms
+     * @since 2.0.0
+     */
+    Map<String, Histogram> getHistograms();
+
+    /**
+     * Gets an immutable map of all the gauges, by name.
+     *
+     * @return The gauges
+     * @since 2.0.0
+     */
+    Map<String, DoubleSupplier> getGauges();
+}
@@ -47,4 +47,12 @@ public final class Constants {
      * @since 2.0.0
      */
     public static final Path OPS_PATH = Paths.get("ops.json");
+
+    /**
+     * The path of the file holding which modules have been enabled or
+     * disabled at runtime.
+     *
+     * @since 2.0.0
+     */
+    public static final Path MODULES_PATH = Paths.get("modules.json");
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon;
+
+import uk.jamierocks.mana.carbon.plugin.CarbonPluginManager;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionService;
+import uk.jamierocks.mana.carbon.service.exception.FallbackExceptionService;
+
+/**
+ * Creates the instance of Carbon shared by the benchmarks of a fork,
+ * without connecting to any networks or loading any plugins.
+ *
+ * <p>Carbon's configuration and ops file are created in the working
+ * directory, as they would be when running Carbon itself.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class BenchmarkCarbon {
+
+    private static boolean created;
+
+    private BenchmarkCarbon() {
+    }
+
+    /**
+     * Gets the instance of Carbon, creating it should it not exist.
+     *
+     * @return The instance of Carbon
+     * @since 2.0.0
+     */
+    public static synchronized Carbon get() {
+        if (!created) {
+            new CarbonImpl();
+            ((CarbonPluginManager) Carbon.getCarbon().getPluginManager())
+                    .loadPlugin(((CarbonImpl) Carbon.getCarbon()).getContainer(), Carbon.getCarbon());
+            Carbon.getCarbon().getServiceRegistry()
+                    .registerProvider(Carbon.getCarbon(), ExceptionService.class, new FallbackExceptionService(), Integer.MIN_VALUE);
+            created = true;
+        }
+        return Carbon.getCarbon();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.benchmarks;
+
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.intake.CommandCallable;
+import com.sk89q.intake.Description;
+import com.sk89q.intake.context.CommandLocals;
+import uk.jamierocks.mana.carbon.util.intake.DescriptionBuilder;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utilities shared by the benchmarks.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Creates an implementation of the given interface, whose methods
+     * return the value given for their name - or {@code null} otherwise.
+     *
+     * <p>Used for the interfaces of the IRC library, which can only be
+     * implemented properly by a connected client.</p>
+     *
+     * @param type The interface
+     * @param returns The values to return, by method name
+     * @param <T> The type of the interface
+     * @return The implementation
+     */
+    static <T> T stub(Class<T> type, Map<String, Object> returns) {
+        final ImmutableMap<String, Object> values = ImmutableMap.copyOf(returns);
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> values.get(method.getName())));
+    }
+
+    /**
+     * Creates a command which does nothing, with the given help text.
+     *
+     * @param help The help text
+     * @return The command
+     */
+    static CommandCallable command(String help) {
+        final Description description = new DescriptionBuilder()
+                .help(help)
+                .usage(help)
+                .build();
+
+        return new CommandCallable() {
+            @Override
+            public boolean call(String arguments, CommandLocals locals, String[] parentCommands) {
+                return true;
+            }
+
+            @Override
+            public Description getDescription() {
+                return description;
+            }
+
+            @Override
+            public boolean testPermission(CommandLocals locals) {
+                return true;
+            }
+
+            @Override
+            public List<String> getSuggestions(String arguments, CommandLocals locals) {
+                return Collections.emptyList();
+            }
+        };
+    }
+}
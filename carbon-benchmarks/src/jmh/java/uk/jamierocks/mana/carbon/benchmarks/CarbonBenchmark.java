@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.jamierocks.mana.carbon.BenchmarkCarbon;
+import uk.jamierocks.mana.carbon.Carbon;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the accessors used throughout Carbon and its plugins.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CarbonBenchmark {
+
+    @Setup
+    public void setup() {
+        BenchmarkCarbon.get();
+    }
+
+    @Benchmark
+    public Carbon getCarbon() {
+        return Carbon.getCarbon();
+    }
+
+    @Benchmark
+    public List<String> getAdministrators() {
+        return Carbon.getCarbon().getIRCManager().getAdministrators();
+    }
+
+    @Benchmark
+    public boolean isAdministrator() {
+        return Carbon.getCarbon().getIRCManager().isAdministrator("nick!user@host");
+    }
+}
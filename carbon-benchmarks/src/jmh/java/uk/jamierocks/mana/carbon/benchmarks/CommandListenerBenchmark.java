@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.jamierocks.mana.carbon.BenchmarkCarbon;
+import uk.jamierocks.mana.carbon.command.CommandResolver;
+import uk.jamierocks.mana.carbon.irc.listener.CommandListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the routing {@link CommandListener} does on the IRC event
+ * thread, for every message received.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommandListenerBenchmark {
+
+    private CommandListener listener;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < 50; i++) {
+            BenchmarkCarbon.get().getCommandDispatcher().registerCommand(Benchmarks.command("Command " + i), "command" + i);
+        }
+        this.listener = new CommandListener();
+    }
+
+    @Benchmark
+    public CommandResolver.Match command() {
+        return this.listener.resolve(".command25 some arguments");
+    }
+
+    @Benchmark
+    public CommandResolver.Match unknownCommand() {
+        return this.listener.resolve(".commandx some arguments");
+    }
+
+    @Benchmark
+    public CommandResolver.Match chatter() {
+        return this.listener.resolve("has anyone seen the latest release?");
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.benchmarks;
+
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.Subscribe;
+import org.kitteh.irc.client.library.event.channel.ChannelMessageEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import uk.jamierocks.mana.carbon.BenchmarkCarbon;
+import uk.jamierocks.mana.carbon.event.command.CommandEvent;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks posting a {@link CommandEvent} to Carbon's event bus, with
+ * a varying number of subscribers.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventBusBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int subscribers;
+
+    private final List<Subscriber> registered = Lists.newArrayList();
+    private CommandEvent event;
+
+    @Setup
+    public void setup() {
+        BenchmarkCarbon.get().getCommandDispatcher().registerCommand(Benchmarks.command("A command"), "command");
+
+        // The message event is only held by the command event, never used while posting
+        this.event = new CommandEvent(mock(ChannelMessageEvent.class),
+                BenchmarkCarbon.get().getCommandDispatcher().get("command"));
+
+        for (int i = 0; i < this.subscribers; i++) {
+            final Subscriber subscriber = new Subscriber();
+            BenchmarkCarbon.get().getEventBus().register(subscriber);
+            this.registered.add(subscriber);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.registered.forEach(BenchmarkCarbon.get().getEventBus()::unregister);
+        this.registered.clear();
+    }
+
+    @Benchmark
+    public CommandEvent post() {
+        BenchmarkCarbon.get().getEventBus().post(this.event);
+        return this.event;
+    }
+
+    public static final class Subscriber {
+
+        private int received;
+
+        @Subscribe
+        public void onCommand(CommandEvent event) {
+            this.received++;
+        }
+    }
+}
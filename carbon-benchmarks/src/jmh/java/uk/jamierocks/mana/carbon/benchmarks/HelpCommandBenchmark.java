@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.benchmarks;
+
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.intake.CommandException;
+import com.sk89q.intake.context.CommandLocals;
+import com.sk89q.intake.util.auth.AuthorizationException;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import uk.jamierocks.mana.carbon.BenchmarkCarbon;
+import uk.jamierocks.mana.carbon.command.CarbonDispatcher;
+import uk.jamierocks.mana.carbon.modules.help.HelpCache;
+import uk.jamierocks.mana.carbon.modules.help.HelpSearchIndex;
+import uk.jamierocks.mana.carbon.modules.help.command.HelpCommand;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks listing all commands, which is rendered once and then served
+ * from the cache, rendering the help of a single command, and searching
+ * for a command, with a varying number of commands registered.
+ *
+ * <p>The rendered help is sent through a client which discards it.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HelpCommandBenchmark {
+
+    private static final String[] PARENT_COMMANDS = { "help" };
+
+    @Param({ "10", "100", "500" })
+    public int commands;
+
+    private final HelpSearchIndex index = new HelpSearchIndex();
+    private final HelpCommand help = new HelpCommand(new HelpCache(400), this.index);
+    private final CommandLocals namespace = new CommandLocals();
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < this.commands; i++) {
+            BenchmarkCarbon.get().getCommandDispatcher()
+                    .registerCommand(Benchmarks.command("Does thing number " + i), "command" + i);
+        }
+        BenchmarkCarbon.get().getCommandDispatcher().getCommands().forEach(this.index::add);
+
+        final Client client = Benchmarks.stub(Client.class, ImmutableMap.of("getName", "benchmark"));
+        this.namespace.put(User.class, Benchmarks.stub(User.class, ImmutableMap.of(
+                "getClient", client,
+                "getNick", "user",
+                "getName", "user!user@host")));
+    }
+
+    @TearDown
+    public void tearDown() {
+        ((CarbonDispatcher) BenchmarkCarbon.get().getCommandDispatcher()).unregisterCommands(command -> true);
+    }
+
+    @Benchmark
+    public boolean all() throws CommandException, AuthorizationException {
+        return this.help.call("", this.namespace, PARENT_COMMANDS);
+    }
+
+    @Benchmark
+    public boolean single() throws CommandException, AuthorizationException {
+        return this.help.call("command5", this.namespace, PARENT_COMMANDS);
+    }
+
+    @Benchmark
+    public boolean search() throws CommandException, AuthorizationException {
+        return this.help.call("search thing number 5", this.namespace, PARENT_COMMANDS);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.jamierocks.mana.carbon.BenchmarkCarbon;
+import uk.jamierocks.mana.carbon.service.ServiceRegistry;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks looking up services, and reporting exceptions through the
+ * exception service.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ServiceBenchmark {
+
+    private static final Exception EXCEPTION = new IllegalStateException("Benchmark");
+
+    private ServiceRegistry registry;
+
+    @Setup
+    public void setup() {
+        this.registry = BenchmarkCarbon.get().getServiceRegistry();
+        this.registry.registerProvider(BenchmarkCarbon.get(), Service.class, new Service());
+    }
+
+    @Benchmark
+    public Optional<Service> provide() {
+        return this.registry.provide(Service.class);
+    }
+
+    @Benchmark
+    public Optional<Missing> provideMissing() {
+        return this.registry.provide(Missing.class);
+    }
+
+    @Benchmark
+    public void report() {
+        ExceptionReporter.report("Benchmark", EXCEPTION);
+    }
+
+    public static final class Service {
+    }
+
+    public interface Missing {
+    }
+}
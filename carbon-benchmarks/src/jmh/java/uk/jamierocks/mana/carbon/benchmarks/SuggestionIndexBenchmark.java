@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.jamierocks.mana.carbon.benchmarks;
+
+import com.sk89q.intake.dispatcher.SimpleDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.jamierocks.mana.carbon.command.SuggestionIndex;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks suggesting commands for a mistyped command, and completing a
+ * partial one, with a varying number of aliases.
+ *
+ * <p>The aliases are random, so share few prefixes - which is the worst
+ * case for the index.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SuggestionIndexBenchmark {
+
+    @Param({ "100", "1000", "5000" })
+    public int aliases;
+
+    private SuggestionIndex index;
+    private String mistyped;
+    private String partial;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(0);
+        final SimpleDispatcher dispatcher = new SimpleDispatcher();
+        String alias = null;
+        while (dispatcher.getAliases().size() < this.aliases) {
+            final char[] chars = new char[4 + random.nextInt(8)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) ('a' + random.nextInt(26));
+            }
+            if (!dispatcher.contains(new String(chars))) {
+                alias = new String(chars);
+                dispatcher.registerCommand(Benchmarks.command(alias), alias);
+            }
+        }
+        this.index = SuggestionIndex.of(dispatcher.getCommands());
+
+        // Swaps two characters of the last alias, which is two edits away from it
+        this.mistyped = alias.charAt(1) + alias.substring(0, 1) + alias.substring(2);
+        this.partial = alias.substring(0, 2);
+    }
+
+    @Benchmark
+    public List<String> suggest() {
+        return this.index.suggest(this.mistyped, 2, 3);
+    }
+
+    @Benchmark
+    public List<String> complete() {
+        return this.index.complete(this.partial);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for the dispatch of a command, from its
+ * permission check to its completion.
+ *
+ * <p>The implementation of {@link CommandDispatchEvent}, created by
+ * {@link JfrEventFactory}.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+@Name("carbon.CommandDispatch")
+@Label("Command Dispatch")
+@Category({ "Carbon", "Commands" })
+@Description("The dispatch of a command")
+@StackTrace(false)
+final class JfrCommandDispatchEvent extends Event implements CommandDispatchEvent {
+
+    @Label("Command")
+    private String command;
+
+    @Label("Network")
+    private String network;
+
+    @Label("Channel")
+    private String channel;
+
+    @Label("User Hash")
+    @Description("A hash of the user's nick, user and host, which identifies them without naming them")
+    private int userHash;
+
+    @Label("Outcome")
+    private String outcome;
+
+    /**
+     * Begins timing the dispatch of a command.
+     */
+    JfrCommandDispatchEvent() {
+        this.begin();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finish(String command, String network, String channel, String user, String outcome) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.command = command;
+            this.network = network;
+            this.channel = channel;
+            this.userHash = user.hashCode();
+            this.outcome = outcome;
+            this.commit();
+        }
+    }
+}
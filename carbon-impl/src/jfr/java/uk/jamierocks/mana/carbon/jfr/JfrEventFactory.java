@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.jfr;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * The implementation of {@link EventFactory}, which also keeps
+ * {@link CarbonFlightRecorder#isRecording()} up to date.
+ *
+ * <p>Loaded reflectively by {@link CarbonFlightRecorder}, so must keep
+ * its public no-args constructor.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class JfrEventFactory implements EventFactory, FlightRecorderListener {
+
+    public JfrEventFactory() {
+        FlightRecorder.addListener(this);
+        // Recordings started on the command line began before the listener was added
+        this.update();
+    }
+
+    @Override
+    public CommandDispatchEvent commandDispatch() {
+        return new JfrCommandDispatchEvent();
+    }
+
+    @Override
+    public EventPostEvent eventPost() {
+        return new JfrEventPostEvent();
+    }
+
+    @Override
+    public IrcSendEvent ircSend() {
+        return new JfrIrcSendEvent();
+    }
+
+    @Override
+    public PluginLoadEvent pluginLoad() {
+        return new JfrPluginLoadEvent();
+    }
+
+    @Override
+    public void recorderInitialized(FlightRecorder recorder) {
+        this.update();
+    }
+
+    @Override
+    public void recordingStateChanged(Recording recording) {
+        this.update();
+    }
+
+    private void update() {
+        // Only asked once initialised, as asking for the recorder would otherwise start it
+        boolean running = false;
+        if (FlightRecorder.isInitialized()) {
+            for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings()) {
+                running |= recording.getState() == RecordingState.RUNNING;
+            }
+        }
+        CarbonFlightRecorder.setRecording(running);
+    }
+}
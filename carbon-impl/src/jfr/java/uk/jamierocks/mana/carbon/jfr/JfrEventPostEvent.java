@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for the dispatch of an event to a single
+ * subscriber of Carbon's event bus.
+ *
+ * <p>The implementation of {@link EventPostEvent}, created by
+ * {@link JfrEventFactory}.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+@Name("carbon.EventPost")
+@Label("Event Post")
+@Category({ "Carbon", "Events" })
+@Description("The dispatch of an event to a subscriber")
+@StackTrace(false)
+final class JfrEventPostEvent extends Event implements EventPostEvent {
+
+    @Label("Event Type")
+    private Class<?> eventType;
+
+    @Label("Subscriber")
+    @Description("The listener's class and the subscriber method")
+    private String subscriber;
+
+    /**
+     * Begins timing the dispatch of an event.
+     */
+    JfrEventPostEvent() {
+        this.begin();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finish(Class<?> eventType, Object listener, String method) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.eventType = eventType;
+            this.subscriber = listener.getClass().getName() + '#' + method;
+            this.commit();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A Flight Recorder event for a line sent to an IRC network by the
+ * outbound scheduler.
+ *
+ * <p>The implementation of {@link IrcSendEvent}, created by
+ * {@link JfrEventFactory}.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+@Name("carbon.IrcSend")
+@Label("IRC Send")
+@Category({ "Carbon", "IRC" })
+@Description("A line sent to an IRC network")
+@StackTrace(false)
+final class JfrIrcSendEvent extends Event implements IrcSendEvent {
+
+    @Label("Network")
+    private String network;
+
+    @Label("Target")
+    private String target;
+
+    @Label("Bytes")
+    @DataAmount
+    private int bytes;
+
+    @Label("Queued Time")
+    @Description("The time the message waited in the outbound scheduler")
+    @Timespan(Timespan.NANOSECONDS)
+    private long queuedTime;
+
+    /**
+     * Begins timing the sending of a line.
+     */
+    JfrIrcSendEvent() {
+        this.begin();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finish(String network, String target, String line, long queuedTime) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.network = network;
+            this.target = target;
+            this.bytes = line.getBytes(StandardCharsets.UTF_8).length + 2;
+            this.queuedTime = queuedTime;
+            this.commit();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for a phase of loading a plugin, such as its
+ * construction or its handling of a lifecycle event.
+ *
+ * <p>The implementation of {@link PluginLoadEvent}, created by
+ * {@link JfrEventFactory}.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+@Name("carbon.PluginLoad")
+@Label("Plugin Load")
+@Category({ "Carbon", "Plugins" })
+@Description("A phase of loading a plugin")
+@StackTrace(false)
+final class JfrPluginLoadEvent extends Event implements PluginLoadEvent {
+
+    @Label("Plugin")
+    private String plugin;
+
+    @Label("Phase")
+    @Description("construct, register, or the name of a lifecycle event")
+    private String phase;
+
+    /**
+     * Begins timing a phase of loading a plugin.
+     */
+    JfrPluginLoadEvent() {
+        this.begin();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finish(String plugin, String phase) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.plugin = plugin;
+            this.phase = phase;
+            this.commit();
+        }
+    }
+}
@@ -20,12 +20,16 @@ import static uk.jamierocks.mana.carbon.util.Constants.CONFIG_PATH;
 import static uk.jamierocks.mana.carbon.util.Constants.OPS_PATH;
 
 import com.google.common.eventbus.EventBus;
+import com.google.inject.Injector;
 import com.sk89q.intake.dispatcher.Dispatcher;
-import com.sk89q.intake.dispatcher.SimpleDispatcher;
 import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.jamierocks.mana.carbon.command.CarbonDispatcher;
 import uk.jamierocks.mana.carbon.config.CarbonConfigManager;
+import uk.jamierocks.mana.carbon.event.CarbonEventBus;
+import uk.jamierocks.mana.carbon.guice.CarbonGuiceModule;
+import uk.jamierocks.mana.carbon.guice.CarbonInjectors;
 import uk.jamierocks.mana.carbon.irc.CarbonIRCManager;
 import uk.jamierocks.mana.carbon.irc.IRCManager;
 import uk.jamierocks.mana.carbon.module.CarbonModuleManager;
@@ -36,10 +40,9 @@ import uk.jamierocks.mana.carbon.plugin.PluginManager;
 import uk.jamierocks.mana.carbon.service.CarbonServiceRegistry;
 import uk.jamierocks.mana.carbon.service.ServiceRegistry;
 import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+import uk.jamierocks.mana.carbon.service.metrics.CarbonMetricsService;
+import uk.jamierocks.mana.carbon.service.metrics.MetricsService;
 import uk.jamierocks.mana.carbon.util.Constants;
-import uk.jamierocks.mana.carbon.util.ReflectionUtil;
-import uk.jamierocks.mana.carbon.util.ReflectionUtilException;
-import uk.jamierocks.mana.carbon.util.event.ExceptionReporterEventLoggingHandler;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -54,42 +57,66 @@ public final class CarbonImpl extends Carbon {
 
     public static final Logger LOGGER = LoggerFactory.getLogger("Carbon");
 
+    private final CarbonMetricsService metrics;
     private final EventBus eventBus;
     private final PluginManager pluginManager;
     private final ModuleManager moduleManager;
     private final IRCManager ircManager;
     private final ServiceRegistry serviceRegistry;
     private final Dispatcher commandDispatcher;
+    private final PluginContainer container;
+    private final Injector injector;
     private CarbonConfiguration configuration;
 
     protected CarbonImpl() {
         LOGGER.info("Loading Carbon " + Constants.VERSION);
-        this.eventBus = new EventBus(new ExceptionReporterEventLoggingHandler());
+        this.metrics = new CarbonMetricsService();
+        this.eventBus = new CarbonEventBus(this.metrics);
         this.pluginManager = new CarbonPluginManager();
         this.moduleManager = new CarbonModuleManager();
-        this.ircManager = new CarbonIRCManager();
+        this.ircManager = new CarbonIRCManager(this.metrics);
         this.serviceRegistry = new CarbonServiceRegistry();
-        this.commandDispatcher = new SimpleDispatcher();
+        this.commandDispatcher = new CarbonDispatcher(this.eventBus);
 
         // Configuration-related stuff
         this.configuration = CarbonConfigManager.getCarbonConfig();
         CarbonConfigManager.checkOpsFile();
         LOGGER.info("Using command prefix: " + this.configuration.getCommands().getPrefix());
 
-        // Forcefully sets the container
-        this.setContainer();
+        this.container = PluginContainer.of("carbon", "Carbon", Constants.VERSION, this.configuration.getNode(), this);
+        this.injector = CarbonInjectors.createRoot(new CarbonGuiceModule(this, this.metrics));
     }
 
-    private void setContainer() {
-        try {
-            ReflectionUtil.setStaticFinal(Carbon.class, "CONTAINER",
-                    PluginContainer.of("carbon", "Carbon", Constants.VERSION, this.configuration.getNode(), this));
-        } catch (ReflectionUtilException e) {
-            // If this ever occurs something massively wrong is going on.
-            // It is probably for the best to exit the application
-            ExceptionReporter.report("Carbon has experienced a fatal error! Exiting!", e);
-            System.exit(0);
-        }
+    /**
+     * Gets the {@link PluginContainer} representing Carbon itself.
+     *
+     * @return Carbon's plugin container
+     * @since 2.0.0
+     */
+    public PluginContainer getContainer() {
+        return this.container;
+    }
+
+    /**
+     * Gets the root {@link Injector}, holding the core bindings, from which
+     * the injectors of plugins and modules are created.
+     *
+     * @return The root injector
+     * @since 2.0.0
+     */
+    public Injector getInjector() {
+        return this.injector;
+    }
+
+    /**
+     * Gets the {@link MetricsService} Carbon reports its own metrics to,
+     * which is also registered as the default provider of the service.
+     *
+     * @return Carbon's metrics
+     * @since 2.0.0
+     */
+    public CarbonMetricsService getMetrics() {
+        return this.metrics;
     }
 
     @Override
@@ -19,14 +19,24 @@ package uk.jamierocks.mana.carbon;
 import uk.jamierocks.mana.carbon.event.state.InitialisationEvent;
 import uk.jamierocks.mana.carbon.event.state.PostInitialisationEvent;
 import uk.jamierocks.mana.carbon.event.state.PreInitialisationEvent;
+import uk.jamierocks.mana.carbon.guice.CarbonInjectors;
 import uk.jamierocks.mana.carbon.irc.CarbonIRCManager;
 import uk.jamierocks.mana.carbon.modules.help.HelpModule;
 import uk.jamierocks.mana.carbon.modules.invite.InviteModule;
 import uk.jamierocks.mana.carbon.plugin.CarbonPluginManager;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
 import uk.jamierocks.mana.carbon.service.exception.ExceptionService;
 import uk.jamierocks.mana.carbon.service.exception.FallbackExceptionService;
+import uk.jamierocks.mana.carbon.service.metrics.CarbonMetricsService;
+import uk.jamierocks.mana.carbon.service.metrics.MetricsHttpServer;
+import uk.jamierocks.mana.carbon.service.metrics.MetricsJmxExporter;
+import uk.jamierocks.mana.carbon.service.metrics.MetricsService;
 import uk.jamierocks.mana.carbon.irc.listener.CommandListener;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
 /**
  * The application entry-point for Carbon.
  *
@@ -40,15 +50,23 @@ public final class Main {
         new CarbonImpl();
 
         // Load all of the plugins
-        ((CarbonPluginManager) Carbon.getCarbon().getPluginManager()).loadPlugin(Carbon.CONTAINER, Carbon.getCarbon());
+        ((CarbonPluginManager) Carbon.getCarbon().getPluginManager()).loadPlugin(((CarbonImpl) Carbon.getCarbon()).getContainer(), Carbon.getCarbon());
+
+        // Register metrics before any plugin is constructed, so plugins may report to them from the start
+        Carbon.getCarbon().getServiceRegistry()
+                .registerProvider(Carbon.getCarbon(), MetricsService.class, ((CarbonImpl) Carbon.getCarbon()).getMetrics(), Integer.MIN_VALUE);
+
         ((CarbonPluginManager) Carbon.getCarbon().getPluginManager()).loadAllPlugins();
 
         // Pre Init state
-        new PreInitialisationEvent().post();
+        ((CarbonPluginManager) Carbon.getCarbon().getPluginManager()).postLifecycleEvent(new PreInitialisationEvent());
 
-        // Register services
+        // Register services, at the lowest rank so plugins may override them
         Carbon.getCarbon().getServiceRegistry()
-                .registerProvider(Carbon.getCarbon(), ExceptionService.class, new FallbackExceptionService());
+                .registerProvider(Carbon.getCarbon(), ExceptionService.class, new FallbackExceptionService(), Integer.MIN_VALUE);
+
+        // Expose metrics, as configured
+        exportMetrics(((CarbonImpl) Carbon.getCarbon()).getMetrics(), Carbon.getCarbon().getConfiguration().getMetrics());
 
         // Initialise IRC
         ((CarbonIRCManager) Carbon.getCarbon().getIRCManager()).initialise();
@@ -56,14 +74,37 @@ public final class Main {
         // Register command listener
         Carbon.getCarbon().getIRCManager().registerIRCEventListener(new CommandListener());
 
+        // Wait for enough networks to be connected
+        ((CarbonIRCManager) Carbon.getCarbon().getIRCManager()).awaitQuorum();
+
         // Init state
-        new InitialisationEvent().post();
+        ((CarbonPluginManager) Carbon.getCarbon().getPluginManager()).postLifecycleEvent(new InitialisationEvent());
 
         // Register builtin modules
         Carbon.getCarbon().getModuleManager().registerModule(Carbon.getCarbon(), InviteModule.class);
         Carbon.getCarbon().getModuleManager().registerModule(Carbon.getCarbon(), HelpModule.class);
 
         // Post Init state
-        new PostInitialisationEvent().post();
+        ((CarbonPluginManager) Carbon.getCarbon().getPluginManager()).postLifecycleEvent(new PostInitialisationEvent());
+
+        CarbonImpl.LOGGER.info("Created " + CarbonInjectors.getCreated() + " injectors in "
+                + CarbonInjectors.getTotalTime(TimeUnit.MILLISECONDS) + "ms");
+    }
+
+    private static void exportMetrics(CarbonMetricsService metrics, CarbonConfiguration.Metrics config) {
+        if (config.isJmxEnabled()) {
+            new MetricsJmxExporter(metrics).start();
+        }
+        if (config.isHttpEnabled()) {
+            try {
+                final MetricsHttpServer server = new MetricsHttpServer(metrics,
+                        new InetSocketAddress(config.getHttpHost(), config.getHttpPort()));
+                server.start();
+                CarbonImpl.LOGGER.info("Serving metrics on http://" + config.getHttpHost() + ':'
+                        + server.getAddress().getPort() + "/metrics");
+            } catch (IOException e) {
+                ExceptionReporter.report("Failed to start the metrics HTTP server", e);
+            }
+        }
     }
 }
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.command;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.eventbus.EventBus;
+import com.sk89q.intake.CommandCallable;
+import com.sk89q.intake.CommandException;
+import com.sk89q.intake.CommandMapping;
+import com.sk89q.intake.Description;
+import com.sk89q.intake.context.CommandLocals;
+import com.sk89q.intake.dispatcher.Dispatcher;
+import com.sk89q.intake.dispatcher.SimpleDispatcher;
+import com.sk89q.intake.util.auth.AuthorizationException;
+import uk.jamierocks.mana.carbon.event.command.CommandsChangedEvent;
+import uk.jamierocks.mana.carbon.module.ModuleRecorder;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The implementation of {@link Dispatcher} for Carbon.
+ *
+ * <p>Registered commands are held in a {@link SimpleDispatcher}, which is
+ * never modified once published, so commands can be looked up and called
+ * from any thread without locking. Registering or unregistering commands
+ * only discards it, and a new one is built when next needed, so
+ * registering many commands at once, e.g. at startup, builds it once
+ * rather than for each. A {@link CommandsChangedEvent} is posted for each
+ * change, outside of the dispatcher's lock.</p>
+ *
+ * <p>The {@link CommandResolver} and {@link SuggestionIndex} over all
+ * registered aliases are likewise only built when first needed.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class CarbonDispatcher implements Dispatcher {
+
+    // The edit distance commands are suggested within, when completing
+    private static final int SUGGESTION_DISTANCE = 2;
+
+    private final EventBus eventBus;
+    private final List<Registration> registrations = Lists.newArrayList();
+    // Lower cased, as the dispatcher looks them up, so duplicates are rejected before it is built
+    private final Set<String> aliases = Sets.newHashSet();
+    // Null when commands have changed since it was last built
+    private volatile Commands commands;
+
+    public CarbonDispatcher(EventBus eventBus) {
+        this.eventBus = checkNotNull(eventBus, "eventBus is null!");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void registerCommand(CommandCallable callable, String... alias) {
+        checkNotNull(callable, "callable is null!");
+        checkArgument(alias.length > 0, "alias is empty!");
+        final Registration registration = new Registration(callable, alias);
+        synchronized (this) {
+            for (String name : registration.aliases) {
+                checkArgument(!this.aliases.contains(name.toLowerCase()),
+                        "The alias " + name + " is already registered!");
+            }
+            for (String name : registration.aliases) {
+                this.aliases.add(name.toLowerCase());
+            }
+            this.registrations.add(registration);
+            this.commands = null;
+        }
+        ModuleRecorder.record(callable);
+        this.eventBus.post(new CommandsChangedEvent(this, Collections.singletonList(registration),
+                Collections.emptyList()));
+    }
+
+    /**
+     * Unregisters every command matching the given filter.
+     *
+     * @param filter The filter for commands
+     * @return The number of commands unregistered
+     * @since 2.0.0
+     */
+    public int unregisterCommands(Predicate<CommandCallable> filter) {
+        final List<CommandMapping> removed = Lists.newArrayList();
+        synchronized (this) {
+            for (Iterator<Registration> it = this.registrations.iterator(); it.hasNext(); ) {
+                final Registration registration = it.next();
+                if (filter.test(registration.callable)) {
+                    for (String name : registration.aliases) {
+                        this.aliases.remove(name.toLowerCase());
+                    }
+                    removed.add(registration);
+                    it.remove();
+                }
+            }
+            if (removed.isEmpty()) {
+                return 0;
+            }
+
+            this.commands = null;
+        }
+        this.eventBus.post(new CommandsChangedEvent(this, Collections.emptyList(), removed));
+        return removed.size();
+    }
+
+    /**
+     * Gets the resolver for the currently registered commands.
+     *
+     * @return The command resolver
+     * @since 2.0.0
+     */
+    public CommandResolver getResolver() {
+        return this.commands().resolver();
+    }
+
+    /**
+     * Gets the suggestion index for the currently registered commands.
+     *
+     * @return The suggestion index
+     * @since 2.0.0
+     */
+    public SuggestionIndex getSuggestionIndex() {
+        return this.commands().suggestions();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<CommandMapping> getCommands() {
+        return this.commands().dispatcher.getCommands();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getPrimaryAliases() {
+        return this.commands().dispatcher.getPrimaryAliases();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<String> getAliases() {
+        return this.commands().dispatcher.getAliases();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CommandMapping get(String alias) {
+        return this.commands().dispatcher.get(alias);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(String alias) {
+        return this.commands().dispatcher.contains(alias);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean call(String arguments, CommandLocals locals, String[] parentCommands)
+            throws CommandException, AuthorizationException {
+        return this.commands().dispatcher.call(arguments, locals, parentCommands);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Description getDescription() {
+        return this.commands().dispatcher.getDescription();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean testPermission(CommandLocals locals) {
+        return this.commands().dispatcher.testPermission(locals);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>A partial command is completed to every alias it begins, followed
+     * by the aliases it may be a mistyping of, of the commands the user
+     * may use.</p>
+     */
+    @Override
+    public List<String> getSuggestions(String arguments, CommandLocals locals) throws CommandException {
+        if (arguments.indexOf(' ') != -1) {
+            return this.commands().dispatcher.getSuggestions(arguments, locals);
+        }
+
+        final Commands commands = this.commands();
+        final SuggestionIndex index = commands.suggestions();
+        final List<String> candidates = index.complete(arguments);
+        if (!arguments.isEmpty()) {
+            for (String alias : index.suggest(arguments, SUGGESTION_DISTANCE, index.size())) {
+                if (!candidates.contains(alias)) {
+                    candidates.add(alias);
+                }
+            }
+        }
+
+        final List<String> suggestions = Lists.newArrayListWithCapacity(candidates.size());
+        for (String alias : candidates) {
+            if (commands.dispatcher.get(alias).getCallable().testPermission(locals)) {
+                suggestions.add(alias);
+            }
+        }
+        return suggestions;
+    }
+
+    private Commands commands() {
+        final Commands commands = this.commands;
+        if (commands != null) {
+            return commands;
+        }
+
+        synchronized (this) {
+            if (this.commands == null) {
+                final SimpleDispatcher dispatcher = new SimpleDispatcher();
+                for (Registration registration : this.registrations) {
+                    dispatcher.registerCommand(registration.callable, registration.aliases);
+                }
+                this.commands = new Commands(dispatcher);
+            }
+            return this.commands;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the registered commands.
+     */
+    private static final class Commands {
+
+        private final SimpleDispatcher dispatcher;
+        // Built on first use, racing threads at worst build them twice
+        private volatile CommandResolver resolver;
+        private volatile SuggestionIndex suggestions;
+
+        private Commands(SimpleDispatcher dispatcher) {
+            this.dispatcher = dispatcher;
+        }
+
+        private CommandResolver resolver() {
+            CommandResolver resolver = this.resolver;
+            if (resolver == null) {
+                resolver = CommandResolver.of(this.dispatcher.getCommands());
+                this.resolver = resolver;
+            }
+            return resolver;
+        }
+
+        private SuggestionIndex suggestions() {
+            SuggestionIndex suggestions = this.suggestions;
+            if (suggestions == null) {
+                suggestions = SuggestionIndex.of(this.dispatcher.getCommands());
+                this.suggestions = suggestions;
+            }
+            return suggestions;
+        }
+    }
+
+    private static final class Registration implements CommandMapping {
+
+        private final CommandCallable callable;
+        private final String[] aliases;
+
+        private Registration(CommandCallable callable, String[] aliases) {
+            this.callable = callable;
+            this.aliases = aliases.clone();
+        }
+
+        @Override
+        public String getPrimaryAlias() {
+            return this.aliases[0];
+        }
+
+        @Override
+        public String[] getAllAliases() {
+            return this.aliases.clone();
+        }
+
+        @Override
+        public CommandCallable getCallable() {
+            return this.callable;
+        }
+
+        @Override
+        public Description getDescription() {
+            return this.callable.getDescription();
+        }
+    }
+}
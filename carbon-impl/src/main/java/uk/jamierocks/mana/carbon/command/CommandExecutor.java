@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.command;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import uk.jamierocks.mana.carbon.CarbonConfiguration;
+import uk.jamierocks.mana.carbon.CarbonImpl;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Executes commands away from the IRC event thread.
+ *
+ * <p>Commands submitted under the same key (e.g. a channel) are executed
+ * one after another, in the order they were submitted, while commands
+ * under different keys may execute in parallel.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class CommandExecutor {
+
+    private final Mode mode;
+    private final RejectionPolicy rejectionPolicy;
+    private final int queueDepth;
+    private final ExecutorService executor;
+    private final Map<String, Deque<Task>> queues = new ConcurrentHashMap<>();
+
+    public CommandExecutor(CarbonConfiguration.Commands.Execution config) {
+        checkNotNull(config, "config is null!");
+
+        Mode mode = parse(Mode.class, config.getMode(), Mode.POOL);
+        ExecutorService executor = null;
+        if (mode == Mode.VIRTUAL) {
+            executor = newVirtualThreadExecutor();
+            if (executor == null) {
+                CarbonImpl.LOGGER.warn("Virtual threads are not supported by this JVM, using the pool mode instead");
+                mode = Mode.POOL;
+            }
+        }
+        if (mode == Mode.POOL) {
+            executor = Executors.newFixedThreadPool(Math.max(1, config.getThreads()), new ThreadFactoryBuilder()
+                    .setNameFormat("Carbon Command Executor #%d")
+                    .setDaemon(true)
+                    .build());
+        }
+
+        this.mode = mode;
+        this.rejectionPolicy = parse(RejectionPolicy.class, config.getRejectionPolicy(), RejectionPolicy.REPLY);
+        this.queueDepth = Math.max(1, config.getQueueDepth());
+        this.executor = executor;
+
+        CarbonImpl.LOGGER.info("Executing commands in the " + this.mode.name().toLowerCase(Locale.ENGLISH) + " mode");
+    }
+
+    /**
+     * Executes the given command, after all other commands submitted under
+     * the same key have completed.
+     *
+     * <p>Should the queue for the key be full, the configured
+     * {@link RejectionPolicy} is applied, which may run the given rejection
+     * handler on the calling thread. The command itself is never run on the
+     * calling thread, as it would then overtake those still queued for the
+     * key.</p>
+     *
+     * @param key The ordering key
+     * @param command The command
+     * @param rejected The rejection handler
+     * @since 2.0.0
+     */
+    public void execute(String key, Runnable command, Runnable rejected) {
+        checkNotNull(key, "key is null!");
+        checkNotNull(command, "command is null!");
+        checkNotNull(rejected, "rejected is null!");
+
+        if (this.mode == Mode.DIRECT) {
+            command.run();
+            return;
+        }
+
+        // Only the queue is updated within compute, so submitting never happens while holding its lock
+        final Task task = new Task(command, rejected);
+        final int[] position = {-1};
+        this.queues.compute(key, (k, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+            }
+
+            // The head of the queue is the command currently executing
+            if (queue.size() <= this.queueDepth) {
+                queue.add(task);
+                position[0] = queue.size() - 1;
+            }
+            return queue;
+        });
+
+        if (position[0] == -1) {
+            this.reject(key, task);
+        } else if (position[0] == 0) {
+            this.submit(key, task);
+        }
+    }
+
+    private void submit(String key, Task task) {
+        try {
+            this.executor.execute(() -> this.run(key, task));
+        } catch (RejectedExecutionException e) {
+            // Nothing queued for the key can run, so every command waiting is rejected
+            ExceptionReporter.report("Failed to submit a command for " + key + "!", e);
+            final Deque<Task> queue = this.queues.remove(key);
+            if (queue != null) {
+                queue.forEach(waiting -> this.reject(key, waiting));
+            }
+        }
+    }
+
+    private void run(String key, Task task) {
+        try {
+            task.command.run();
+        } catch (RuntimeException e) {
+            ExceptionReporter.report("Failed to execute command!", e);
+        } finally {
+            final Task[] next = new Task[1];
+            this.queues.computeIfPresent(key, (k, queue) -> {
+                queue.poll();
+                next[0] = queue.peek();
+                return next[0] == null ? null : queue;
+            });
+            if (next[0] != null) {
+                this.submit(key, next[0]);
+            }
+        }
+    }
+
+    private void reject(String key, Task task) {
+        switch (this.rejectionPolicy) {
+            case REPLY:
+                try {
+                    task.rejected.run();
+                } catch (RuntimeException e) {
+                    ExceptionReporter.report("Failed to reject command!", e);
+                }
+                break;
+            default:
+                CarbonImpl.LOGGER.debug("Dropped command for " + key);
+                break;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, E fallback) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ENGLISH).replace('-', '_'));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            CarbonImpl.LOGGER.warn("Unknown " + type.getSimpleName() + ": " + value + ", using " + fallback.name());
+            return fallback;
+        }
+    }
+
+    /**
+     * The modes commands can be executed in.
+     *
+     * @since 2.0.0
+     */
+    public enum Mode {
+
+        /**
+         * Commands are executed on the IRC event thread.
+         */
+        DIRECT,
+
+        /**
+         * Commands are executed on a fixed pool of worker threads.
+         */
+        POOL,
+
+        /**
+         * Each command is executed on its own virtual thread.
+         */
+        VIRTUAL
+    }
+
+    /**
+     * The policies for when a queue is full.
+     *
+     * @since 2.0.0
+     */
+    public enum RejectionPolicy {
+
+        /**
+         * The rejection handler is run, usually replying to the user.
+         */
+        REPLY,
+
+        /**
+         * The command is silently dropped.
+         */
+        DROP
+    }
+
+    private static final class Task {
+
+        private final Runnable command;
+        private final Runnable rejected;
+
+        private Task(Runnable command, Runnable rejected) {
+            this.command = command;
+            this.rejected = rejected;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.command;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.Maps;
+import uk.jamierocks.mana.carbon.CarbonConfiguration;
+
+import java.util.Map;
+
+/**
+ * Limits the rate commands may be used at, by each user, in each channel
+ * and overall, before they are executed.
+ *
+ * <p>Each command has its own limits, so a user flooding one command is
+ * not stopped from using others. A use is only counted against a limit
+ * if it is allowed by all of them.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class CommandRateLimiter {
+
+    private final CarbonConfiguration.Commands.RateLimit config;
+    private final Map<String, Limits> limits = Maps.newConcurrentMap();
+
+    public CommandRateLimiter(CarbonConfiguration.Commands.RateLimit config) {
+        this.config = checkNotNull(config, "config is null!");
+    }
+
+    /**
+     * Takes a use of the given command, by the given user in the given
+     * channel.
+     *
+     * @param command The primary alias of the command
+     * @param user The user, as {@code user@host} so changing nick is no escape
+     * @param channel The channel, qualified by its network
+     * @return The scope the use was limited by, or {@code null} if it is allowed
+     * @since 2.0.0
+     */
+    public Scope tryAcquire(String command, String user, String channel) {
+        if (!this.config.isEnabled()) {
+            return null;
+        }
+
+        Limits limits = this.limits.get(command);
+        if (limits == null) {
+            limits = this.limits.computeIfAbsent(command, c -> new Limits(this.config, c));
+        }
+
+        final long now = System.nanoTime();
+        if (limits.user != null && !limits.user.tryAcquire(user, now)) {
+            return Scope.USER;
+        }
+        if (limits.channel != null && !limits.channel.tryAcquire(channel, now)) {
+            if (limits.user != null) {
+                limits.user.release(user);
+            }
+            return Scope.CHANNEL;
+        }
+        if (limits.command != null && !limits.command.tryAcquire(command, now)) {
+            if (limits.user != null) {
+                limits.user.release(user);
+            }
+            if (limits.channel != null) {
+                limits.channel.release(channel);
+            }
+            return Scope.COMMAND;
+        }
+        return null;
+    }
+
+    /**
+     * The scopes commands are limited in.
+     *
+     * @since 2.0.0
+     */
+    public enum Scope {
+
+        /**
+         * Each user, by their {@code user@host}.
+         */
+        USER,
+
+        /**
+         * Each channel, on each network.
+         */
+        CHANNEL,
+
+        /**
+         * The command as a whole.
+         */
+        COMMAND
+    }
+
+    private static final class Limits {
+
+        private final TokenBuckets user;
+        private final TokenBuckets channel;
+        private final TokenBuckets command;
+
+        private Limits(CarbonConfiguration.Commands.RateLimit config, String command) {
+            this.user = buckets(config.getUserLimit(command));
+            this.channel = buckets(config.getChannelLimit(command));
+            this.command = buckets(config.getCommandLimit(command));
+        }
+
+        private static TokenBuckets buckets(CarbonConfiguration.Commands.Limit limit) {
+            return limit.isUnlimited() ? null : new TokenBuckets(limit);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.command;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.intake.CommandMapping;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An immutable, case-insensitive character trie over the aliases of a
+ * collection of {@link CommandMapping}s.
+ *
+ * <p>Resolving a message walks the trie once, character by character,
+ * and does not allocate. Messages that are not commands are rejected on
+ * the first character that does not lead anywhere in the trie.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class CommandResolver {
+
+    /**
+     * A resolver which matches nothing.
+     */
+    public static final CommandResolver EMPTY = new CommandResolver(new Node());
+
+    private final Node root;
+
+    private CommandResolver(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Builds a resolver from the aliases of the given command mappings.
+     *
+     * @param mappings The command mappings
+     * @return The resolver
+     * @since 2.0.0
+     */
+    public static CommandResolver of(Collection<CommandMapping> mappings) {
+        checkNotNull(mappings, "mappings is null!");
+
+        final Node root = new Node();
+        for (CommandMapping mapping : mappings) {
+            for (String alias : mapping.getAllAliases()) {
+                Node node = root;
+                for (int i = 0; i < alias.length(); i++) {
+                    node = node.childOrCreate(Character.toLowerCase(alias.charAt(i)));
+                }
+                // The dispatcher rejects duplicate aliases, so this only skips an alias a mapping lists twice
+                if (node.match == null) {
+                    node.match = new Match(alias, mapping);
+                }
+            }
+        }
+        return new CommandResolver(root);
+    }
+
+    /**
+     * Resolves the command at the given offset of the message, if any.
+     *
+     * <p>An alias only matches when it is followed by a space or by the
+     * end of the message.</p>
+     *
+     * @param message The message
+     * @param offset The offset the command begins at, usually the length of the prefix
+     * @return The match, or {@code null} if the message is not a command
+     * @since 2.0.0
+     */
+    public Match resolve(String message, int offset) {
+        final int length = message.length();
+        Node node = this.root;
+        int i = offset;
+
+        while (i < length) {
+            final char c = message.charAt(i);
+            if (c == ' ') {
+                break;
+            }
+
+            node = node.child(Character.toLowerCase(c));
+            if (node == null) {
+                return null;
+            }
+            i++;
+        }
+
+        // Nothing beyond the prefix is not a command
+        return i == offset ? null : node.match;
+    }
+
+    /**
+     * A resolved command.
+     *
+     * @since 2.0.0
+     */
+    public static final class Match {
+
+        private final String alias;
+        private final CommandMapping mapping;
+
+        private Match(String alias, CommandMapping mapping) {
+            this.alias = alias;
+            this.mapping = mapping;
+        }
+
+        /**
+         * Gets the alias that was matched, as it was registered.
+         *
+         * @return The alias
+         * @since 2.0.0
+         */
+        public String getAlias() {
+            return this.alias;
+        }
+
+        /**
+         * Gets the command mapping that was matched.
+         *
+         * @return The command mapping
+         * @since 2.0.0
+         */
+        public CommandMapping getMapping() {
+            return this.mapping;
+        }
+
+        /**
+         * Gets the arguments following the command within the message.
+         *
+         * @param message The message that was resolved
+         * @param offset The offset given when resolving
+         * @return The arguments, or an empty string if there are none
+         * @since 2.0.0
+         */
+        public String getArguments(String message, int offset) {
+            int start = offset + this.alias.length();
+            while (start < message.length() && message.charAt(start) == ' ') {
+                start++;
+            }
+            return message.substring(start);
+        }
+    }
+
+    private static final class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private Match match;
+
+        private Node child(char c) {
+            final int index = Arrays.binarySearch(this.keys, c);
+            return index < 0 ? null : this.children[index];
+        }
+
+        private Node childOrCreate(char c) {
+            int index = Arrays.binarySearch(this.keys, c);
+            if (index >= 0) {
+                return this.children[index];
+            }
+
+            index = -(index + 1);
+            final Node child = new Node();
+
+            final char[] keys = new char[this.keys.length + 1];
+            System.arraycopy(this.keys, 0, keys, 0, index);
+            System.arraycopy(this.keys, index, keys, index + 1, this.keys.length - index);
+            keys[index] = c;
+
+            final Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.children, 0, children, 0, index);
+            System.arraycopy(this.children, index, children, index + 1, this.children.length - index);
+            children[index] = child;
+
+            this.keys = keys;
+            this.children = children;
+            return child;
+        }
+    }
+}
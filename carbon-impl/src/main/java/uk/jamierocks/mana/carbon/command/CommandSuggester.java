@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.jamierocks.mana.carbon.command;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.Lists;
+import com.sk89q.intake.CommandMapping;
+import com.sk89q.intake.context.CommandLocals;
+import uk.jamierocks.mana.carbon.CarbonConfiguration;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Suggests commands for unknown commands, limiting how often it does so
+ * for each user and in each channel.
+ *
+ * <p>Only commands the user may use are suggested, and tokens are only
+ * taken for unknown commands that something could be suggested for, so
+ * messages which merely begin with the prefix cost nothing.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class CommandSuggester {
+
+    private final CarbonDispatcher dispatcher;
+    private final CarbonConfiguration.Commands.Suggestions config;
+    private final TokenBuckets user;
+    private final TokenBuckets channel;
+
+    public CommandSuggester(CarbonDispatcher dispatcher, CarbonConfiguration.Commands.Suggestions config) {
+        this.dispatcher = checkNotNull(dispatcher, "dispatcher is null!");
+        this.config = checkNotNull(config, "config is null!");
+        this.user = config.getUserLimit().isUnlimited() ? null : new TokenBuckets(config.getUserLimit());
+        this.channel = config.getChannelLimit().isUnlimited() ? null : new TokenBuckets(config.getChannelLimit());
+    }
+
+    /**
+     * Gets the commands to suggest for the given unknown command, used by
+     * the given user in the given channel.
+     *
+     * <p>Short words are only allowed a distance of half their length, so
+     * that nearly every short alias is not suggested for them.</p>
+     *
+     * @param command The unknown command, without the prefix
+     * @param namespace The namespace, of the user, to test permissions against
+     * @param user The user, as {@code user@host} so changing nick is no escape
+     * @param channel The channel, qualified by its network
+     * @return The aliases to suggest, which is empty if there are none or suggesting is limited
+     * @since 2.0.0
+     */
+    public List<String> suggest(String command, CommandLocals namespace, String user, String channel) {
+        if (!this.config.isEnabled() || command.isEmpty() || !Character.isLetterOrDigit(command.charAt(0))) {
+            return Collections.emptyList();
+        }
+
+        final int maxDistance = Math.min(this.config.getMaxDistance(), command.length() / 2);
+        final SuggestionIndex index = this.dispatcher.getSuggestionIndex();
+        final List<String> suggestions = Lists.newArrayList();
+        for (String alias : index.suggest(command, maxDistance, index.size())) {
+            final CommandMapping mapping = this.dispatcher.get(alias);
+            if (mapping != null && mapping.getCallable().testPermission(namespace)) {
+                suggestions.add(alias);
+                if (suggestions.size() == this.config.getMaxSuggestions()) {
+                    break;
+                }
+            }
+        }
+        if (suggestions.isEmpty()) {
+            return suggestions;
+        }
+
+        final long now = System.nanoTime();
+        if (this.user != null && !this.user.tryAcquire(user, now)) {
+            return Collections.emptyList();
+        }
+        if (this.channel != null && !this.channel.tryAcquire(channel, now)) {
+            if (this.user != null) {
+                this.user.release(user);
+            }
+            return Collections.emptyList();
+        }
+        return suggestions;
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.jamierocks.mana.carbon.command;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.Lists;
+import com.sk89q.intake.CommandMapping;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable, case-insensitive character trie over the aliases of a
+ * collection of {@link CommandMapping}s, for suggesting commands.
+ *
+ * <p>Similar aliases are found by walking the trie while computing the
+ * Levenshtein distance from the word, one row for each character. Every
+ * alias below a node shares the row computed at it, and once no entry
+ * in the row is within the distance no alias below it can be either, so
+ * only the few prefixes within the distance are ever visited - however
+ * many aliases there are.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class SuggestionIndex {
+
+    /**
+     * An index which suggests nothing.
+     */
+    public static final SuggestionIndex EMPTY = new SuggestionIndex(new Node(), 0, 0);
+
+    private final Node root;
+    private final int size;
+    private final int depth;
+
+    private SuggestionIndex(Node root, int size, int depth) {
+        this.root = root;
+        this.size = size;
+        this.depth = depth;
+    }
+
+    /**
+     * Builds an index from the aliases of the given command mappings.
+     *
+     * @param mappings The command mappings
+     * @return The index
+     * @since 2.0.0
+     */
+    public static SuggestionIndex of(Collection<CommandMapping> mappings) {
+        checkNotNull(mappings, "mappings is null!");
+
+        final Node root = new Node();
+        int size = 0;
+        int depth = 0;
+        for (CommandMapping mapping : mappings) {
+            for (String alias : mapping.getAllAliases()) {
+                Node node = root;
+                for (int i = 0; i < alias.length(); i++) {
+                    node = node.childOrCreate(Character.toLowerCase(alias.charAt(i)));
+                }
+                // The first mapping to claim an alias keeps it, as with the dispatcher
+                if (node.alias == null) {
+                    node.alias = alias;
+                    size++;
+                    depth = Math.max(depth, alias.length());
+                }
+            }
+        }
+        return new SuggestionIndex(root, size, depth);
+    }
+
+    /**
+     * Gets every alias beginning with the given prefix, in order.
+     *
+     * @param prefix The prefix
+     * @return The aliases
+     * @since 2.0.0
+     */
+    public List<String> complete(String prefix) {
+        checkNotNull(prefix, "prefix is null!");
+
+        Node node = this.root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(Character.toLowerCase(prefix.charAt(i)));
+        }
+
+        final List<String> completions = Lists.newArrayList();
+        if (node != null) {
+            collect(node, completions);
+        }
+        return completions;
+    }
+
+    /**
+     * Gets the aliases closest to the given word, within the given edit
+     * distance, closest first.
+     *
+     * @param word The word
+     * @param maxDistance The greatest edit distance of an alias from the word
+     * @param limit The greatest number of aliases to return
+     * @return The aliases
+     * @since 2.0.0
+     */
+    public List<String> suggest(String word, int maxDistance, int limit) {
+        checkNotNull(word, "word is null!");
+        checkArgument(maxDistance >= 0, "maxDistance is negative!");
+        if (this.size == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        final Search search = new Search(word, maxDistance, this.depth);
+        search.visit(this.root, 0);
+        if (search.found.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Equally close aliases stay in the order they were found, which is alphabetical
+        search.found.sort((a, b) -> Integer.compare(a.distance, b.distance));
+        final List<String> suggestions = Lists.newArrayListWithCapacity(Math.min(limit, search.found.size()));
+        for (int i = 0; i < search.found.size() && i < limit; i++) {
+            suggestions.add(search.found.get(i).alias);
+        }
+        return suggestions;
+    }
+
+    /**
+     * Gets the number of aliases in this index.
+     *
+     * @return The number of aliases
+     * @since 2.0.0
+     */
+    public int size() {
+        return this.size;
+    }
+
+    private static void collect(Node node, List<String> aliases) {
+        if (node.alias != null) {
+            aliases.add(node.alias);
+        }
+        for (Node child : node.children) {
+            collect(child, aliases);
+        }
+    }
+
+    private static final class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private String alias;
+
+        private Node child(char c) {
+            final int index = Arrays.binarySearch(this.keys, c);
+            return index < 0 ? null : this.children[index];
+        }
+
+        private Node childOrCreate(char c) {
+            int index = Arrays.binarySearch(this.keys, c);
+            if (index >= 0) {
+                return this.children[index];
+            }
+
+            index = -(index + 1);
+            final Node child = new Node();
+
+            final char[] keys = new char[this.keys.length + 1];
+            System.arraycopy(this.keys, 0, keys, 0, index);
+            System.arraycopy(this.keys, index, keys, index + 1, this.keys.length - index);
+            keys[index] = c;
+
+            final Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.children, 0, children, 0, index);
+            System.arraycopy(this.children, index, children, index + 1, this.children.length - index);
+            children[index] = child;
+
+            this.keys = keys;
+            this.children = children;
+            return child;
+        }
+    }
+
+    private static final class Search {
+
+        private final char[] word;
+        private final int maxDistance;
+        private final int[][] rows;
+        private final List<Found> found = Lists.newArrayList();
+
+        private Search(String word, int maxDistance, int depth) {
+            this.word = new char[word.length()];
+            for (int i = 0; i < this.word.length; i++) {
+                this.word[i] = Character.toLowerCase(word.charAt(i));
+            }
+            this.maxDistance = maxDistance;
+
+            // The row at each depth is the distance from each prefix of the word to the path there
+            this.rows = new int[depth + 1][this.word.length + 1];
+            for (int j = 0; j <= this.word.length; j++) {
+                this.rows[0][j] = j;
+            }
+        }
+
+        private void visit(Node node, int depth) {
+            final int[] row = this.rows[depth];
+            final int length = this.word.length;
+            if (node.alias != null && Math.abs(length - depth) <= this.maxDistance
+                    && row[length] <= this.maxDistance) {
+                this.found.add(new Found(node.alias, row[length]));
+            }
+            if (node.keys.length == 0 || depth - this.maxDistance >= length) {
+                return;
+            }
+
+            // Entries further than the distance from the diagonal are always beyond it, so are not computed
+            final int[] next = this.rows[depth + 1];
+            final int from = Math.max(1, depth + 1 - this.maxDistance);
+            final int to = Math.min(length, depth + 1 + this.maxDistance);
+            final int beyond = this.maxDistance + 1;
+            next[0] = depth + 1;
+            next[from - 1] = Math.min(next[0], beyond);
+            if (to < length) {
+                next[to + 1] = beyond;
+            }
+
+            for (int i = 0; i < node.keys.length; i++) {
+                final char c = node.keys[i];
+                int min = next[from - 1];
+                for (int j = from; j <= to; j++) {
+                    final int substitute = row[j - 1] + (this.word[j - 1] == c ? 0 : 1);
+                    next[j] = Math.min(substitute, Math.min(row[j], next[j - 1]) + 1);
+                    min = Math.min(min, next[j]);
+                }
+                if (min <= this.maxDistance) {
+                    this.visit(node.children[i], depth + 1);
+                }
+            }
+        }
+    }
+
+    private static final class Found {
+
+        private final String alias;
+        private final int distance;
+
+        private Found(String alias, int distance) {
+            this.alias = alias;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.command;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import uk.jamierocks.mana.carbon.CarbonConfiguration;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A set of token buckets, one for each key, sharing the same limit.
+ *
+ * <p>Each bucket is a single {@link AtomicLong}, holding the time at which
+ * it will next be full, as in the generic cell rate algorithm. Taking a
+ * token is a compare-and-set, and never blocks. A bucket left untouched
+ * until it is full is the same as a new one, so it is expired then - idle
+ * users and channels hold no memory at all.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class TokenBuckets {
+
+    private final long interval;
+    private final long tolerance;
+    private final Cache<String, AtomicLong> buckets;
+
+    TokenBuckets(CarbonConfiguration.Commands.Limit limit) {
+        this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / limit.getRate());
+        this.tolerance = this.interval * (limit.getBurst() - 1);
+        this.buckets = CacheBuilder.newBuilder()
+                .expireAfterAccess(this.interval * limit.getBurst(), TimeUnit.NANOSECONDS)
+                .build();
+    }
+
+    /**
+     * Takes a token from the bucket of the given key.
+     *
+     * @param key The key
+     * @param now The current time, from {@link System#nanoTime()}
+     * @return {@code True} if a token was taken, {@code false} if the bucket is empty
+     */
+    boolean tryAcquire(String key, long now) {
+        final AtomicLong bucket = this.bucket(key, now);
+        while (true) {
+            final long full = bucket.get();
+            final long from = full - now > 0 ? full : now;
+            if (from - now > this.tolerance) {
+                return false;
+            }
+            if (bucket.compareAndSet(full, from + this.interval)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a token taken from the bucket of the given key, as the use
+     * it was taken for was limited elsewhere.
+     *
+     * @param key The key
+     */
+    void release(String key) {
+        final AtomicLong bucket = this.buckets.getIfPresent(key);
+        if (bucket != null) {
+            bucket.addAndGet(-this.interval);
+        }
+    }
+
+    private AtomicLong bucket(String key, long now) {
+        final AtomicLong bucket = this.buckets.getIfPresent(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        try {
+            return this.buckets.get(key, () -> new AtomicLong(now));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.event;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.reflect.TypeToken;
+import uk.jamierocks.mana.carbon.CarbonImpl;
+import uk.jamierocks.mana.carbon.jfr.CarbonFlightRecorder;
+import uk.jamierocks.mana.carbon.jfr.EventPostEvent;
+import uk.jamierocks.mana.carbon.module.ModuleRecorder;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+import uk.jamierocks.mana.carbon.service.metrics.Counter;
+import uk.jamierocks.mana.carbon.service.metrics.Histogram;
+import uk.jamierocks.mana.carbon.service.metrics.MetricsService;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * The implementation of {@link EventBus} for Carbon.
+ *
+ * <p>Unlike Guava's event bus, which invokes every subscriber through
+ * reflection, an {@link EventInvoker} is generated for each subscriber
+ * method as it is registered. Posting an event reads an immutable
+ * dispatch table for the event's class, which is computed once per class
+ * hierarchy and only discarded when listeners change.</p>
+ *
+ * <p>Should an invoker not be able to be generated, the subscriber is
+ * invoked through its method handle instead. Such fallbacks are logged,
+ * and counted by the {@code carbon.events.invokers.fallback} metric.</p>
+ *
+ * <p>Events are dispatched to subscribers immediately, on the posting
+ * thread. Subscribers not marked with {@link AllowConcurrentEvents} are
+ * never invoked concurrently, as with Guava.</p>
+ *
+ * <p>The events posted, and the time taken to dispatch them - both in all
+ * and by each subscriber - are reported to the given metrics.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class CarbonEventBus extends EventBus {
+
+    // Class values, rather than maps, so that plugin classes can still be unloaded
+    private static final ClassValue<ImmutableSet<Class<?>>> HIERARCHY = new ClassValue<ImmutableSet<Class<?>>>() {
+        @Override
+        protected ImmutableSet<Class<?>> computeValue(Class<?> type) {
+            return ImmutableSet.copyOf(TypeToken.of(type).getTypes().rawTypes());
+        }
+    };
+    private static final ClassValue<ImmutableList<Method>> SUBSCRIBER_METHODS = new ClassValue<ImmutableList<Method>>() {
+        @Override
+        protected ImmutableList<Method> computeValue(Class<?> type) {
+            // Keyed by signature, so overridden methods are only subscribed once
+            final Map<List<Object>, Method> methods = Maps.newLinkedHashMap();
+            for (Class<?> superType : hierarchy(type)) {
+                for (Method method : superType.getDeclaredMethods()) {
+                    if (method.isAnnotationPresent(Subscribe.class) && !method.isSynthetic()) {
+                        final Class<?>[] parameterTypes = method.getParameterTypes();
+                        checkArgument(parameterTypes.length == 1,
+                                "Method %s has @Subscribe annotation but has %s parameters. "
+                                        + "Subscriber methods must have exactly 1 parameter.",
+                                method, parameterTypes.length);
+                        checkArgument(!Modifier.isStatic(method.getModifiers()),
+                                "Method %s has @Subscribe annotation but is static.", method);
+
+                        methods.putIfAbsent(Arrays.asList(method.getName(), parameterTypes[0]), method);
+                    }
+                }
+            }
+            return ImmutableList.copyOf(methods.values());
+        }
+    };
+
+    private final Counter posted;
+    private final Histogram postTime;
+    private final Histogram subscriberTime;
+    private final Counter invokerFallbacks;
+    private volatile Snapshot snapshot = new Snapshot(ImmutableListMultimap.of());
+
+    public CarbonEventBus(MetricsService metrics) {
+        super("carbon");
+        checkNotNull(metrics, "metrics is null!");
+        this.posted = metrics.counter("carbon.events.posted");
+        this.postTime = metrics.histogram("carbon.events.post.time");
+        this.subscriberTime = metrics.histogram("carbon.events.subscriber.time");
+        this.invokerFallbacks = metrics.counter("carbon.events.invokers.fallback");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void register(Object listener) {
+        checkNotNull(listener, "listener is null!");
+        ModuleRecorder.record(listener);
+
+        final ListMultimap<Class<?>, Subscriber> subscribers = MultimapBuilder.hashKeys().arrayListValues().build();
+        subscribers.putAll(this.snapshot.subscribers);
+        final List<Method> methods = subscriberMethods(listener.getClass());
+        final List<EventInvoker> invokers = this.invokers(methods);
+        for (int i = 0; i < methods.size(); i++) {
+            final Method method = methods.get(i);
+            final Class<?> eventType = method.getParameterTypes()[0];
+            subscribers.put(eventType, new Subscriber(listener, method, eventType, invokers.get(i)));
+        }
+        this.snapshot = new Snapshot(ImmutableListMultimap.copyOf(subscribers));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void unregister(Object listener) {
+        checkNotNull(listener, "listener is null!");
+
+        final ListMultimap<Class<?>, Subscriber> subscribers = MultimapBuilder.hashKeys().arrayListValues().build();
+        boolean found = false;
+        for (Map.Entry<Class<?>, Subscriber> entry : this.snapshot.subscribers.entries()) {
+            if (entry.getValue().listener == listener) {
+                found = true;
+            } else {
+                subscribers.put(entry.getKey(), entry.getValue());
+            }
+        }
+        checkArgument(found, "missing event subscriber for an annotated method. Is %s registered?", listener);
+        this.snapshot = new Snapshot(ImmutableListMultimap.copyOf(subscribers));
+    }
+
+    /**
+     * Unregisters every listener matching the given filter.
+     *
+     * @param listeners The filter for listeners
+     * @return The number of subscribers unregistered
+     */
+    public synchronized int unregisterAll(Predicate<Object> listeners) {
+        checkNotNull(listeners, "listeners is null!");
+
+        final ListMultimap<Class<?>, Subscriber> subscribers = MultimapBuilder.hashKeys().arrayListValues().build();
+        int removed = 0;
+        for (Map.Entry<Class<?>, Subscriber> entry : this.snapshot.subscribers.entries()) {
+            if (listeners.test(entry.getValue().listener)) {
+                removed++;
+            } else {
+                subscribers.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (removed > 0) {
+            this.snapshot = new Snapshot(ImmutableListMultimap.copyOf(subscribers));
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void post(Object event) {
+        checkNotNull(event, "event is null!");
+
+        final Subscriber[] subscribers = this.snapshot.dispatchTable(event.getClass());
+        if (subscribers.length == 0) {
+            if (!(event instanceof DeadEvent)) {
+                this.post(new DeadEvent(this, event));
+            }
+            return;
+        }
+
+        this.posted.increment();
+        final boolean recording = CarbonFlightRecorder.isRecording();
+        final long start = System.nanoTime();
+        long last = start;
+        for (Subscriber subscriber : subscribers) {
+            subscriber.dispatch(event, recording);
+            final long now = System.nanoTime();
+            this.subscriberTime.record(now - last);
+            last = now;
+        }
+        this.postTime.record(last - start);
+    }
+
+    /**
+     * Posts the given event only to the subscribers of the listeners
+     * matching the given filter.
+     *
+     * <p>Unlike {@link #post(Object)}, no {@link DeadEvent} is posted
+     * should there be no matching subscribers.</p>
+     *
+     * @param event The event
+     * @param listeners The filter for listeners
+     */
+    public void post(Object event, Predicate<Object> listeners) {
+        checkNotNull(event, "event is null!");
+        checkNotNull(listeners, "listeners is null!");
+
+        for (Subscriber subscriber : this.snapshot.dispatchTable(event.getClass())) {
+            if (listeners.test(subscriber.listener)) {
+                subscriber.dispatch(event, CarbonFlightRecorder.isRecording());
+            }
+        }
+    }
+
+    private static ImmutableSet<Class<?>> hierarchy(Class<?> clazz) {
+        return HIERARCHY.get(clazz);
+    }
+
+    private static ImmutableList<Method> subscriberMethods(Class<?> clazz) {
+        return SUBSCRIBER_METHODS.get(clazz);
+    }
+
+    private List<EventInvoker> invokers(List<Method> methods) {
+        final List<MethodHandle> handles = Lists.newArrayListWithCapacity(methods.size());
+        for (Method method : methods) {
+            method.setAccessible(true);
+            try {
+                handles.add(MethodHandles.lookup().unreflect(method));
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Unable to access subscriber method " + method, e);
+            }
+        }
+        if (handles.isEmpty()) {
+            return ImmutableList.of();
+        }
+
+        try {
+            return EventInvokers.generate(handles);
+        } catch (ReflectiveOperationException | LinkageError | SecurityException e) {
+            this.invokerFallbacks.add(handles.size());
+            CarbonImpl.LOGGER.debug("Unable to generate invokers for subscriber methods " + methods
+                    + ", invoking them through their method handles instead", e);
+        }
+
+        final List<EventInvoker> invokers = Lists.newArrayListWithCapacity(handles.size());
+        for (MethodHandle handle : handles) {
+            final MethodHandle generic = handle.asType(EventInvokers.INVOKER_TYPE);
+            invokers.add((listener, event) -> {
+                generic.invokeExact(listener, event);
+            });
+        }
+        return invokers;
+    }
+
+    private static final class Snapshot {
+
+        private static final Subscriber[] EMPTY = new Subscriber[0];
+
+        private final ImmutableListMultimap<Class<?>, Subscriber> subscribers;
+        private final ConcurrentMap<Class<?>, Subscriber[]> dispatchTables = new ConcurrentHashMap<>();
+
+        private Snapshot(ImmutableListMultimap<Class<?>, Subscriber> subscribers) {
+            this.subscribers = subscribers;
+        }
+
+        private Subscriber[] dispatchTable(Class<?> eventType) {
+            final Subscriber[] table = this.dispatchTables.get(eventType);
+            if (table != null) {
+                return table;
+            }
+
+            return this.dispatchTables.computeIfAbsent(eventType, type -> {
+                final List<Subscriber> subscribers = Lists.newArrayList();
+                for (Class<?> superType : hierarchy(type)) {
+                    subscribers.addAll(this.subscribers.get(superType));
+                }
+                return subscribers.isEmpty() ? EMPTY : subscribers.toArray(new Subscriber[subscribers.size()]);
+            });
+        }
+    }
+
+    private static final class Subscriber {
+
+        private final Object listener;
+        private final Method method;
+        private final Class<?> eventType;
+        private final EventInvoker invoker;
+        private final boolean synchronise;
+
+        private Subscriber(Object listener, Method method, Class<?> eventType, EventInvoker invoker) {
+            this.listener = listener;
+            this.method = method;
+            this.eventType = eventType;
+            this.invoker = invoker;
+            this.synchronise = !method.isAnnotationPresent(AllowConcurrentEvents.class);
+        }
+
+        private void dispatch(Object event, boolean recording) {
+            final EventPostEvent recorded = recording ? CarbonFlightRecorder.eventPost() : null;
+            try {
+                if (this.synchronise) {
+                    synchronized (this) {
+                        this.invoker.invoke(this.listener, event);
+                    }
+                } else {
+                    this.invoker.invoke(this.listener, event);
+                }
+            } catch (Error e) {
+                // Errors, such as running out of memory, are not the subscriber's to swallow
+                throw e;
+            } catch (Throwable throwable) {
+                ExceptionReporter.report("Exception thrown by subscriber method "
+                        + this.method.getName() + '(' + this.eventType.getName() + ')'
+                        + " on subscriber " + this.listener
+                        + " when dispatching event: " + event, throwable);
+            }
+            if (recorded != null) {
+                recorded.finish(event.getClass(), this.listener, this.method.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.event;
+
+/**
+ * Invokes a single subscriber method on a listener.
+ *
+ * <p>Implementations are generated at registration time by
+ * {@link CarbonEventBus}, and call the subscriber method through a
+ * constant method handle.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+@FunctionalInterface
+public interface EventInvoker {
+
+    /**
+     * Invokes the subscriber method on the given listener.
+     *
+     * @param listener The listener
+     * @param event The event
+     * @throws Throwable Anything thrown by the subscriber method
+     * @since 2.0.0
+     */
+    void invoke(Object listener, Object event) throws Throwable;
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.event;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Generates {@link EventInvoker}s for subscriber methods.
+ *
+ * <p>Each invoker is a class of its own, holding the subscriber's method
+ * handle in a {@code static final} field. The JIT treats such a handle as
+ * a constant, so the subscriber method can be inlined into the invoker,
+ * just as with a hand-written one.</p>
+ *
+ * <p>The class only refers to Carbon and the JDK, and is defined by a
+ * class loader shared by the invokers of a single listener - so nothing
+ * is defined in the subscriber's package, any method a handle can be had
+ * for is supported, and the invokers can be unloaded along with the
+ * listener. This works the same on every Java version from 8.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class EventInvokers {
+
+    static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final String PACKAGE = EventInvoker.class.getPackage().getName().replace('.', '/');
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private EventInvokers() {
+    }
+
+    /**
+     * Generates invokers calling the given method handles, of a single
+     * listener, all defined by one class loader.
+     *
+     * @param handles The subscribers' method handles
+     * @return The invokers, in the order of the handles
+     * @throws ReflectiveOperationException Should the invokers not be
+     *     able to be generated
+     */
+    static List<EventInvoker> generate(List<MethodHandle> handles) throws ReflectiveOperationException {
+        final InvokerLoader loader = new InvokerLoader();
+        final List<Class<?>> classes = Lists.newArrayListWithCapacity(handles.size());
+        for (MethodHandle handle : handles) {
+            final String name = PACKAGE + "/EventInvoker$$" + IDS.incrementAndGet();
+            final byte[] bytes;
+            try {
+                bytes = invokerClass(name);
+            } catch (IOException e) {
+                throw new ReflectiveOperationException(e);
+            }
+            classes.add(loader.define(name.replace('/', '.'), bytes, handle.asType(INVOKER_TYPE)));
+        }
+
+        final ImmutableList.Builder<EventInvoker> invokers = ImmutableList.builder();
+        for (Class<?> invoker : classes) {
+            invokers.add((EventInvoker) invoker.getConstructor().newInstance());
+        }
+        return invokers.build();
+    }
+
+    /**
+     * Writes an invoker class, with the given name, equivalent to:
+     *
+     * <pre>
+     * public final class Name implements EventInvoker {
+     *     private static final MethodHandle HANDLE =
+     *             ((Function&lt;Class&lt;?&gt;, MethodHandle&gt;) Name.class.getClassLoader()).apply(Name.class);
+     *
+     *     public void invoke(Object listener, Object event) throws Throwable {
+     *         HANDLE.invokeExact(listener, event);
+     *     }
+     * }
+     * </pre>
+     */
+    private static byte[] invokerClass(String className) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+
+        // Constant pool
+        out.writeShort(36);
+        out.writeByte(7); // #1 Class #2
+        out.writeShort(2);
+        out.writeByte(1); // #2 Utf8
+        out.writeUTF(className);
+        out.writeByte(7); // #3 Class #4
+        out.writeShort(4);
+        out.writeByte(1); // #4 Utf8
+        out.writeUTF("java/lang/Object");
+        out.writeByte(7); // #5 Class #6
+        out.writeShort(6);
+        out.writeByte(1); // #6 Utf8
+        out.writeUTF(EventInvoker.class.getName().replace('.', '/'));
+        out.writeByte(1); // #7 Utf8
+        out.writeUTF("HANDLE");
+        out.writeByte(1); // #8 Utf8
+        out.writeUTF("Ljava/lang/invoke/MethodHandle;");
+        out.writeByte(9); // #9 Fieldref #1.#10
+        out.writeShort(1);
+        out.writeShort(10);
+        out.writeByte(12); // #10 NameAndType #7:#8
+        out.writeShort(7);
+        out.writeShort(8);
+        out.writeByte(10); // #11 Methodref #3.#12
+        out.writeShort(3);
+        out.writeShort(12);
+        out.writeByte(12); // #12 NameAndType #13:#14
+        out.writeShort(13);
+        out.writeShort(14);
+        out.writeByte(1); // #13 Utf8
+        out.writeUTF("<init>");
+        out.writeByte(1); // #14 Utf8
+        out.writeUTF("()V");
+        out.writeByte(10); // #15 Methodref #16.#18
+        out.writeShort(16);
+        out.writeShort(18);
+        out.writeByte(7); // #16 Class #17
+        out.writeShort(17);
+        out.writeByte(1); // #17 Utf8
+        out.writeUTF("java/lang/Class");
+        out.writeByte(12); // #18 NameAndType #19:#20
+        out.writeShort(19);
+        out.writeShort(20);
+        out.writeByte(1); // #19 Utf8
+        out.writeUTF("getClassLoader");
+        out.writeByte(1); // #20 Utf8
+        out.writeUTF("()Ljava/lang/ClassLoader;");
+        out.writeByte(7); // #21 Class #22
+        out.writeShort(22);
+        out.writeByte(1); // #22 Utf8
+        out.writeUTF("java/util/function/Function");
+        out.writeByte(11); // #23 InterfaceMethodref #21.#24
+        out.writeShort(21);
+        out.writeShort(24);
+        out.writeByte(12); // #24 NameAndType #25:#26
+        out.writeShort(25);
+        out.writeShort(26);
+        out.writeByte(1); // #25 Utf8
+        out.writeUTF("apply");
+        out.writeByte(1); // #26 Utf8
+        out.writeUTF("(Ljava/lang/Object;)Ljava/lang/Object;");
+        out.writeByte(7); // #27 Class #28
+        out.writeShort(28);
+        out.writeByte(1); // #28 Utf8
+        out.writeUTF("java/lang/invoke/MethodHandle");
+        out.writeByte(10); // #29 Methodref #27.#30
+        out.writeShort(27);
+        out.writeShort(30);
+        out.writeByte(12); // #30 NameAndType #31:#32
+        out.writeShort(31);
+        out.writeShort(32);
+        out.writeByte(1); // #31 Utf8
+        out.writeUTF("invokeExact");
+        out.writeByte(1); // #32 Utf8
+        out.writeUTF(INVOKER_TYPE.toMethodDescriptorString());
+        out.writeByte(1); // #33 Utf8
+        out.writeUTF("invoke");
+        out.writeByte(1); // #34 Utf8
+        out.writeUTF("<clinit>");
+        out.writeByte(1); // #35 Utf8
+        out.writeUTF("Code");
+
+        // public final class, extending Object, implementing EventInvoker
+        out.writeShort(0x0031);
+        out.writeShort(1);
+        out.writeShort(3);
+        out.writeShort(1);
+        out.writeShort(5);
+
+        // private static final MethodHandle HANDLE
+        out.writeShort(1);
+        out.writeShort(0x001A);
+        out.writeShort(7);
+        out.writeShort(8);
+        out.writeShort(0);
+
+        out.writeShort(3);
+
+        // public Name() { super(); }
+        out.writeShort(0x0001);
+        out.writeShort(13);
+        out.writeShort(14);
+        out.writeShort(1);
+        out.writeShort(35);
+        out.writeInt(17);
+        out.writeShort(1); // max stack
+        out.writeShort(1); // max locals
+        out.writeInt(5);
+        out.writeByte(0x2A); // aload_0
+        out.writeByte(0xB7); // invokespecial #11
+        out.writeShort(11);
+        out.writeByte(0xB1); // return
+        out.writeShort(0);
+        out.writeShort(0);
+
+        // public void invoke(Object listener, Object event) { HANDLE.invokeExact(listener, event); }
+        out.writeShort(0x0001);
+        out.writeShort(33);
+        out.writeShort(32);
+        out.writeShort(1);
+        out.writeShort(35);
+        out.writeInt(21);
+        out.writeShort(3); // max stack
+        out.writeShort(3); // max locals
+        out.writeInt(9);
+        out.writeByte(0xB2); // getstatic #9
+        out.writeShort(9);
+        out.writeByte(0x2B); // aload_1
+        out.writeByte(0x2C); // aload_2
+        out.writeByte(0xB6); // invokevirtual #29
+        out.writeShort(29);
+        out.writeByte(0xB1); // return
+        out.writeShort(0);
+        out.writeShort(0);
+
+        // static { HANDLE = ((Function) Name.class.getClassLoader()).apply(Name.class); }
+        out.writeShort(0x0008);
+        out.writeShort(34);
+        out.writeShort(14);
+        out.writeShort(1);
+        out.writeShort(35);
+        out.writeInt(34);
+        out.writeShort(2); // max stack
+        out.writeShort(0); // max locals
+        out.writeInt(22);
+        out.writeByte(0x12); // ldc #1
+        out.writeByte(1);
+        out.writeByte(0xB6); // invokevirtual #15
+        out.writeShort(15);
+        out.writeByte(0xC0); // checkcast #21
+        out.writeShort(21);
+        out.writeByte(0x12); // ldc #1
+        out.writeByte(1);
+        out.writeByte(0xB9); // invokeinterface #23, 2
+        out.writeShort(23);
+        out.writeByte(2);
+        out.writeByte(0);
+        out.writeByte(0xC0); // checkcast #27
+        out.writeShort(27);
+        out.writeByte(0xB3); // putstatic #9
+        out.writeShort(9);
+        out.writeByte(0xB1); // return
+        out.writeShort(0);
+        out.writeShort(0);
+
+        // No class attributes
+        out.writeShort(0);
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The class loader for the invoker classes of a single listener,
+     * handing each invoker its method handle as it is initialised.
+     */
+    private static final class InvokerLoader extends ClassLoader implements Function<Class<?>, MethodHandle> {
+
+        private final Map<String, MethodHandle> handles = Maps.newConcurrentMap();
+
+        private InvokerLoader() {
+            super(EventInvoker.class.getClassLoader());
+        }
+
+        private Class<?> define(String name, byte[] bytes, MethodHandle handle) {
+            this.handles.put(name, handle);
+            return this.defineClass(name, bytes, 0, bytes.length);
+        }
+
+        @Override
+        public MethodHandle apply(Class<?> invoker) {
+            return this.handles.get(invoker.getName());
+        }
+    }
+}
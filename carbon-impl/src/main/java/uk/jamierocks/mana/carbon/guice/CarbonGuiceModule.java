@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.guice;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import uk.jamierocks.mana.carbon.Carbon;
+import uk.jamierocks.mana.carbon.irc.IRCManager;
+import uk.jamierocks.mana.carbon.module.ModuleManager;
+import uk.jamierocks.mana.carbon.plugin.PluginManager;
+import uk.jamierocks.mana.carbon.service.ServiceRegistry;
+import uk.jamierocks.mana.carbon.service.metrics.MetricsService;
+
+/**
+ * The Guice module for the core of Carbon, shared by the injectors of
+ * every plugin and module.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class CarbonGuiceModule extends AbstractModule {
+
+    private final Carbon carbon;
+    private final MetricsService metrics;
+
+    /**
+     * Constructs a new Guice module for Carbon.
+     *
+     * @param carbon The Carbon instance
+     * @param metrics Carbon's own metrics
+     */
+    public CarbonGuiceModule(Carbon carbon, MetricsService metrics) {
+        this.carbon = carbon;
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void configure() {
+        // The basics
+        this.bind(Carbon.class).toInstance(this.carbon);
+
+        // The managers
+        this.bind(PluginManager.class).toInstance(this.carbon.getPluginManager());
+        this.bind(ModuleManager.class).toInstance(this.carbon.getModuleManager());
+        this.bind(IRCManager.class).toInstance(this.carbon.getIRCManager());
+        this.bind(ServiceRegistry.class).toInstance(this.carbon.getServiceRegistry());
+    }
+
+    /**
+     * Provides the {@link MetricsService}, falling back to Carbon's own
+     * should no plugin have replaced it.
+     *
+     * @param registry The service registry
+     * @return The metrics service
+     */
+    @Provides
+    MetricsService provideMetrics(ServiceRegistry registry) {
+        return registry.provideOrFallback(MetricsService.class, this.metrics);
+    }
+}
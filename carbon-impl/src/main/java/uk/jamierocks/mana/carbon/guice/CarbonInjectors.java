@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.guice;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Sets;
+import com.google.inject.Binding;
+import com.google.inject.ConfigurationException;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.TypeLiteral;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.Elements;
+import com.google.inject.spi.InjectionPoint;
+import uk.jamierocks.mana.carbon.CarbonImpl;
+
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates, and times, the Guice injectors used within Carbon.
+ *
+ * <p>The core bindings live in a single root injector, created once,
+ * from which a child injector is created for each plugin and module
+ * holding only their own bindings.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class CarbonInjectors {
+
+    private static final AtomicLong CREATED = new AtomicLong();
+    private static final AtomicLong NANOS = new AtomicLong();
+
+    private CarbonInjectors() {
+    }
+
+    /**
+     * Creates the root injector.
+     *
+     * @param module The core module
+     * @return The root injector
+     */
+    public static Injector createRoot(CarbonGuiceModule module) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final Injector injector = Guice.createInjector(module);
+        record("Carbon", stopwatch);
+        return injector;
+    }
+
+    /**
+     * Creates a child injector of the given injector.
+     *
+     * <p>Guice creates just-in-time bindings in the parent whenever it can,
+     * where they would be retained - along with the class loader of a
+     * plugin - for the life of Carbon. So the given type, and every type it
+     * depends on from the same class loader, directly or through others,
+     * are explicitly bound within the child. Types only ever looked up from
+     * the child at runtime, such as by {@link Injector#getInstance(Class)},
+     * can't be found up front and are still bound within the parent.</p>
+     *
+     * @param parent The parent injector
+     * @param name The name of what the injector is for, used when reporting
+     * @param module The module, holding the child's own bindings
+     * @param type The type to be created from the child
+     * @return The child injector
+     */
+    public static Injector createChild(Injector parent, String name, Module module, Class<?> type) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final Set<Class<?>> types = ownTypes(module, type);
+        final Injector injector = parent.createChildInjector(module, binder -> types.forEach(binder::bind));
+        record(name, stopwatch);
+        return injector;
+    }
+
+    /**
+     * Gets the number of injectors created.
+     *
+     * @return The number of injectors
+     */
+    public static long getCreated() {
+        return CREATED.get();
+    }
+
+    /**
+     * Gets the total time spent creating injectors.
+     *
+     * @param unit The unit of time
+     * @return The total time
+     */
+    public static long getTotalTime(TimeUnit unit) {
+        return unit.convert(NANOS.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Finds the given type, and the concrete types it depends on which were
+     * loaded by the same class loader and aren't bound by the given module.
+     *
+     * <p>Carbon's own types are always bound within the root injector, so
+     * only the given type is returned for them.</p>
+     */
+    static Set<Class<?>> ownTypes(Module module, Class<?> type) {
+        final Set<Class<?>> types = Sets.newLinkedHashSet();
+        types.add(type);
+        if (type.getClassLoader() == CarbonInjectors.class.getClassLoader()) {
+            return types;
+        }
+
+        final Set<Key<?>> bound = Sets.newHashSet();
+        for (Element element : Elements.getElements(module)) {
+            if (element instanceof Binding) {
+                bound.add(((Binding<?>) element).getKey());
+            }
+        }
+
+        final Deque<Class<?>> queue = new ArrayDeque<>(types);
+        while (!queue.isEmpty()) {
+            for (Dependency<?> dependency : dependencies(queue.poll())) {
+                final Class<?> dependencyType = dependencyType(dependency.getKey());
+                if (dependencyType != null && dependencyType.getClassLoader() == type.getClassLoader()
+                        && !dependencyType.isInterface() && !Modifier.isAbstract(dependencyType.getModifiers())
+                        && !bound.contains(Key.get(dependencyType)) && types.add(dependencyType)) {
+                    queue.add(dependencyType);
+                }
+            }
+        }
+        return types;
+    }
+
+    private static Set<Dependency<?>> dependencies(Class<?> type) {
+        final Set<Dependency<?>> dependencies = Sets.newHashSet();
+        try {
+            dependencies.addAll(InjectionPoint.forConstructorOf(type).getDependencies());
+            for (InjectionPoint injectionPoint : InjectionPoint.forInstanceMethodsAndFields(type)) {
+                dependencies.addAll(injectionPoint.getDependencies());
+            }
+        } catch (ConfigurationException ignored) {
+            // Reported by Guice, when the type is bound
+        }
+        return dependencies;
+    }
+
+    /**
+     * Gets the type a just-in-time binding would be created for, to satisfy
+     * the given key, or {@code null} if none would be.
+     */
+    private static Class<?> dependencyType(Key<?> key) {
+        if (key.getAnnotationType() != null) {
+            return null;
+        }
+
+        final TypeLiteral<?> type = key.getTypeLiteral();
+        if ((type.getRawType() == Provider.class || type.getRawType() == javax.inject.Provider.class)
+                && type.getType() instanceof ParameterizedType) {
+            final Type provided = ((ParameterizedType) type.getType()).getActualTypeArguments()[0];
+            return provided instanceof Class ? (Class<?>) provided : null;
+        }
+        return type.getType() instanceof Class ? type.getRawType() : null;
+    }
+
+    private static void record(String name, Stopwatch stopwatch) {
+        final long nanos = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+        CREATED.incrementAndGet();
+        NANOS.addAndGet(nanos);
+        CarbonImpl.LOGGER.debug("Created injector for " + name + " in " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms");
+    }
+}
@@ -20,17 +20,15 @@ import com.google.inject.AbstractModule;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import uk.jamierocks.mana.carbon.Carbon;
-import uk.jamierocks.mana.carbon.irc.IRCManager;
 import uk.jamierocks.mana.carbon.module.Module;
-import uk.jamierocks.mana.carbon.module.ModuleManager;
 import uk.jamierocks.mana.carbon.plugin.PluginContainer;
-import uk.jamierocks.mana.carbon.plugin.PluginManager;
-import uk.jamierocks.mana.carbon.service.ServiceRegistry;
 
 /**
  * The Guice module for {@link Module}s within Carbon.
  *
+ * <p>This only holds the bindings specific to the module, the core
+ * bindings being inherited from the {@link CarbonGuiceModule}.</p>
+ *
  * @author Jamie Mansfield
  * @since 1.0.0
  */
@@ -56,16 +54,9 @@ public final class ModuleGuiceModule extends AbstractModule {
     @Override
     protected void configure() {
         // The basics
-        this.bind(Carbon.class).toInstance(Carbon.getCarbon());
         this.bind(PluginContainer.class).toInstance(this.container);
         this.bind(Logger.class).toInstance(LoggerFactory.getLogger(this.module.name()));
 
-        // The managers
-        this.bind(PluginManager.class).toInstance(Carbon.getCarbon().getPluginManager());
-        this.bind(ModuleManager.class).toInstance(Carbon.getCarbon().getModuleManager());
-        this.bind(IRCManager.class).toInstance(Carbon.getCarbon().getIRCManager());
-        this.bind(ServiceRegistry.class).toInstance(Carbon.getCarbon().getServiceRegistry());
-
         // Config node
         this.bind(CommentedConfigurationNode.class).toInstance(this.container.getConfiguration().getNode("module", this.module.id()));
     }
@@ -19,19 +19,17 @@ package uk.jamierocks.mana.carbon.guice;
 import com.google.inject.AbstractModule;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import org.slf4j.Logger;
-import uk.jamierocks.mana.carbon.Carbon;
 import uk.jamierocks.mana.carbon.guice.provider.PluginConfigGuiceProvider;
 import uk.jamierocks.mana.carbon.guice.provider.PluginLoggerGuiceProvider;
-import uk.jamierocks.mana.carbon.irc.IRCManager;
-import uk.jamierocks.mana.carbon.module.ModuleManager;
 import uk.jamierocks.mana.carbon.plugin.Plugin;
 import uk.jamierocks.mana.carbon.plugin.PluginContainer;
-import uk.jamierocks.mana.carbon.plugin.PluginManager;
-import uk.jamierocks.mana.carbon.service.ServiceRegistry;
 
 /**
  * The Guice module for {@link Plugin}s within Carbon.
  *
+ * <p>This only holds the bindings specific to the plugin, the core
+ * bindings being inherited from the {@link CarbonGuiceModule}.</p>
+ *
  * @author Jamie Mansfield
  * @since 1.0.0
  */
@@ -54,16 +52,9 @@ public final class PluginGuiceModule extends AbstractModule {
     @Override
     protected void configure() {
         // The basics
-        this.bind(Carbon.class).toInstance(Carbon.getCarbon());
         this.bind(Logger.class).toProvider(PluginLoggerGuiceProvider.class);
         this.bind(PluginContainer.class).toInstance(this.container);
 
-        // The managers
-        this.bind(PluginManager.class).toInstance(Carbon.getCarbon().getPluginManager());
-        this.bind(ModuleManager.class).toInstance(Carbon.getCarbon().getModuleManager());
-        this.bind(IRCManager.class).toInstance(Carbon.getCarbon().getIRCManager());
-        this.bind(ServiceRegistry.class).toInstance(Carbon.getCarbon().getServiceRegistry());
-
         // Configuration
         this.bind(CommentedConfigurationNode.class).toProvider(PluginConfigGuiceProvider.class);
     }
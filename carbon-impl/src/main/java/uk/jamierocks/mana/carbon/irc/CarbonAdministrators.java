@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.irc;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.reflect.TypeToken;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.objectmapping.ObjectMappingException;
+import uk.jamierocks.mana.carbon.CarbonImpl;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+import uk.jamierocks.mana.carbon.util.Configs;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * An in-memory copy of the bot administrators, backed by the ops file.
+ *
+ * <p>The administrators are held in an immutable set, which is swapped
+ * whenever the ops file changes on disk or is modified through Carbon.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class CarbonAdministrators {
+
+    private final Path path;
+    private volatile ImmutableSet<String> administrators = ImmutableSet.of();
+
+    CarbonAdministrators(Path path) {
+        this.path = path.toAbsolutePath();
+    }
+
+    /**
+     * Loads the administrators, and starts watching the ops file for changes.
+     */
+    void start() {
+        this.reload();
+
+        try {
+            final WatchService watchService = FileSystems.getDefault().newWatchService();
+            this.path.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+            final Thread thread = new Thread(() -> this.watch(watchService), "Carbon Ops Watcher");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (IOException e) {
+            ExceptionReporter.report("Failed to watch the ops file, changes will not be picked up!", e);
+        }
+    }
+
+    private void watch(WatchService watchService) {
+        try {
+            while (true) {
+                final WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (this.path.getFileName().equals(event.context())) {
+                        this.reload();
+                        break;
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    /**
+     * Reloads the administrators from the ops file, keeping the current
+     * administrators should it fail to load.
+     */
+    synchronized void reload() {
+        try {
+            final ConfigurationNode node = Configs.loader(this.path).load();
+            final ImmutableSet<String> administrators = ImmutableSet.copyOf(node.getList(TypeToken.of(String.class)));
+
+            if (!administrators.equals(this.administrators)) {
+                this.administrators = administrators;
+                CarbonImpl.LOGGER.info("Loaded " + administrators.size() + " bot administrators");
+            }
+        } catch (IOException | ObjectMappingException e) {
+            ExceptionReporter.report("Failed to get bot administrators!", e);
+        }
+    }
+
+    /**
+     * Gets the current administrators.
+     *
+     * @return The administrators
+     */
+    ImmutableSet<String> get() {
+        return this.administrators;
+    }
+
+    /**
+     * Modifies the administrators, writing the result to the ops file.
+     *
+     * @param modifier The modification to make
+     * @return {@code True} if the administrators were changed, {@code false} otherwise
+     */
+    synchronized boolean modify(Consumer<Set<String>> modifier) {
+        final Set<String> modified = Sets.newLinkedHashSet(this.administrators);
+        modifier.accept(modified);
+        if (modified.equals(this.administrators)) {
+            return false;
+        }
+
+        final ImmutableSet<String> administrators = ImmutableSet.copyOf(modified);
+        try {
+            this.save(administrators);
+        } catch (IOException e) {
+            ExceptionReporter.report("Failed to save bot administrators!", e);
+            return false;
+        }
+
+        this.administrators = administrators;
+        return true;
+    }
+
+    private void save(ImmutableSet<String> administrators) throws IOException {
+        Configs.saveAtomically(this.path, node -> node.setValue(administrators.asList()));
+    }
+}
@@ -20,23 +20,33 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static uk.jamierocks.mana.carbon.Carbon.getCarbon;
 import static uk.jamierocks.mana.carbon.util.Constants.OPS_PATH;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import ninja.leaping.configurate.ConfigurationNode;
-import ninja.leaping.configurate.gson.GsonConfigurationLoader;
-import ninja.leaping.configurate.objectmapping.ObjectMappingException;
 import org.kitteh.irc.client.library.Client;
 import org.kitteh.irc.client.library.util.AcceptingTrustManagerFactory;
+import uk.jamierocks.mana.carbon.CarbonConfiguration;
 import uk.jamierocks.mana.carbon.CarbonImpl;
+import uk.jamierocks.mana.carbon.module.ModuleRecorder;
 import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+import uk.jamierocks.mana.carbon.service.metrics.MetricsService;
 
-import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 /**
  * The implementation of {@link IRCManager} for Carbon.
@@ -46,27 +56,210 @@ import java.util.Optional;
  */
 public final class CarbonIRCManager implements IRCManager {
 
-    private final Map<String, Client> clients = Maps.newHashMap();
+    private final Map<String, Client> clients = Maps.newConcurrentMap();
+    private final Map<String, NetworkConnection> connections = Maps.newConcurrentMap();
+    private final Map<String, CarbonMessageScheduler> schedulers = Maps.newConcurrentMap();
+    private final ScheduledExecutorService outbound = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("Carbon Outbound Scheduler")
+                    .setDaemon(true)
+                    .build());
+    private final List<Object> listeners = Lists.newCopyOnWriteArrayList();
+    private final CarbonAdministrators administrators = new CarbonAdministrators(OPS_PATH);
+    private final MetricsService metrics;
+    private InboundPipeline pipeline;
 
+    public CarbonIRCManager(MetricsService metrics) {
+        this.metrics = checkNotNull(metrics, "metrics is null!");
+    }
+
+    /**
+     * Starts connecting to all of the configured networks, concurrently.
+     *
+     * <p>Each network is connected to on its own thread, so a slow network
+     * does not hold up the others. Use {@link #awaitQuorum()} to wait for
+     * the networks to be connected.</p>
+     *
+     * @since 1.0.0
+     */
     public void initialise() {
+        this.administrators.start();
+        this.pipeline = new InboundPipeline(this.listeners, getCarbon().getConfiguration().getIrc().getInbound(),
+                this.metrics);
+
+        final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("Carbon IRC Connector #%d")
+                .setDaemon(true)
+                .build());
+
         ConfigurationNode configurationNode = getCarbon().getConfiguration().getNode().getNode("irc");
         for (ConfigurationNode network : configurationNode.getNode("networks").getChildrenList()) {
-            Client.Builder clientBuilder = Client.builder()
-                    .secureTrustManagerFactory(new AcceptingTrustManagerFactory())
-                    .name(network.getNode("id").getString())
-                    .serverHost(network.getNode("host").getString())
-                    .serverPort(network.getNode("port").getInt())
-                    .secure(network.getNode("secure").getBoolean())
-                    .user(network.getNode("username").getString())
-                    .nick(network.getNode("nickname").getString())
-                    .listenOutput(CarbonImpl.LOGGER::debug)
-                    .listenException(e -> ExceptionReporter
-                            .report("KittehIRCClientLibrary has experienced an exception!", e));
-            if (!network.getNode("serverPassword").isVirtual()) {
-                clientBuilder.serverPassword(network.getNode("serverPassword").getString());
+            final String id = network.getNode("id").getString();
+            final NetworkConnection connection = new NetworkConnection(id);
+            this.connections.put(id, connection);
+            executor.execute(() -> this.connect(network, connection));
+        }
+        executor.shutdown();
+    }
+
+    private void connect(ConfigurationNode network, NetworkConnection connection) {
+        final String host = network.getNode("host").getString();
+        try {
+            // Resolved up front, so DNS is timed separately - the client resolves it again, from the cache
+            InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            ExceptionReporter.report("Failed to resolve the host of network " + network.getNode("id").getString(), e);
+        }
+        connection.resolved();
+
+        Client.Builder clientBuilder = Client.builder()
+                .secureTrustManagerFactory(new AcceptingTrustManagerFactory())
+                .name(network.getNode("id").getString())
+                .serverHost(host)
+                .serverPort(network.getNode("port").getInt())
+                .secure(network.getNode("secure").getBoolean())
+                .user(network.getNode("username").getString())
+                .nick(network.getNode("nickname").getString())
+                .listenInput(connection::received)
+                .listenOutput(CarbonImpl.LOGGER::debug)
+                .listenException(e -> ExceptionReporter
+                        .report("KittehIRCClientLibrary has experienced an exception!", e));
+        if (!network.getNode("serverPassword").isVirtual()) {
+            clientBuilder.serverPassword(network.getNode("serverPassword").getString());
+        }
+
+        final Client client;
+        try {
+            client = clientBuilder.build();
+        } catch (RuntimeException e) {
+            ExceptionReporter.report("Failed to connect to network " + network.getNode("id").getString(), e);
+            connection.getFuture().completeExceptionally(e);
+            return;
+        }
+
+        final CarbonMessageScheduler scheduler = new CarbonMessageScheduler(client, this.outbound,
+                getCarbon().getConfiguration().getIrc().getOutbound(),
+                this.metrics.counter(MetricsService.name("carbon.irc.sent", "network", client.getName())));
+        this.schedulers.put(client.getName(), scheduler);
+        this.metrics.gauge(MetricsService.name("carbon.irc.outbound.depth", "network", client.getName()),
+                scheduler::getQueueDepth);
+        this.metrics.gauge(MetricsService.name("carbon.irc.outbound.coalesced", "network", client.getName()),
+                scheduler::getCoalesced);
+        this.metrics.gauge(MetricsService.name("carbon.irc.outbound.dropped", "network", client.getName()),
+                scheduler::getDropped);
+        client.getEventManager().registerEventListener(this.pipeline);
+        this.clients.put(network.getNode("id").getString(), client);
+        connection.built(client);
+    }
+
+    /**
+     * Waits until the configured quorum of networks are connected, or the
+     * configured timeout passes.
+     *
+     * @return {@code True} if the quorum was reached, {@code false} otherwise
+     * @since 2.0.0
+     */
+    public boolean awaitQuorum() {
+        final CarbonConfiguration.Irc.Startup startup = getCarbon().getConfiguration().getIrc().getStartup();
+        final int networks = this.connections.size();
+        final int quorum = startup.getQuorum() <= 0 ? networks : Math.min(startup.getQuorum(), networks);
+
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final CountDownLatch latch = new CountDownLatch(quorum);
+        this.connections.values().forEach(connection -> connection.getFuture().thenRun(latch::countDown));
+
+        boolean reached;
+        try {
+            reached = latch.await(startup.getTimeout(), TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reached = false;
+        }
+
+        final long connected = this.connections.values().stream()
+                .filter(connection -> connection.getFuture().isDone() && !connection.getFuture().isCompletedExceptionally())
+                .count();
+        if (reached) {
+            CarbonImpl.LOGGER.info("Connected to " + connected + " of " + networks + " networks in "
+                    + stopwatch.elapsed(TimeUnit.MILLISECONDS) + "ms");
+        } else {
+            CarbonImpl.LOGGER.warn("Only connected to " + connected + " of " + networks + " networks within "
+                    + startup.getTimeout() + " seconds, continuing without a quorum of " + quorum);
+        }
+        return reached;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<CompletableFuture<Client>> getConnection(String id) {
+        checkNotNull(id, "id is null!");
+        final NetworkConnection connection = this.connections.get(id);
+        return connection == null ? Optional.empty() : Optional.of(connection.getFuture());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<MessageScheduler> getScheduler(String id) {
+        checkNotNull(id, "id is null!");
+        return Optional.ofNullable(this.schedulers.get(id));
+    }
+
+    /**
+     * Gets the pipeline events received from the networks are handled
+     * through.
+     *
+     * @return The inbound pipeline
+     * @since 2.0.0
+     */
+    public InboundPipeline getPipeline() {
+        return this.pipeline;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The listener is invoked on the {@link InboundPipeline}, rather
+     * than the IRC client's own thread, for the clients of all networks -
+     * including those yet to be connected.</p>
+     */
+    @Override
+    public void registerIRCEventListener(Object listener) {
+        checkNotNull(listener, "listener is null!");
+        ModuleRecorder.record(listener);
+        this.listeners.add(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unregisterIRCEventListener(Object listener) {
+        checkNotNull(listener, "listener is null!");
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Unregisters every listener matching the given filter, from all of
+     * the IRC clients.
+     *
+     * @param filter The filter for listeners
+     * @since 2.0.0
+     */
+    public void unregisterIRCEventListeners(Predicate<Object> filter) {
+        checkNotNull(filter, "filter is null!");
+        this.listeners.removeIf(filter);
+
+        // Listeners may also have been registered to a client directly
+        for (Client client : this.clients.values()) {
+            for (Object listener : Lists.newArrayList(client.getEventManager().getRegisteredEventListeners())) {
+                if (filter.test(listener)) {
+                    client.getEventManager().unregisterEventListener(listener);
+                }
             }
-            this.clients.put(network.getNode("id").getString(), clientBuilder.build());
-            CarbonImpl.LOGGER.info("Connected to network: " + network.getNode("id").getString());
         }
     }
 
@@ -92,12 +285,33 @@ public final class CarbonIRCManager implements IRCManager {
      */
     @Override
     public List<String> getAdministrators() {
-        try {
-            final ConfigurationNode node = GsonConfigurationLoader.builder().setPath(OPS_PATH).build().load();
-            return node.getList(TypeToken.of(String.class));
-        } catch (IOException | ObjectMappingException e) {
-            ExceptionReporter.report("Failed to get bot administrators!", e);
-            return Lists.newArrayList();
-        }
+        return this.administrators.get().asList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAdministrator(String user) {
+        checkNotNull(user, "user is null!");
+        return this.administrators.get().contains(user);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addAdministrator(String user) {
+        checkNotNull(user, "user is null!");
+        return this.administrators.modify(administrators -> administrators.add(user));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeAdministrator(String user) {
+        checkNotNull(user, "user is null!");
+        return this.administrators.modify(administrators -> administrators.remove(user));
     }
 }
@@ -0,0 +1,373 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.irc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.kitteh.irc.client.library.Client;
+import uk.jamierocks.mana.carbon.CarbonConfiguration;
+import uk.jamierocks.mana.carbon.jfr.CarbonFlightRecorder;
+import uk.jamierocks.mana.carbon.jfr.IrcSendEvent;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+import uk.jamierocks.mana.carbon.service.metrics.Counter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The implementation of {@link MessageScheduler} for Carbon.
+ *
+ * <p>Sending is limited by a token bucket, which holds up to the burst
+ * size of tokens and is refilled at the configured rate. Each priority
+ * has its own lane, holding a queue per target which are taken from in
+ * turn. Messages are sent with the library's own delay bypassed, as the
+ * token bucket takes its place.</p>
+ *
+ * <p>Messages are kept within the maximum message length for their
+ * target, which leaves room for the prefix and framing the network relays
+ * them with and - as on the wire - is counted in UTF-8 bytes. Longer
+ * messages are split, at a space where possible, and waiting messages are
+ * only joined together while they fit.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class CarbonMessageScheduler implements MessageScheduler {
+
+    private static final long WINDOW = TimeUnit.MINUTES.toNanos(1);
+    private static final String SEPARATOR = " | ";
+
+    private final Client client;
+    private final ScheduledExecutorService executor;
+    private final CarbonConfiguration.Irc.Outbound config;
+    private final Lane[] lanes = new Lane[MessagePriority.values().length];
+    private final Counter sentTotal;
+    // The times of recent sends, as a ring buffer
+    private long[] sendTimes = new long[16];
+    private int sendTimesStart;
+    private int sendTimesSize;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    private boolean scheduled;
+    private long sent;
+    private long coalesced;
+    private long dropped;
+
+    CarbonMessageScheduler(Client client, ScheduledExecutorService executor, CarbonConfiguration.Irc.Outbound config,
+            Counter sentTotal) {
+        this.client = client;
+        this.executor = executor;
+        this.config = config;
+        this.sentTotal = sentTotal;
+        this.tokens = config.getBurst();
+        for (int i = 0; i < this.lanes.length; i++) {
+            this.lanes[i] = new Lane();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(String target, String message, MessagePriority priority) {
+        checkNotNull(target, "target is null!");
+        checkNotNull(message, "message is null!");
+        checkNotNull(priority, "priority is null!");
+
+        final int maxLength = Math.max(1, this.config.getMaxMessageLength(this.client.getNick(), target));
+        synchronized (this) {
+            final Lane lane = this.lanes[priority.ordinal()];
+            for (String part : split(message, maxLength)) {
+                lane.offer(target, part, maxLength);
+            }
+            this.schedule(0);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : this.lanes) {
+            depth += lane.size;
+        }
+        return depth;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int getQueueDepth(MessagePriority priority) {
+        checkNotNull(priority, "priority is null!");
+        return this.lanes[priority.ordinal()].size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long getSent() {
+        return this.sent;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized double getSendRate() {
+        this.trim(System.nanoTime());
+        return this.sendTimesSize / (double) TimeUnit.NANOSECONDS.toSeconds(WINDOW);
+    }
+
+    /**
+     * Gets the number of messages joined onto another waiting message.
+     *
+     * @return The messages coalesced
+     */
+    synchronized long getCoalesced() {
+        return this.coalesced;
+    }
+
+    /**
+     * Gets the number of messages dropped, as their lane was full.
+     *
+     * @return The messages dropped
+     */
+    synchronized long getDropped() {
+        return this.dropped;
+    }
+
+    private void schedule(long delay) {
+        if (!this.scheduled) {
+            this.scheduled = true;
+            this.executor.schedule(this::drain, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void drain() {
+        final List<Pending> sending = Lists.newArrayList();
+        synchronized (this) {
+            this.scheduled = false;
+
+            final long now = System.nanoTime();
+            this.tokens = Math.min(this.config.getBurst(),
+                    this.tokens + (now - this.refilledAt) * this.config.getRate() / TimeUnit.SECONDS.toNanos(1));
+            this.refilledAt = now;
+
+            boolean remaining = false;
+            for (Lane lane : this.lanes) {
+                while (lane.size > 0 && this.tokens >= 1) {
+                    sending.add(lane.poll());
+                    this.tokens--;
+                    this.sent++;
+                    this.addSendTime(now);
+                }
+                remaining |= lane.size > 0;
+            }
+            this.trim(now);
+
+            if (remaining) {
+                // Wait until the next token is available
+                this.schedule((long) ((1 - this.tokens) / this.config.getRate() * TimeUnit.SECONDS.toNanos(1)));
+            }
+        }
+
+        final boolean recording = CarbonFlightRecorder.isRecording();
+        int sent = 0;
+        for (Pending message : sending) {
+            final String line = "PRIVMSG " + message.target + " :" + message.text;
+            final IrcSendEvent recorded = recording ? CarbonFlightRecorder.ircSend() : null;
+            try {
+                this.client.sendRawLineImmediately(line);
+                sent++;
+            } catch (RuntimeException e) {
+                // One bad message mustn't lose the rest of those taken from the queue
+                ExceptionReporter.report("Failed to send a message to " + message.target + " on "
+                        + this.client.getName(), e);
+                continue;
+            }
+            if (recorded != null) {
+                recorded.finish(this.client.getName(), message.target, line, System.nanoTime() - message.queuedAt);
+            }
+        }
+        this.sentTotal.add(sent);
+    }
+
+    private void addSendTime(long time) {
+        if (this.sendTimesSize == this.sendTimes.length) {
+            final long[] grown = new long[this.sendTimes.length * 2];
+            for (int i = 0; i < this.sendTimesSize; i++) {
+                grown[i] = this.sendTimes[(this.sendTimesStart + i) % this.sendTimes.length];
+            }
+            this.sendTimes = grown;
+            this.sendTimesStart = 0;
+        }
+        this.sendTimes[(this.sendTimesStart + this.sendTimesSize) % this.sendTimes.length] = time;
+        this.sendTimesSize++;
+    }
+
+    private void trim(long now) {
+        while (this.sendTimesSize > 0 && now - this.sendTimes[this.sendTimesStart] > WINDOW) {
+            this.sendTimesStart = (this.sendTimesStart + 1) % this.sendTimes.length;
+            this.sendTimesSize--;
+        }
+    }
+
+    /**
+     * Splits the given message into parts no longer than the given length
+     * in UTF-8, at the last space within each part where there is one.
+     */
+    static List<String> split(String message, int maxLength) {
+        if (utf8Length(message) <= maxLength) {
+            return Collections.singletonList(message);
+        }
+
+        final List<String> parts = Lists.newArrayList();
+        int start = 0;
+        while (start < message.length()) {
+            int end = start;
+            int length = 0;
+            int space = -1;
+            while (end < message.length()) {
+                final int codePoint = message.codePointAt(end);
+                final int codePointLength = utf8Length(codePoint);
+                if (length + codePointLength > maxLength) {
+                    break;
+                }
+                if (codePoint == ' ') {
+                    space = end;
+                }
+                length += codePointLength;
+                end += Character.charCount(codePoint);
+            }
+            boolean atSpace = false;
+            if (end == start) {
+                // A single character longer than the limit, which is only possible with a tiny limit
+                end += Character.charCount(message.codePointAt(start));
+            } else if (end < message.length() && message.charAt(end) == ' ') {
+                atSpace = true;
+            } else if (end < message.length() && space > start) {
+                end = space;
+                atSpace = true;
+            }
+
+            parts.add(message.substring(start, end));
+            // The space split at is not carried over to the next part
+            start = atSpace ? end + 1 : end;
+        }
+        return parts;
+    }
+
+    private static int utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static int utf8Length(int codePoint) {
+        return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+    }
+
+    private final class Lane {
+
+        private final Map<String, Deque<Pending>> queues = Maps.newHashMap();
+        private final Deque<String> targets = new ArrayDeque<>();
+        private int size;
+
+        private void offer(String target, String message, int maxLength) {
+            Deque<Pending> queue = this.queues.get(target);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                this.queues.put(target, queue);
+                this.targets.addLast(target);
+            }
+
+            final CarbonConfiguration.Irc.Outbound config = CarbonMessageScheduler.this.config;
+            if (config.isCoalesce() && !queue.isEmpty()) {
+                final Pending last = queue.peekLast();
+                final int bytes = last.bytes + SEPARATOR.length() + utf8Length(message);
+                if (bytes <= maxLength) {
+                    // The joined message has waited as long as the first part of it
+                    queue.pollLast();
+                    queue.addLast(new Pending(target, last.text + SEPARATOR + message, bytes, last.queuedAt));
+                    CarbonMessageScheduler.this.coalesced++;
+                    return;
+                }
+            }
+
+            queue.addLast(new Pending(target, message, utf8Length(message), System.nanoTime()));
+            this.size++;
+
+            if (this.size > config.getQueueSize()) {
+                // Drop from the busiest target, so one flooded target cannot crowd out the others
+                String busiest = target;
+                for (Map.Entry<String, Deque<Pending>> entry : this.queues.entrySet()) {
+                    if (entry.getValue().size() > this.queues.get(busiest).size()) {
+                        busiest = entry.getKey();
+                    }
+                }
+                this.queues.get(busiest).pollFirst();
+                this.size--;
+                CarbonMessageScheduler.this.dropped++;
+                if (this.queues.get(busiest).isEmpty()) {
+                    this.queues.remove(busiest);
+                    this.targets.remove(busiest);
+                }
+            }
+        }
+
+        private Pending poll() {
+            final String target = this.targets.pollFirst();
+            final Deque<Pending> queue = this.queues.get(target);
+            final Pending message = queue.pollFirst();
+            this.size--;
+
+            // Targets take turns, so one busy channel cannot hold up the others
+            if (queue.isEmpty()) {
+                this.queues.remove(target);
+            } else {
+                this.targets.addLast(target);
+            }
+            return message;
+        }
+    }
+
+    private static final class Pending {
+
+        private final String target;
+        private final String text;
+        // The length of the text in UTF-8
+        private final int bytes;
+        private final long queuedAt;
+
+        private Pending(String target, String text, int bytes, long queuedAt) {
+            this.target = target;
+            this.text = text;
+            this.bytes = bytes;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
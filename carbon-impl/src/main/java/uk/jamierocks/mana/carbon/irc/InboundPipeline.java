@@ -0,0 +1,357 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.irc;
+
+import static uk.jamierocks.mana.carbon.Carbon.getCarbon;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.kitteh.irc.client.library.event.channel.ChannelMessageEvent;
+import org.kitteh.irc.client.library.event.channel.ChannelNoticeEvent;
+import org.kitteh.irc.client.library.event.helper.ClientEvent;
+import org.kitteh.irc.client.library.event.user.PrivateMessageEvent;
+import org.kitteh.irc.client.library.event.user.PrivateNoticeEvent;
+import org.kitteh.irc.lib.net.engio.mbassy.listener.Handler;
+import uk.jamierocks.mana.carbon.CarbonConfiguration;
+import uk.jamierocks.mana.carbon.CarbonImpl;
+import uk.jamierocks.mana.carbon.command.CarbonDispatcher;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+import uk.jamierocks.mana.carbon.service.metrics.Counter;
+import uk.jamierocks.mana.carbon.service.metrics.Histogram;
+import uk.jamierocks.mana.carbon.service.metrics.MetricsService;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded queue between the IRC clients and Carbon's IRC event
+ * listeners, which are invoked on a thread of its own.
+ *
+ * <p>The library's input thread only ever stages an event, and never
+ * waits for a listener. Events are handled in the order they arrived, so
+ * listeners never see a part or quit before the command sent ahead of it.
+ * Their {@link Kind} only decides what is shed when the listeners fall
+ * behind: once the high-water mark is passed, chatter is sampled; once
+ * the capacity is reached, commands and chatter are dropped, while
+ * protocol events are only bounded by their own number. Pings are
+ * answered by the library itself, before events are created, so are
+ * unaffected however far behind the listeners are.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class InboundPipeline {
+
+    private static final long REPORT_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final ClassValue<List<HandlerMethod>> HANDLERS = new ClassValue<List<HandlerMethod>>() {
+        @Override
+        protected List<HandlerMethod> computeValue(Class<?> type) {
+            final List<HandlerMethod> handlers = Lists.newArrayList();
+            for (Method method : type.getMethods()) {
+                final Handler handler = method.getAnnotation(Handler.class);
+                if (handler != null && handler.enabled() && method.getParameterCount() == 1) {
+                    try {
+                        handlers.add(new HandlerMethod(method, handler));
+                    } catch (IllegalAccessException | SecurityException e) {
+                        ExceptionReporter.report("Failed to access IRC event handler " + method, e);
+                    }
+                }
+            }
+            handlers.sort(Comparator.comparingInt((HandlerMethod handler) -> handler.priority).reversed());
+            return ImmutableList.copyOf(handlers);
+        }
+    };
+
+    private final List<Object> listeners;
+    private final int capacity;
+    private final int highWaterMark;
+    private final int chatterSample;
+    private final Deque<Staged> queue = new ArrayDeque<>();
+    private final int[] waiting = new int[Kind.values().length];
+    private final AtomicLongArray received = new AtomicLongArray(Kind.values().length);
+    private final AtomicLongArray dropped = new AtomicLongArray(Kind.values().length);
+    private final MetricsService metrics;
+    private final Map<String, Counter> receivedByNetwork = Maps.newConcurrentMap();
+    private final Histogram handleTime;
+    private final long[] reported = new long[Kind.values().length];
+    private long lastReport = System.currentTimeMillis();
+    private int sampled;
+
+    InboundPipeline(List<Object> listeners, CarbonConfiguration.Irc.Inbound config, MetricsService metrics) {
+        this.listeners = listeners;
+        this.capacity = Math.max(1, config.getCapacity());
+        this.highWaterMark = (int) (this.capacity * config.getHighWaterMark());
+        this.chatterSample = Math.max(1, config.getChatterSample());
+
+        this.metrics = metrics;
+        this.handleTime = metrics.histogram("carbon.irc.handle.time");
+        metrics.gauge("carbon.irc.inbound.depth", this::getQueueDepth);
+        for (Kind kind : Kind.values()) {
+            final String name = kind.name().toLowerCase(Locale.ENGLISH);
+            metrics.gauge(MetricsService.name("carbon.irc.inbound.received", "kind", name),
+                    () -> this.getReceived(kind));
+            metrics.gauge(MetricsService.name("carbon.irc.inbound.dropped", "kind", name),
+                    () -> this.getDropped(kind));
+        }
+
+        final Thread thread = new Thread(this::run, "Carbon Inbound Pipeline");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stages the given event, to be handled by Carbon's listeners.
+     *
+     * @param event The event
+     */
+    @Handler
+    public void onEvent(ClientEvent event) {
+        final Kind kind = classify(event);
+        this.received.incrementAndGet(kind.ordinal());
+        this.received(event.getClient().getName()).increment();
+
+        synchronized (this) {
+            if (!this.admit(kind)) {
+                this.dropped.incrementAndGet(kind.ordinal());
+                return;
+            }
+            this.queue.addLast(new Staged(kind, event));
+            this.waiting[kind.ordinal()]++;
+            this.notify();
+        }
+    }
+
+    private boolean admit(Kind kind) {
+        switch (kind) {
+            case PROTOCOL:
+                // Protocol events are never shed for other traffic, only bounded by their own number
+                return this.waiting[Kind.PROTOCOL.ordinal()] < this.capacity;
+            case COMMAND:
+                return this.queue.size() < this.capacity;
+            default:
+                return this.queue.size() < this.highWaterMark
+                        || (this.queue.size() < this.capacity && this.sampled++ % this.chatterSample == 0);
+        }
+    }
+
+    /**
+     * Gets the number of events waiting to be handled.
+     *
+     * @return The queue depth
+     * @since 2.0.0
+     */
+    public synchronized int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    /**
+     * Gets the number of events of the given kind received from the
+     * networks, including those dropped.
+     *
+     * @param kind The kind of event
+     * @return The events received
+     * @since 2.0.0
+     */
+    public long getReceived(Kind kind) {
+        return this.received.get(kind.ordinal());
+    }
+
+    /**
+     * Gets the number of events of the given kind dropped, without being
+     * handled.
+     *
+     * @param kind The kind of event
+     * @return The events dropped
+     * @since 2.0.0
+     */
+    public long getDropped(Kind kind) {
+        return this.dropped.get(kind.ordinal());
+    }
+
+    private Counter received(String network) {
+        final Counter counter = this.receivedByNetwork.get(network);
+        if (counter != null) {
+            return counter;
+        }
+        return this.receivedByNetwork.computeIfAbsent(network,
+                n -> this.metrics.counter(MetricsService.name("carbon.irc.received", "network", n)));
+    }
+
+    private void run() {
+        while (true) {
+            final Staged staged;
+            final int depth;
+            synchronized (this) {
+                if (this.queue.isEmpty()) {
+                    try {
+                        this.wait(REPORT_INTERVAL);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                staged = this.queue.pollFirst();
+                if (staged != null) {
+                    this.waiting[staged.kind.ordinal()]--;
+                }
+                depth = this.queue.size();
+            }
+
+            // Reported outside of the lock, so the input thread never waits on logging
+            this.report(depth);
+            if (staged != null) {
+                final long start = System.nanoTime();
+                this.dispatch(staged.event);
+                this.handleTime.recordSince(start);
+            }
+        }
+    }
+
+    private void dispatch(ClientEvent event) {
+        for (Object listener : this.listeners) {
+            for (HandlerMethod handler : HANDLERS.get(listener.getClass())) {
+                if (!handler.matches(event)) {
+                    continue;
+                }
+
+                try {
+                    handler.handle.invokeExact(listener, (Object) event);
+                } catch (Throwable throwable) {
+                    ExceptionReporter.report("Failed to handle " + event.getClass().getSimpleName()
+                            + " in " + listener.getClass().getName(), throwable);
+                }
+            }
+        }
+    }
+
+    private void report(int depth) {
+        final long now = System.currentTimeMillis();
+        if (now - this.lastReport < REPORT_INTERVAL) {
+            return;
+        }
+        this.lastReport = now;
+
+        final StringBuilder builder = new StringBuilder();
+        for (Kind kind : Kind.values()) {
+            final long dropped = this.dropped.get(kind.ordinal());
+            if (dropped > this.reported[kind.ordinal()]) {
+                builder.append(builder.length() == 0 ? "" : ", ")
+                        .append(dropped - this.reported[kind.ordinal()]).append(' ')
+                        .append(kind.name().toLowerCase(Locale.ENGLISH));
+                this.reported[kind.ordinal()] = dropped;
+            }
+        }
+        if (builder.length() != 0) {
+            CarbonImpl.LOGGER.warn("Dropped IRC events in the last minute, as Carbon could not keep up: " + builder
+                    + " (" + depth + " events waiting)");
+        }
+    }
+
+    private static Kind classify(ClientEvent event) {
+        final String message;
+        if (event instanceof ChannelMessageEvent) {
+            message = ((ChannelMessageEvent) event).getMessage();
+        } else if (event instanceof PrivateMessageEvent) {
+            message = ((PrivateMessageEvent) event).getMessage();
+        } else if (event instanceof ChannelNoticeEvent || event instanceof PrivateNoticeEvent) {
+            return Kind.CHATTER;
+        } else {
+            return Kind.PROTOCOL;
+        }
+
+        final String prefix = getCarbon().getConfiguration().getCommands().getPrefix();
+        if (message.startsWith(prefix) && ((CarbonDispatcher) getCarbon().getCommandDispatcher()).getResolver()
+                .resolve(message, prefix.length()) != null) {
+            return Kind.COMMAND;
+        }
+        return Kind.CHATTER;
+    }
+
+    /**
+     * An event waiting to be handled, with the kind it was admitted as.
+     */
+    private static final class Staged {
+
+        private final Kind kind;
+        private final ClientEvent event;
+
+        private Staged(Kind kind, ClientEvent event) {
+            this.kind = kind;
+            this.event = event;
+        }
+    }
+
+    /**
+     * A handler method of a listener, with what is needed to dispatch to
+     * it read once, when the listener's class is first seen.
+     */
+    private static final class HandlerMethod {
+
+        private final MethodHandle handle;
+        private final Class<?> eventType;
+        private final boolean rejectSubtypes;
+        private final int priority;
+
+        private HandlerMethod(Method method, Handler handler) throws IllegalAccessException {
+            // Listeners are often nested classes, which are not themselves public
+            method.setAccessible(true);
+            this.handle = MethodHandles.lookup().unreflect(method).asType(HANDLER_TYPE);
+            this.eventType = method.getParameterTypes()[0];
+            this.rejectSubtypes = handler.rejectSubtypes();
+            this.priority = handler.priority();
+        }
+
+        private boolean matches(ClientEvent event) {
+            return this.rejectSubtypes ? this.eventType == event.getClass() : this.eventType.isInstance(event);
+        }
+    }
+
+    /**
+     * The kinds of event, which decide how they are shed under load.
+     *
+     * @since 2.0.0
+     */
+    public enum Kind {
+
+        /**
+         * Events about the state of the network, such as joins and
+         * invites.
+         */
+        PROTOCOL,
+
+        /**
+         * Messages which are commands.
+         */
+        COMMAND,
+
+        /**
+         * All other messages and notices.
+         */
+        CHATTER
+    }
+}
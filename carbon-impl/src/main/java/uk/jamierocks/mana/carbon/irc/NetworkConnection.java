@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.irc;
+
+import org.kitteh.irc.client.library.Client;
+import uk.jamierocks.mana.carbon.CarbonImpl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the connection of a single network, from resolving its host to
+ * the client being registered with the server.
+ *
+ * <p>The client is registered once the server sends {@code RPL_WELCOME},
+ * at which point the connection future is completed and the time spent
+ * in each phase is logged.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class NetworkConnection {
+
+    private static final String RPL_WELCOME = "001";
+
+    private final String id;
+    private final CompletableFuture<Client> future = new CompletableFuture<>();
+    private final long started = System.nanoTime();
+    private long resolved;
+    private long firstLine;
+    private long welcomed;
+    private Client client;
+
+    NetworkConnection(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the future completed once the network's client is registered.
+     *
+     * @return The connection future
+     */
+    CompletableFuture<Client> getFuture() {
+        return this.future;
+    }
+
+    /**
+     * Marks the network's host as resolved.
+     */
+    synchronized void resolved() {
+        this.resolved = System.nanoTime();
+    }
+
+    /**
+     * Sets the client of the network, once built.
+     *
+     * @param client The client
+     */
+    synchronized void built(Client client) {
+        this.client = client;
+        this.complete();
+    }
+
+    /**
+     * Handles a line received from the server.
+     *
+     * @param line The raw line
+     */
+    void received(String line) {
+        if (this.future.isDone()) {
+            return;
+        }
+
+        synchronized (this) {
+            if (this.firstLine == 0) {
+                this.firstLine = System.nanoTime();
+            }
+            if (this.welcomed == 0 && isWelcome(line)) {
+                this.welcomed = System.nanoTime();
+                this.complete();
+            }
+        }
+    }
+
+    private void complete() {
+        // The welcome may be received before the client has finished being built
+        if (this.client == null || this.welcomed == 0) {
+            return;
+        }
+
+        CarbonImpl.LOGGER.info("Connected to network: " + this.id + " in " + millis(this.started, this.welcomed) + "ms"
+                + " (DNS " + millis(this.started, this.resolved) + "ms"
+                + ", connect and TLS handshake " + millis(this.resolved, this.firstLine) + "ms"
+                + ", registration " + millis(this.firstLine, this.welcomed) + "ms)");
+        this.future.complete(this.client);
+    }
+
+    private static boolean isWelcome(String line) {
+        // :server 001 nick :Welcome to the network
+        final int start = line.startsWith(":") ? line.indexOf(' ') + 1 : 0;
+        return start >= 0 && line.startsWith(RPL_WELCOME + ' ', start);
+    }
+
+    private static long millis(long from, long to) {
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(0, to - from));
+    }
+}
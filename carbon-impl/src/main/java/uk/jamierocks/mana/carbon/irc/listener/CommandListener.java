@@ -18,6 +18,7 @@ package uk.jamierocks.mana.carbon.irc.listener;
 
 import static uk.jamierocks.mana.carbon.Carbon.getCarbon;
 
+import com.google.common.collect.Maps;
 import com.sk89q.intake.CommandException;
 import com.sk89q.intake.InvalidUsageException;
 import com.sk89q.intake.context.CommandLocals;
@@ -26,10 +27,25 @@ import org.kitteh.irc.client.library.element.Channel;
 import org.kitteh.irc.client.library.element.User;
 import org.kitteh.irc.client.library.event.channel.ChannelMessageEvent;
 import org.kitteh.irc.lib.net.engio.mbassy.listener.Handler;
-import uk.jamierocks.mana.carbon.Carbon;
+import uk.jamierocks.mana.carbon.CarbonConfiguration;
 import uk.jamierocks.mana.carbon.CarbonImpl;
+import uk.jamierocks.mana.carbon.command.CarbonDispatcher;
+import uk.jamierocks.mana.carbon.command.CommandExecutor;
+import uk.jamierocks.mana.carbon.command.CommandRateLimiter;
+import uk.jamierocks.mana.carbon.command.CommandResolver;
+import uk.jamierocks.mana.carbon.command.CommandSuggester;
 import uk.jamierocks.mana.carbon.event.command.CommandEvent;
+import uk.jamierocks.mana.carbon.irc.MessagePriority;
+import uk.jamierocks.mana.carbon.jfr.CarbonFlightRecorder;
+import uk.jamierocks.mana.carbon.jfr.CommandDispatchEvent;
 import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+import uk.jamierocks.mana.carbon.service.metrics.Counter;
+import uk.jamierocks.mana.carbon.service.metrics.Histogram;
+import uk.jamierocks.mana.carbon.service.metrics.MetricsService;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * A listener for commands.
@@ -39,39 +55,222 @@ import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
  */
 public final class CommandListener {
 
+    private final CarbonDispatcher dispatcher;
+    private final CommandExecutor executor;
+    private final CommandRateLimiter limiter;
+    private final CommandSuggester suggester;
+    private final CarbonConfiguration.Commands.RateLimit rateLimit;
+    private final String commandPrefix;
+    private final MetricsService metrics;
+    private final Map<String, CommandMetrics> commandMetrics = Maps.newConcurrentMap();
+    private final Histogram latency;
+    private final Counter suggested;
+
+    public CommandListener() {
+        this.dispatcher = (CarbonDispatcher) getCarbon().getCommandDispatcher();
+        this.executor = new CommandExecutor(getCarbon().getConfiguration().getCommands().getExecution());
+        this.rateLimit = getCarbon().getConfiguration().getCommands().getRateLimit();
+        this.limiter = new CommandRateLimiter(this.rateLimit);
+        this.suggester = new CommandSuggester(this.dispatcher,
+                getCarbon().getConfiguration().getCommands().getSuggestions());
+        this.commandPrefix = getCarbon().getConfiguration().getCommands().getPrefix();
+
+        this.metrics = ((CarbonImpl) getCarbon()).getMetrics();
+        this.latency = this.metrics.histogram("carbon.commands.latency");
+        this.suggested = this.metrics.counter("carbon.commands.suggested");
+    }
+
     @Handler
     public void onMessageRecieved(ChannelMessageEvent event) {
+        final CommandResolver.Match match = this.resolve(event.getMessage());
+        if (match == null) {
+            this.suggest(event);
+            return;
+        }
+        final int offset = this.commandPrefix.length();
+        final long received = System.nanoTime();
+        final String channel = event.getClient().getName() + '/' + event.getChannel().getName();
+
+        // Limited before being queued, so flooding costs no more than this
+        if (this.isLimited(event, match, channel)) {
+            return;
+        }
+
+        // We now know it is a command, and can continue to process it
+        // Commands are ordered per channel, on the executor
+        this.executor.execute(channel,
+                () -> {
+                    this.latency.recordSince(received);
+                    this.dispatch(event, match, offset);
+                },
+                () -> {
+                    this.metricsFor(match).rejected.increment();
+                    this.reply(event, MessagePriority.NORMAL,
+                            event.getActor().getNick() + ": I am too busy right now, try again later!");
+                });
+    }
+
+    /**
+     * Resolves the command the given message is for, should it be one.
+     *
+     * @param message The message
+     * @return The match, or {@code null} if the message is not a command
+     * @since 2.0.0
+     */
+    public CommandResolver.Match resolve(String message) {
+        if (!message.startsWith(this.commandPrefix)) {
+            return null;
+        }
+
+        // By this point it still isn't decided as to weather this is a command!
+        return this.dispatcher.getResolver().resolve(message, this.commandPrefix.length());
+    }
+
+    private void dispatch(ChannelMessageEvent event, CommandResolver.Match match, int offset) {
         final String message = event.getMessage();
-        final String commandPrefix = Carbon.getCarbon().getConfiguration().getCommands().getPrefix();
-
-        if (message.startsWith(commandPrefix)) {
-            // By this point it still isn't decided as to weather this is a command!
-            final String command = message.substring(commandPrefix.length());
-
-            if (getCarbon().getCommandDispatcher().contains(command.split(" ")[0])) {
-                // We now know it is a command, and can continue to process it
-                CarbonImpl.LOGGER.info(event.getActor().getNick() + " issued command: " + command);
-
-                CommandEvent commandEvent =
-                        new CommandEvent(event, getCarbon().getCommandDispatcher().get(command.split(" ")[0])).post();
-                if (!commandEvent.isCancelled()) {
-                    CommandLocals namespace = new CommandLocals();
-                    namespace.put(String.class, command);
-                    namespace.put(Channel.class, event.getChannel());
-                    namespace.put(User.class, event.getActor());
-
-                    try {
-                        getCarbon().getCommandDispatcher()
-                                .call(command, namespace, new String[]{command});
-                    } catch (InvalidUsageException e) {
-                        event.getActor().sendMessage("Usage: " + commandPrefix + e.getCommand().getDescription().getUsage());
-                    } catch (CommandException e) {
-                        ExceptionReporter.report("Failed to execute command: " + message, e);
-                    } catch (AuthorizationException e) {
-                        event.sendReply(event.getActor().getNick() + ": You do not have permission to do that!");
-                    }
+        final String command = message.substring(offset);
+        CarbonImpl.LOGGER.info(event.getActor().getNick() + " issued command: " + command);
+
+        CommandEvent commandEvent = new CommandEvent(event, match.getMapping()).post();
+        if (!commandEvent.isCancelled()) {
+            // Administrators' replies are sent ahead of everyone else's
+            final MessagePriority priority = getCarbon().getIRCManager().isAdministrator(event.getActor().getName())
+                    ? MessagePriority.ADMIN : MessagePriority.NORMAL;
+
+            CommandLocals namespace = namespace(event);
+            namespace.put(String.class, command);
+            namespace.put(MessagePriority.class, priority);
+
+            final CommandMetrics metrics = this.metricsFor(match);
+            final CommandDispatchEvent recorded = CarbonFlightRecorder.isRecording()
+                    ? CarbonFlightRecorder.commandDispatch() : null;
+            String outcome = "failed";
+            final long start = System.nanoTime();
+            try {
+                if (!match.getMapping().getCallable().testPermission(namespace)) {
+                    throw new AuthorizationException();
+                }
+                match.getMapping().getCallable()
+                        .call(match.getArguments(message, offset), namespace, new String[]{match.getAlias()});
+                metrics.executed.increment();
+                outcome = "executed";
+            } catch (InvalidUsageException e) {
+                metrics.failed.increment();
+                outcome = "usage";
+                getCarbon().getIRCManager().sendMessage(event.getClient(), event.getActor().getNick(),
+                        "Usage: " + this.commandPrefix + e.getCommand().getDescription().getUsage(), priority);
+            } catch (CommandException e) {
+                metrics.failed.increment();
+                ExceptionReporter.report("Failed to execute command: " + message, e);
+            } catch (AuthorizationException e) {
+                metrics.denied.increment();
+                outcome = "denied";
+                this.reply(event, priority, event.getActor().getNick() + ": You do not have permission to do that!");
+            } finally {
+                metrics.time.recordSince(start);
+                if (recorded != null) {
+                    recorded.finish(match.getMapping().getPrimaryAlias(), event.getClient().getName(),
+                            event.getChannel().getName(), event.getActor().getName(), outcome);
                 }
             }
         }
     }
+
+    private boolean isLimited(ChannelMessageEvent event, CommandResolver.Match match, String channel) {
+        if (!this.rateLimit.isEnabled()) {
+            return false;
+        }
+        final String actor = event.getActor().getName();
+        if (this.rateLimit.isExemptAdministrators() && getCarbon().getIRCManager().isAdministrator(actor)) {
+            return false;
+        }
+
+        final CommandRateLimiter.Scope scope = this.limiter.tryAcquire(match.getMapping().getPrimaryAlias(),
+                actor.substring(actor.indexOf('!') + 1), channel);
+        if (scope == null) {
+            return false;
+        }
+
+        // Limited commands are dropped without a reply, so they use none of the outbound budget
+        this.metricsFor(match).limited[scope.ordinal()].increment();
+        if (CarbonImpl.LOGGER.isDebugEnabled()) {
+            CarbonImpl.LOGGER.debug("Rate limited " + actor + " using " + match.getMapping().getPrimaryAlias()
+                    + " in " + channel + ", by " + scope.name().toLowerCase(Locale.ENGLISH));
+        }
+        return true;
+    }
+
+    private void suggest(ChannelMessageEvent event) {
+        final String message = event.getMessage();
+        if (!message.startsWith(this.commandPrefix)) {
+            return;
+        }
+
+        final int offset = this.commandPrefix.length();
+        final int end = message.indexOf(' ', offset);
+        final String actor = event.getActor().getName();
+        final List<String> suggestions = this.suggester.suggest(
+                message.substring(offset, end == -1 ? message.length() : end), namespace(event),
+                actor.substring(actor.indexOf('!') + 1),
+                event.getClient().getName() + '/' + event.getChannel().getName());
+        if (suggestions.isEmpty()) {
+            return;
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        builder.append(event.getActor().getNick()).append(": Unknown command, did you mean ");
+        for (int i = 0; i < suggestions.size(); i++) {
+            if (i > 0) {
+                builder.append(i == suggestions.size() - 1 ? " or " : ", ");
+            }
+            builder.append(this.commandPrefix).append(suggestions.get(i));
+        }
+        builder.append('?');
+
+        // Suggestions are only a courtesy, so are sent behind every command's replies
+        this.suggested.increment();
+        this.reply(event, MessagePriority.BULK, builder.toString());
+    }
+
+    private static CommandLocals namespace(ChannelMessageEvent event) {
+        final CommandLocals namespace = new CommandLocals();
+        namespace.put(Channel.class, event.getChannel());
+        namespace.put(User.class, event.getActor());
+        return namespace;
+    }
+
+    private void reply(ChannelMessageEvent event, MessagePriority priority, String message) {
+        getCarbon().getIRCManager().sendMessage(event.getClient(), event.getChannel().getName(), message, priority);
+    }
+
+    private CommandMetrics metricsFor(CommandResolver.Match match) {
+        final String command = match.getMapping().getPrimaryAlias();
+        final CommandMetrics metrics = this.commandMetrics.get(command);
+        if (metrics != null) {
+            return metrics;
+        }
+        return this.commandMetrics.computeIfAbsent(command, c -> new CommandMetrics(this.metrics, c));
+    }
+
+    private static final class CommandMetrics {
+
+        private final Counter executed;
+        private final Counter failed;
+        private final Counter denied;
+        private final Counter rejected;
+        private final Counter[] limited = new Counter[CommandRateLimiter.Scope.values().length];
+        private final Histogram time;
+
+        private CommandMetrics(MetricsService metrics, String command) {
+            this.executed = metrics.counter(MetricsService.name("carbon.commands.executed", "command", command));
+            this.failed = metrics.counter(MetricsService.name("carbon.commands.failed", "command", command));
+            this.denied = metrics.counter(MetricsService.name("carbon.commands.denied", "command", command));
+            this.rejected = metrics.counter(MetricsService.name("carbon.commands.rejected", "command", command));
+            this.time = metrics.histogram(MetricsService.name("carbon.commands.time", "command", command));
+            for (CommandRateLimiter.Scope scope : CommandRateLimiter.Scope.values()) {
+                this.limited[scope.ordinal()] = metrics.counter(MetricsService.name("carbon.commands.limited",
+                        "command", command, "scope", scope.name().toLowerCase(Locale.ENGLISH)));
+            }
+        }
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.jfr;
+
+/**
+ * Tracks whether Java Flight Recorder is recording, so Carbon's events
+ * are only created while it is.
+ *
+ * <p>Check {@link #isRecording()} before creating any of the events in
+ * this package - it is a single volatile read, so while nothing is
+ * recording the events cost nothing.</p>
+ *
+ * <p>The events themselves need the {@code jdk.jfr} API of Java 11, so are
+ * built from a separate source set and loaded reflectively, leaving the
+ * rest of Carbon built for Java 8. Where they can't be loaded, such as on
+ * Java 8 or a build without them, {@link #isRecording()} is never
+ * {@code true}.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class CarbonFlightRecorder {
+
+    private static final String FACTORY_CLASS = "uk.jamierocks.mana.carbon.jfr.JfrEventFactory";
+
+    // Set by the factory as it is created, so mustn't have an initialiser
+    private static volatile boolean recording;
+    private static final EventFactory FACTORY = loadFactory();
+
+    private CarbonFlightRecorder() {
+    }
+
+    /**
+     * Gets whether Java Flight Recorder is recording.
+     *
+     * @return {@code True} if recording, {@code false} otherwise
+     * @since 2.0.0
+     */
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Begins a command dispatch event, only while recording.
+     *
+     * @return The event
+     * @since 2.0.0
+     */
+    public static CommandDispatchEvent commandDispatch() {
+        return FACTORY.commandDispatch();
+    }
+
+    /**
+     * Begins an event post event, only while recording.
+     *
+     * @return The event
+     * @since 2.0.0
+     */
+    public static EventPostEvent eventPost() {
+        return FACTORY.eventPost();
+    }
+
+    /**
+     * Begins an IRC send event, only while recording.
+     *
+     * @return The event
+     * @since 2.0.0
+     */
+    public static IrcSendEvent ircSend() {
+        return FACTORY.ircSend();
+    }
+
+    /**
+     * Begins a plugin load event, only while recording.
+     *
+     * @return The event
+     * @since 2.0.0
+     */
+    public static PluginLoadEvent pluginLoad() {
+        return FACTORY.pluginLoad();
+    }
+
+    static void setRecording(boolean recording) {
+        CarbonFlightRecorder.recording = recording;
+    }
+
+    private static EventFactory loadFactory() {
+        try {
+            return (EventFactory) Class.forName(FACTORY_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | SecurityException ignored) {
+            // Flight Recorder, or Carbon's events, are unavailable, so nothing is ever recorded
+            return null;
+        }
+    }
+}
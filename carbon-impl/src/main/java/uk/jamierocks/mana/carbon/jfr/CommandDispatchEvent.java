@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.jfr;
+
+/**
+ * A Flight Recorder event for the dispatch of a command, from its
+ * permission check to its completion.
+ *
+ * <p>Get one from {@link CarbonFlightRecorder#commandDispatch()}, and only while
+ * {@link CarbonFlightRecorder#isRecording()}.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public interface CommandDispatchEvent {
+
+    /**
+     * Ends timing the dispatch, and commits the event.
+     *
+     * @param command The primary alias of the command
+     * @param network The network the command was issued on
+     * @param channel The channel the command was issued in
+     * @param user The full name of the user who issued the command
+     * @param outcome The outcome, such as {@code executed}
+     * @since 2.0.0
+     */
+    void finish(String command, String network, String channel, String user, String outcome);
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.jfr;
+
+/**
+ * Creates Carbon's Flight Recorder events, each of which begins timing
+ * as it is created.
+ *
+ * <p>The only implementation needs the {@code jdk.jfr} API, so is built
+ * for Java 11 from a separate source set, and loaded reflectively by
+ * {@link CarbonFlightRecorder}.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+interface EventFactory {
+
+    CommandDispatchEvent commandDispatch();
+
+    EventPostEvent eventPost();
+
+    IrcSendEvent ircSend();
+
+    PluginLoadEvent pluginLoad();
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.jfr;
+
+/**
+ * A Flight Recorder event for the dispatch of an event to a single
+ * subscriber of Carbon's event bus.
+ *
+ * <p>Get one from {@link CarbonFlightRecorder#eventPost()}, and only while
+ * {@link CarbonFlightRecorder#isRecording()}.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public interface EventPostEvent {
+
+    /**
+     * Ends timing the dispatch, and commits the event.
+     *
+     * @param eventType The class of the event
+     * @param listener The listener
+     * @param method The name of the subscriber method
+     * @since 2.0.0
+     */
+    void finish(Class<?> eventType, Object listener, String method);
+}
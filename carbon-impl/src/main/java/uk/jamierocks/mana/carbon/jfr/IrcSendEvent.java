@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.jfr;
+
+/**
+ * A Flight Recorder event for a line sent to an IRC network by the
+ * outbound scheduler.
+ *
+ * <p>Get one from {@link CarbonFlightRecorder#ircSend()}, and only while
+ * {@link CarbonFlightRecorder#isRecording()}.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public interface IrcSendEvent {
+
+    /**
+     * Ends timing the send, and commits the event.
+     *
+     * @param network The network
+     * @param target The channel or nick the line was sent to
+     * @param line The line, without its line ending
+     * @param queuedTime The time the message waited to be sent, in nanoseconds
+     * @since 2.0.0
+     */
+    void finish(String network, String target, String line, long queuedTime);
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.jfr;
+
+/**
+ * A Flight Recorder event for a phase of loading a plugin, such as its
+ * construction or its handling of a lifecycle event.
+ *
+ * <p>Get one from {@link CarbonFlightRecorder#pluginLoad()}, and only while
+ * {@link CarbonFlightRecorder#isRecording()}.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public interface PluginLoadEvent {
+
+    /**
+     * Ends timing the phase, and commits the event.
+     *
+     * @param plugin The id of the plugin
+     * @param phase The phase
+     * @since 2.0.0
+     */
+    void finish(String plugin, String phase);
+}
@@ -14,32 +14,58 @@
  * limitations under the License.
  */
 
+
 package uk.jamierocks.mana.carbon.module;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static uk.jamierocks.mana.carbon.util.Constants.MODULES_PATH;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.inject.Guice;
+import com.google.common.collect.Sets;
 import com.google.inject.Injector;
 import uk.jamierocks.mana.carbon.Carbon;
 import uk.jamierocks.mana.carbon.CarbonImpl;
+import uk.jamierocks.mana.carbon.command.CarbonDispatcher;
+import uk.jamierocks.mana.carbon.event.CarbonEventBus;
+import uk.jamierocks.mana.carbon.event.Event;
+import uk.jamierocks.mana.carbon.guice.CarbonInjectors;
 import uk.jamierocks.mana.carbon.guice.ModuleGuiceModule;
+import uk.jamierocks.mana.carbon.irc.CarbonIRCManager;
+import uk.jamierocks.mana.carbon.plugin.CarbonPluginManager;
 import uk.jamierocks.mana.carbon.plugin.PluginContainer;
+import uk.jamierocks.mana.carbon.service.CarbonServiceRegistry;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * The implementation of {@link ModuleManager} for Carbon.
  *
+ * <p>Every registered module is remembered, whether it is enabled or
+ * not, so it may be enabled later. Modules share a class loader with
+ * their plugin - or with Carbon itself - so what each module registers is
+ * recorded by the {@link ModuleRecorder} while it is constructed and
+ * handles lifecycle events. Anything registered later, such as from a
+ * command, is not recorded, and so is left registered should the module be
+ * disabled.</p>
+ *
  * @author Jamie Mansfield
  * @since 1.0.0
  */
 public final class CarbonModuleManager implements ModuleManager {
 
-    private final Map<String, ModuleContainer> modules = Maps.newHashMap();
+    private final Map<String, ModuleRegistration> registrations = Maps.newConcurrentMap();
+    private final Map<String, ModuleContainer> modules = Maps.newConcurrentMap();
+    private final Map<String, Set<Object>> registered = Maps.newConcurrentMap();
+    private final ModuleStates states = ModuleStates.load(MODULES_PATH);
 
     /**
      * {@inheritDoc}
@@ -61,24 +87,219 @@ public final class CarbonModuleManager implements ModuleManager {
         }
     }
 
-    private void registerModule0(PluginContainer container, Class<?> module) {
+    private synchronized void registerModule0(PluginContainer container, Class<?> module) {
         if (module.isAnnotationPresent(Module.class)) {
             final Module moduleAnnotation = module.getDeclaredAnnotation(Module.class);
+            final ModuleRegistration registration = new ModuleRegistration(container, module, moduleAnnotation);
+            this.registrations.put(moduleAnnotation.id(), registration);
+
+            final boolean enabled = Carbon.getCarbon().getConfiguration().getNode()
+                    .getNode("module", moduleAnnotation.id(), "enabled").getBoolean(true);
+            if (this.states.isEnabled(moduleAnnotation.id(), enabled)) {
+                this.load(registration);
+            }
+        } else {
+            CarbonImpl.LOGGER.error(module.getName() + " has no @Module annotation!");
+        }
+    }
+
+    private ModuleContainer load(ModuleRegistration registration) {
+        final Module moduleAnnotation = registration.annotation;
+        CarbonImpl.LOGGER.info("Loading module: " + moduleAnnotation.name() + " (" + moduleAnnotation.id() + ")");
+
+        final Set<Object> registered = ModuleRecorder.newRegistrations();
+        final Object instance;
+        try (ModuleRecorder.Recording ignored = ModuleRecorder.recording(registered)) {
+            Injector injector = CarbonInjectors.createChild(((CarbonImpl) Carbon.getCarbon()).getInjector(),
+                    moduleAnnotation.id(), new ModuleGuiceModule(registration.owner, moduleAnnotation),
+                    registration.type);
+            instance = injector.getInstance(registration.type);
+
+            Carbon.getCarbon().getEventBus().register(instance);
+        } catch (RuntimeException e) {
+            // Whatever the module managed to register before failing is rolled back
+            unregister(registered);
+            throw e;
+        }
+        final ModuleContainer module = ModuleContainer.of(moduleAnnotation, instance, registration.owner);
+        this.registered.put(moduleAnnotation.id(), registered);
+        this.modules.put(moduleAnnotation.id(), module);
+
+        CarbonImpl.LOGGER.info("Loaded module: " + moduleAnnotation.name() + " (" + moduleAnnotation.id() + ")");
+        return module;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The module's event subscribers, IRC listeners, commands, service
+     * providers and gauges are all unregistered. IRC networks stay
+     * connected throughout.</p>
+     */
+    @Override
+    public synchronized boolean disable(String id) {
+        checkNotNull(id, "id is null!");
 
-            if (Carbon.getCarbon().getConfiguration().getNode().getNode("module", moduleAnnotation.id(), "enabled").getBoolean(true)) {
-                CarbonImpl.LOGGER.info("Loading module: " + moduleAnnotation.name() + " (" + moduleAnnotation.id() + ")");
+        final ModuleContainer module = this.modules.remove(id);
+        if (module == null) {
+            CarbonImpl.LOGGER.error("Module " + id + " is not loaded, so cannot be disabled!");
+            return false;
+        }
 
-                Injector injector = Guice.createInjector(new ModuleGuiceModule(container, moduleAnnotation));
-                Object instance = injector.getInstance(module);
+        this.unload(module);
+        this.states.setEnabled(id, false);
+        CarbonImpl.LOGGER.info("Disabled module: " + module.getName() + " (" + module.getId() + ")");
+        return true;
+    }
 
-                Carbon.getCarbon().getEventBus().register(instance);
-                this.modules.put(moduleAnnotation.id(), ModuleContainer.of(moduleAnnotation, instance, container));
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The module receives every lifecycle event that has been posted
+     * so far, in order, once loaded.</p>
+     */
+    @Override
+    public synchronized boolean enable(String id) {
+        checkNotNull(id, "id is null!");
 
-                CarbonImpl.LOGGER.info("Loaded module: " + moduleAnnotation.name() + " (" + moduleAnnotation.id() + ")");
+        final ModuleRegistration registration = this.registrations.get(id);
+        if (registration == null) {
+            CarbonImpl.LOGGER.error("Module " + id + " has not been registered, so cannot be enabled!");
+            return false;
+        }
+        if (this.modules.containsKey(id)) {
+            CarbonImpl.LOGGER.error("Module " + id + " is already enabled!");
+            return false;
+        }
+
+        // The state is only persisted once the module has started, so a failure is never remembered as enabled
+        try {
+            final ModuleContainer module = this.load(registration);
+            try {
+                this.start(module);
+            } catch (RuntimeException e) {
+                this.modules.remove(id);
+                this.unload(module);
+                throw e;
             }
-        } else {
-            CarbonImpl.LOGGER.error(module.getName() + " has no @Module annotation!");
+        } catch (RuntimeException e) {
+            ExceptionReporter.report("Failed to enable module " + id + "!", e);
+            return false;
         }
+        this.states.setEnabled(id, true);
+        CarbonImpl.LOGGER.info("Enabled module: " + registration.annotation.name() + " (" + id + ")");
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>A new instance of the module is created, which receives every
+     * lifecycle event that has been posted so far, in order.</p>
+     */
+    @Override
+    public synchronized boolean reload(String id) {
+        checkNotNull(id, "id is null!");
+
+        final ModuleContainer module = this.modules.remove(id);
+        final ModuleRegistration registration = this.registrations.get(id);
+        if (module == null || registration == null) {
+            CarbonImpl.LOGGER.error("Module " + id + " is not loaded, so cannot be reloaded!");
+            return false;
+        }
+
+        this.unload(module);
+        this.start(this.load(registration));
+        CarbonImpl.LOGGER.info("Reloaded module: " + module.getName() + " (" + module.getId() + ")");
+        return true;
+    }
+
+    /**
+     * Posts the given lifecycle event to each of the enabled modules in
+     * turn, recording what each registers while handling it.
+     *
+     * @param event The lifecycle event
+     * @return The instances of the modules posted to
+     * @since 2.0.0
+     */
+    public Collection<Object> postLifecycleEvent(Event event) {
+        checkNotNull(event, "event is null!");
+
+        final List<Object> instances = Lists.newArrayList();
+        for (ModuleContainer module : Lists.newArrayList(this.modules.values())) {
+            this.post(module, event);
+            instances.add(module.getInstance());
+        }
+        return instances;
+    }
+
+    private void start(ModuleContainer module) {
+        for (Event event : ((CarbonPluginManager) Carbon.getCarbon().getPluginManager()).getLifecycleEvents()) {
+            this.post(module, event);
+        }
+    }
+
+    private void post(ModuleContainer module, Event event) {
+        final Set<Object> registered = this.registered.get(module.getId());
+        if (registered == null) {
+            return;
+        }
+
+        try (ModuleRecorder.Recording ignored = ModuleRecorder.recording(registered)) {
+            ((CarbonEventBus) Carbon.getCarbon().getEventBus()).post(event,
+                    listener -> listener == module.getInstance());
+        }
+    }
+
+    private void unload(ModuleContainer module) {
+        final Set<Object> registered = this.registered.remove(module.getId());
+        registered.add(module.getInstance());
+        unregister(registered);
+    }
+
+    private static void unregister(Set<Object> registered) {
+        final Predicate<Object> owned;
+        synchronized (registered) {
+            final Set<Object> copy = Sets.newIdentityHashSet();
+            copy.addAll(registered);
+            owned = copy::contains;
+        }
+
+        ((CarbonEventBus) Carbon.getCarbon().getEventBus()).unregisterAll(owned);
+        ((CarbonIRCManager) Carbon.getCarbon().getIRCManager()).unregisterIRCEventListeners(owned);
+        ((CarbonDispatcher) Carbon.getCarbon().getCommandDispatcher()).unregisterCommands(owned::test);
+        ((CarbonServiceRegistry) Carbon.getCarbon().getServiceRegistry()).unregisterProviders(
+                registration -> owned.test(registration.getProvider()));
+        ((CarbonImpl) Carbon.getCarbon()).getMetrics().removeGauges(owned);
+    }
+
+    /**
+     * Unregisters all of the modules owned by the given plugin, including
+     * their event subscribers.
+     *
+     * @param container The plugin container
+     * @return The modules unregistered
+     * @since 2.0.0
+     */
+    public synchronized Collection<ModuleContainer> unregisterModules(PluginContainer container) {
+        checkNotNull(container, "container is null!");
+
+        // Disabled modules are forgotten too, as their classes are about to be unloaded
+        this.registrations.values().removeIf(registration -> registration.owner == container);
+
+        final List<ModuleContainer> removed = Lists.newArrayList();
+        final Iterator<ModuleContainer> iterator = this.modules.values().iterator();
+        while (iterator.hasNext()) {
+            final ModuleContainer module = iterator.next();
+            if (module.getOwner() == container) {
+                iterator.remove();
+                this.registered.remove(module.getId());
+                removed.add(module);
+                ((CarbonEventBus) Carbon.getCarbon().getEventBus()).unregisterAll(listener -> listener == module.getInstance());
+                CarbonImpl.LOGGER.info("Unloaded module: " + module.getName() + " (" + module.getId() + ")");
+            }
+        }
+        return removed;
     }
 
     /**
@@ -97,4 +318,17 @@ public final class CarbonModuleManager implements ModuleManager {
     public Collection<ModuleContainer> getModules() {
         return Collections.unmodifiableCollection(this.modules.values());
     }
+
+    private static final class ModuleRegistration {
+
+        private final PluginContainer owner;
+        private final Class<?> type;
+        private final Module annotation;
+
+        private ModuleRegistration(PluginContainer owner, Class<?> type, Module annotation) {
+            this.owner = owner;
+            this.type = type;
+            this.annotation = annotation;
+        }
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.module;
+
+import com.google.common.collect.Sets;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Records what a module registers while it starts, so that exactly that
+ * may be unregistered should the module be disabled or reloaded.
+ *
+ * <p>Each of Carbon's registries passes what it is given to
+ * {@link #record(Object)}, which adds it to the registrations of the
+ * module currently starting on the calling thread, if any.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class ModuleRecorder {
+
+    private static final ThreadLocal<Set<Object>> RECORDING = new ThreadLocal<>();
+
+    private ModuleRecorder() {
+    }
+
+    /**
+     * Records the given object as registered by the module currently
+     * starting on this thread, should there be one.
+     *
+     * @param object The object registered
+     */
+    public static void record(Object object) {
+        final Set<Object> recording = RECORDING.get();
+        if (recording != null) {
+            recording.add(object);
+        }
+    }
+
+    /**
+     * Creates an empty set of registrations, to be recorded into.
+     *
+     * @return The registrations
+     */
+    static Set<Object> newRegistrations() {
+        return Collections.synchronizedSet(Sets.newIdentityHashSet());
+    }
+
+    /**
+     * Starts recording everything registered on this thread into the given
+     * registrations, until the returned recording is closed.
+     *
+     * @param registrations The registrations to record into
+     * @return The recording
+     */
+    static Recording recording(Set<Object> registrations) {
+        final Set<Object> previous = RECORDING.get();
+        RECORDING.set(registrations);
+        return () -> {
+            if (previous == null) {
+                RECORDING.remove();
+            } else {
+                RECORDING.set(previous);
+            }
+        };
+    }
+
+    /**
+     * A recording in progress, which restores whatever was being recorded
+     * before it once closed.
+     */
+    interface Recording extends AutoCloseable {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.jamierocks.mana.carbon.module;
+
+import com.google.common.collect.Maps;
+import ninja.leaping.configurate.ConfigurationNode;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+import uk.jamierocks.mana.carbon.util.Configs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * The modules which have been enabled or disabled at runtime, which take
+ * precedence over the configuration, persisted so they survive restarts.
+ *
+ * <p>The file is written to a temporary file and moved into place, as
+ * with the plugin index, so a crash never leaves it half written.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class ModuleStates {
+
+    private final Path path;
+    private final Map<String, Boolean> states = Maps.newConcurrentMap();
+
+    private ModuleStates(Path path) {
+        this.path = path.toAbsolutePath();
+    }
+
+    /**
+     * Loads the states from the given path, starting with none should it
+     * not exist or be invalid.
+     *
+     * @param path The path of the states
+     * @return The states
+     */
+    static ModuleStates load(Path path) {
+        final ModuleStates states = new ModuleStates(path);
+        if (Files.notExists(states.path)) {
+            return states;
+        }
+
+        try {
+            final ConfigurationNode node = Configs.loader(states.path).load();
+            final Map<Object, ? extends ConfigurationNode> modules = node.getNode("modules").getChildrenMap();
+            for (Map.Entry<Object, ? extends ConfigurationNode> module : modules.entrySet()) {
+                states.states.put(String.valueOf(module.getKey()),
+                        module.getValue().getNode("enabled").getBoolean(true));
+            }
+        } catch (IOException | RuntimeException e) {
+            ExceptionReporter.report("Failed to read the module states, the configuration will be used instead", e);
+            states.states.clear();
+        }
+
+        return states;
+    }
+
+    /**
+     * Gets whether the module with the given identifier is enabled.
+     *
+     * @param id The module id
+     * @param fallback Whether it is enabled, should it not have been set at runtime
+     * @return {@code True} if the module is enabled
+     */
+    boolean isEnabled(String id, boolean fallback) {
+        return this.states.getOrDefault(id, fallback);
+    }
+
+    /**
+     * Sets whether the module with the given identifier is enabled, and
+     * writes the states.
+     *
+     * @param id The module id
+     * @param enabled Whether the module is enabled
+     */
+    synchronized void setEnabled(String id, boolean enabled) {
+        this.states.put(id, enabled);
+
+        try {
+            Configs.saveAtomically(this.path, node -> {
+                for (Map.Entry<String, Boolean> state : this.states.entrySet()) {
+                    node.getNode("modules", state.getKey(), "enabled").setValue(state.getValue());
+                }
+            });
+        } catch (IOException e) {
+            ExceptionReporter.report("Failed to save the module states!", e);
+        }
+    }
+}
@@ -18,28 +18,55 @@ package uk.jamierocks.mana.carbon.plugin;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.base.Joiner;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.inject.Guice;
+import com.google.common.collect.Sets;
 import com.google.inject.Injector;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import uk.jamierocks.mana.carbon.Carbon;
 import uk.jamierocks.mana.carbon.CarbonImpl;
+import uk.jamierocks.mana.carbon.command.CarbonDispatcher;
 import uk.jamierocks.mana.carbon.config.CarbonConfigManager;
+import uk.jamierocks.mana.carbon.event.CarbonEventBus;
+import uk.jamierocks.mana.carbon.event.Event;
+import uk.jamierocks.mana.carbon.event.state.InitialisationEvent;
+import uk.jamierocks.mana.carbon.event.state.PostInitialisationEvent;
+import uk.jamierocks.mana.carbon.event.state.PreInitialisationEvent;
+import uk.jamierocks.mana.carbon.guice.CarbonInjectors;
 import uk.jamierocks.mana.carbon.guice.PluginGuiceModule;
+import uk.jamierocks.mana.carbon.irc.CarbonIRCManager;
+import uk.jamierocks.mana.carbon.jfr.CarbonFlightRecorder;
+import uk.jamierocks.mana.carbon.jfr.PluginLoadEvent;
+import uk.jamierocks.mana.carbon.module.CarbonModuleManager;
+import uk.jamierocks.mana.carbon.service.CarbonServiceRegistry;
 import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+import uk.jamierocks.mana.carbon.service.metrics.CarbonMetricsService;
+import uk.jamierocks.mana.carbon.service.metrics.Histogram;
+import uk.jamierocks.mana.carbon.service.metrics.MetricsService;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.jar.JarFile;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * The implementation of {@link PluginManager} for Carbon.
@@ -50,6 +77,7 @@ import java.util.jar.JarFile;
 public final class CarbonPluginManager implements PluginManager {
 
     private static final File PLUGINS_DIR = new File("plugins");
+    private static final Path INDEX_PATH = PLUGINS_DIR.toPath().resolve("plugins.json");
 
     static {
         if (!PLUGINS_DIR.exists()) {
@@ -57,9 +85,19 @@ public final class CarbonPluginManager implements PluginManager {
         }
     }
 
-    private final Map<String, PluginContainer> plugins = Maps.newHashMap();
-    private final Map<Object, PluginContainer> instanceToContainer = Maps.newHashMap();
-    private final Map<PluginContainer, Object> containerToInstance = Maps.newHashMap();
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("Carbon Plugin Loader #" + thread.getPoolIndex());
+        return thread;
+    }, null, false);
+    private final Map<String, PluginContainer> plugins = Maps.newConcurrentMap();
+    private final Map<Object, PluginContainer> instanceToContainer = Maps.newConcurrentMap();
+    private final Map<PluginContainer, Object> containerToInstance = Maps.newConcurrentMap();
+    private final Map<String, PluginCandidate> candidates = Maps.newConcurrentMap();
+    private final Map<String, PluginSource> sources = Maps.newConcurrentMap();
+    private volatile List<List<PluginContainer>> waves = ImmutableList.of();
+    private final List<Event> lifecycleEvents = Lists.newCopyOnWriteArrayList();
+    private ClassLoaderLeakDetector leakDetector;
 
     /**
      * {@inheritDoc}
@@ -104,68 +142,384 @@ public final class CarbonPluginManager implements PluginManager {
     /**
      * Finds and loads all the plugins.
      *
+     * <p>The jars are scanned without loading any of their classes, so only
+     * the plugin classes themselves are ever loaded. Jars that have not
+     * changed since the last start are not scanned at all, their plugins
+     * being read from the plugin index instead.</p>
+     *
+     * <p>Plugins are ordered by their dependencies, and constructed in
+     * waves. Within a wave, plugins which are {@link Plugin#concurrent()}
+     * are constructed in parallel on a fork-join pool, while the rest are
+     * constructed one at a time on the calling thread.</p>
+     *
      * @since 1.0.0
      */
-    public void loadAllPlugins() {
-        File[] jarFiles = PLUGINS_DIR.listFiles(file -> {
+    public synchronized void loadAllPlugins() {
+        final File[] jarFiles = PLUGINS_DIR.listFiles(file -> {
             return file.getName().endsWith(".jar");
         });
+        if (jarFiles == null) {
+            return;
+        }
 
-        for (File jarFile : jarFiles) {
-            final List<Class> mods = this.findPlugins(jarFile);
-
-            for (Class<?> pluginClass : mods) {
-                final Plugin pluginAnnotation = pluginClass.getDeclaredAnnotation(Plugin.class);
-                final CommentedConfigurationNode node = CarbonConfigManager.getPluginConfig(pluginAnnotation);
+        if (Boolean.getBoolean("carbon.plugins.reindex")) {
+            this.invalidateIndex();
+        }
+        final PluginIndex index = PluginIndex.load(INDEX_PATH);
+        final Map<File, List<PluginCandidate>> candidates = index.scan(Arrays.asList(jarFiles));
+        index.save();
 
-                if (node != null) {
-                    final PluginContainer container = new CarbonPluginContainer(this, pluginAnnotation, node);
-                    final Injector injector = Guice.createInjector(new PluginGuiceModule(container));
+        final Map<PluginCandidate, PluginSource> sources = Maps.newHashMap();
+        for (Map.Entry<File, List<PluginCandidate>> entry : candidates.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
 
-                    this.loadPlugin(container, injector.getInstance(pluginClass));
-                }
+            final PluginSource source = PluginSource.of(entry.getKey());
+            if (source != null) {
+                entry.getValue().forEach(candidate -> sources.put(candidate, source));
             }
         }
+
+        this.waves = this.constructPlugins(sources);
     }
 
     /**
-     * Finds all the plugins in a given jar file.
+     * {@inheritDoc}
      *
-     * @param jar The jar file
-     * @return All the plugins
-     * @since 1.0.0
+     * <p>All of the plugins within the same jar are unloaded together, as
+     * they share a class loader. Everything they registered with Carbon -
+     * event subscribers, IRC listeners, commands, services and modules -
+     * is unregistered, and the class loader is closed.</p>
      */
-    private List<Class> findPlugins(File jar) {
-        List<Class> pluginClasses = Lists.newArrayList();
+    @Override
+    public synchronized boolean unload(String id) {
+        checkNotNull(id, "id is null!");
+
+        final PluginSource source = this.sources.get(id);
+        if (source == null) {
+            CarbonImpl.LOGGER.error("Plugin " + id + " is not loaded from a jar, so cannot be unloaded!");
+            return false;
+        }
+
+        final List<String> ids = this.sources.entrySet().stream()
+                .filter(entry -> entry.getValue() == source)
+                .map(Map.Entry::getKey)
+                .sorted()
+                .collect(Collectors.toList());
+        final List<String> dependents = this.candidates.values().stream()
+                .filter(candidate -> !ids.contains(candidate.getId()))
+                .filter(candidate -> candidate.getDependencies().stream().anyMatch(ids::contains))
+                .map(PluginCandidate::getId)
+                .sorted()
+                .collect(Collectors.toList());
+        if (!dependents.isEmpty()) {
+            CarbonImpl.LOGGER.error("Plugin " + id + " cannot be unloaded, as it is required by "
+                    + Joiner.on(", ").join(dependents) + "!");
+            return false;
+        }
 
+        this.unloadPlugins(source, ids);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All of the plugins within the same jar are reloaded together, and
+     * receive the lifecycle events once loaded again.</p>
+     */
+    @Override
+    public synchronized boolean reload(String id) {
+        checkNotNull(id, "id is null!");
+
+        final PluginSource previous = this.sources.get(id);
+        if (previous == null || !this.unload(id)) {
+            return false;
+        }
+
+        final List<PluginCandidate> candidates;
         try {
-            URLClassLoader classLoader = new URLClassLoader(
-                    new URL[]{jar.toURI().toURL()}, CarbonPluginManager.class.getClassLoader());
-
-            try (JarFile jarFile = new JarFile(jar)) {
-                jarFile.stream().forEach(jarEntry -> {
-                    if (!jarEntry.isDirectory() && jarEntry.getName().endsWith(".class")) {
-                        String className = jarEntry.getName().replace('/', '.');
-
-                        try {
-                            Class<?> pluginClass = classLoader.loadClass(
-                                    className.substring(0, className.length() - ".class".length()));
-                            if (pluginClass.isAnnotationPresent(Plugin.class)) {
-                                pluginClasses.add(pluginClass);
-                            }
-                        } catch (ClassNotFoundException e) {
-                            ExceptionReporter.report("Exception while loading plugin!", e);
+            candidates = PluginScanner.scan(previous.jar);
+        } catch (IOException e) {
+            ExceptionReporter.report("Exception while reloading plugin " + id + "!", e);
+            return false;
+        }
+
+        final PluginSource source = PluginSource.of(previous.jar);
+        if (source == null) {
+            return false;
+        }
+        final Map<PluginCandidate, PluginSource> sources = Maps.newHashMap();
+        candidates.forEach(candidate -> sources.put(candidate, source));
+
+        final List<List<PluginContainer>> waves = this.constructPlugins(sources);
+        this.waves = ImmutableList.<List<PluginContainer>>builder().addAll(this.waves).addAll(waves).build();
+        for (Event event : Arrays.asList(new PreInitialisationEvent(), new InitialisationEvent(), new PostInitialisationEvent())) {
+            this.postLifecycleEvent(event, waves);
+        }
+
+        return this.isLoaded(id);
+    }
+
+    private List<List<PluginContainer>> constructPlugins(Map<PluginCandidate, PluginSource> sources) {
+        // Plugins are constructed in waves, each wave only depending on those before it
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final Map<String, Long> timings = Maps.newHashMap();
+        final List<List<PluginContainer>> waves = Lists.newArrayList();
+        final Set<String> failed = Sets.newHashSet();
+        for (List<PluginCandidate> sorted : PluginGraph.sort(sources.keySet(), this.plugins.keySet())) {
+            // The waves are sorted up front, so plugins depending on one that failed to construct are skipped here
+            final List<PluginCandidate> wave = Lists.newArrayList();
+            for (PluginCandidate candidate : sorted) {
+                final Optional<String> dependency = candidate.getDependencies().stream()
+                        .filter(failed::contains)
+                        .findFirst();
+                if (dependency.isPresent()) {
+                    CarbonImpl.LOGGER.error("Plugin " + candidate.getId() + " is missing its dependency "
+                            + dependency.get() + ", which failed to load, skipping!");
+                    failed.add(candidate.getId());
+                } else {
+                    wave.add(candidate);
+                }
+            }
+
+            final List<PluginContainer> loaded = Lists.newArrayList();
+            final List<Map.Entry<PluginContainer, Object>> results = this.inWave(wave, PluginCandidate::isConcurrent,
+                    candidate -> {
+                        final PluginLoadEvent recorded = CarbonFlightRecorder.isRecording()
+                                ? CarbonFlightRecorder.pluginLoad() : null;
+                        final long start = System.nanoTime();
+                        final Map.Entry<PluginContainer, Object> result =
+                                this.constructPlugin(candidate, sources.get(candidate).classLoader);
+                        if (recorded != null) {
+                            recorded.finish(candidate.getId(), "construct");
                         }
-                    }
-                });
-            } catch (IOException e) {
-                ExceptionReporter.report("Exception while loading plugin!", e);
+                        synchronized (timings) {
+                            timings.put(candidate.getId(), System.nanoTime() - start);
+                        }
+                        return result;
+                    });
+
+            for (int i = 0; i < wave.size(); i++) {
+                final Map.Entry<PluginContainer, Object> result = results.get(i);
+                if (result != null) {
+                    this.loadPlugin(result.getKey(), result.getValue());
+                    this.candidates.put(wave.get(i).getId(), wave.get(i));
+                    this.sources.put(wave.get(i).getId(), sources.get(wave.get(i)));
+                    loaded.add(result.getKey());
+                } else {
+                    failed.add(wave.get(i).getId());
+                }
+            }
+            waves.add(ImmutableList.copyOf(loaded));
+            metrics().counter("carbon.plugins.loaded").add(loaded.size());
+        }
+
+        report("Constructed", waves, timings, stopwatch, "construct",
+                metrics().histogram("carbon.plugins.construct.time"));
+        return ImmutableList.copyOf(waves);
+    }
+
+    private void unloadPlugins(PluginSource source, List<String> ids) {
+        final Set<PluginContainer> containers = Sets.newIdentityHashSet();
+        ids.forEach(id -> containers.add(this.plugins.get(id)));
+        final Predicate<Object> owned = object -> object.getClass().getClassLoader() == source.classLoader;
+
+        for (PluginContainer container : containers) {
+            ((CarbonModuleManager) Carbon.getCarbon().getModuleManager()).unregisterModules(container);
+        }
+        ((CarbonEventBus) Carbon.getCarbon().getEventBus()).unregisterAll(owned);
+        ((CarbonIRCManager) Carbon.getCarbon().getIRCManager()).unregisterIRCEventListeners(owned);
+        ((CarbonDispatcher) Carbon.getCarbon().getCommandDispatcher()).unregisterCommands(owned::test);
+        ((CarbonServiceRegistry) Carbon.getCarbon().getServiceRegistry()).unregisterProviders(
+                registration -> containers.contains(registration.getPlugin())
+                        || owned.test(registration.getProvider()));
+        ((CarbonMetricsService) metrics()).removeGauges(owned);
+
+        for (PluginContainer container : containers) {
+            final Object instance = this.containerToInstance.remove(container);
+            if (instance != null) {
+                this.instanceToContainer.remove(instance);
             }
-        } catch (MalformedURLException e) {
+            this.plugins.remove(container.getId());
+            this.candidates.remove(container.getId());
+            this.sources.remove(container.getId());
+            metrics().counter("carbon.plugins.unloaded").increment();
+            CarbonImpl.LOGGER.info("Unloaded plugin: " + container.getName() + " (" + container.getId() + ")");
+        }
+        this.waves = ImmutableList.copyOf(this.waves.stream()
+                .map(wave -> ImmutableList.copyOf(wave.stream().filter(c -> !containers.contains(c)).iterator()))
+                .filter(wave -> !wave.isEmpty())
+                .iterator());
+
+        try {
+            source.classLoader.close();
+        } catch (IOException e) {
+            ExceptionReporter.report("Failed to close the class loader of " + source.jar.getName() + "!", e);
+        }
+        if (this.leakDetector == null) {
+            this.leakDetector = new ClassLoaderLeakDetector();
+        }
+        this.leakDetector.watch(source.jar.getName(), source.classLoader);
+    }
+
+    /**
+     * Posts the given lifecycle event, such as the {@link PreInitialisationEvent}.
+     *
+     * <p>The event is first posted to each module in turn, then to
+     * everything else but the plugins loaded by {@link #loadAllPlugins()},
+     * such as Carbon itself. It is then posted to those plugins in the same
+     * waves they were constructed in, so a plugin's dependencies have always
+     * handled the event before it. As with construction, only plugins which
+     * are {@link Plugin#concurrent()} handle it in parallel.</p>
+     *
+     * @param event The event
+     * @since 2.0.0
+     */
+    public void postLifecycleEvent(Event event) {
+        this.lifecycleEvents.add(event);
+        final CarbonEventBus eventBus = (CarbonEventBus) Carbon.getCarbon().getEventBus();
+        final List<List<PluginContainer>> waves = this.waves;
+        final Set<Object> instances = Sets.newIdentityHashSet();
+        for (List<PluginContainer> wave : waves) {
+            wave.forEach(container -> this.getInstance(container).ifPresent(instances::add));
+        }
+        // Modules are posted to one at a time, so what each registers is recorded
+        instances.addAll(((CarbonModuleManager) Carbon.getCarbon().getModuleManager()).postLifecycleEvent(event));
+        eventBus.post(event, listener -> !instances.contains(listener));
+
+        this.postLifecycleEvent(event, waves);
+    }
+
+    /**
+     * Gets the lifecycle events posted so far, in the order they were
+     * posted, so anything loaded late may be brought up to date.
+     *
+     * @return The lifecycle events
+     * @since 2.0.0
+     */
+    public List<Event> getLifecycleEvents() {
+        return Collections.unmodifiableList(this.lifecycleEvents);
+    }
+
+    private void postLifecycleEvent(Event event, List<List<PluginContainer>> waves) {
+        final CarbonEventBus eventBus = (CarbonEventBus) Carbon.getCarbon().getEventBus();
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final Map<String, Long> timings = Maps.newHashMap();
+        for (List<PluginContainer> wave : waves) {
+            this.inWave(wave, this::isConcurrent, container -> {
+                final PluginLoadEvent recorded = CarbonFlightRecorder.isRecording()
+                        ? CarbonFlightRecorder.pluginLoad() : null;
+                final long start = System.nanoTime();
+                this.getInstance(container).ifPresent(instance -> eventBus.post(event, listener -> listener == instance));
+                if (recorded != null) {
+                    recorded.finish(container.getId(), event.getClass().getSimpleName());
+                }
+                synchronized (timings) {
+                    timings.put(container.getId(), System.nanoTime() - start);
+                }
+                return null;
+            });
+        }
+
+        report("Posted " + event.getClass().getSimpleName() + " to", waves, timings, stopwatch,
+                event.getClass().getSimpleName(), metrics().histogram("carbon.plugins.lifecycle.time"));
+    }
+
+    private Map.Entry<PluginContainer, Object> constructPlugin(PluginCandidate candidate, ClassLoader classLoader) {
+        final Class<?> pluginClass;
+        try {
+            pluginClass = classLoader.loadClass(candidate.getClassName());
+        } catch (ClassNotFoundException | LinkageError e) {
             ExceptionReporter.report("Exception while loading plugin!", e);
+            return null;
+        }
+
+        final Plugin pluginAnnotation = pluginClass.getDeclaredAnnotation(Plugin.class);
+        if (pluginAnnotation == null) {
+            return null;
+        }
+        final CommentedConfigurationNode node = CarbonConfigManager.getPluginConfig(pluginAnnotation);
+        if (node == null) {
+            return null;
+        }
+
+        try {
+            final PluginContainer container = new CarbonPluginContainer(this, pluginAnnotation, node);
+            final Injector injector = CarbonInjectors.createChild(((CarbonImpl) Carbon.getCarbon()).getInjector(),
+                    container.getId(), new PluginGuiceModule(container), pluginClass);
+
+            return Maps.immutableEntry(container, injector.getInstance(pluginClass));
+        } catch (RuntimeException e) {
+            ExceptionReporter.report("Exception while loading plugin " + candidate.getId() + "!", e);
+            return null;
+        }
+    }
+
+    private boolean isConcurrent(PluginContainer container) {
+        final PluginCandidate candidate = this.candidates.get(container.getId());
+        return candidate != null && candidate.isConcurrent();
+    }
+
+    /**
+     * Runs the given task for each item of a wave, those which may be
+     * handled concurrently on the pool, and the rest in turn on the calling
+     * thread meanwhile.
+     */
+    private <T, R> List<R> inWave(List<T> items, Predicate<T> concurrent, Function<T, R> task) {
+        final List<ForkJoinTask<R>> tasks = Lists.newArrayListWithCapacity(items.size());
+        for (T item : items) {
+            tasks.add(concurrent.test(item) ? this.pool.submit(() -> task.apply(item)) : null);
+        }
+
+        final List<R> results = Lists.newArrayListWithCapacity(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            results.add(tasks.get(i) == null ? task.apply(items.get(i)) : null);
         }
+        for (int i = 0; i < items.size(); i++) {
+            if (tasks.get(i) != null) {
+                results.set(i, tasks.get(i).join());
+            }
+        }
+        return results;
+    }
+
+    private static MetricsService metrics() {
+        return ((CarbonImpl) Carbon.getCarbon()).getMetrics();
+    }
+
+    private static void report(String action, List<List<PluginContainer>> waves, Map<String, Long> timings,
+            Stopwatch stopwatch, String phase, Histogram histogram) {
+        // Each plugin's time is kept as a running total, so repeated reloads are all accounted for
+        timings.forEach((id, time) -> {
+            histogram.record(time);
+            metrics().counter(MetricsService.name("carbon.plugins.time", "plugin", id, "phase", phase)).add(time);
+        });
+
+        final List<Map.Entry<String, Long>> slowest = Lists.newArrayList(timings.entrySet());
+        slowest.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        CarbonImpl.LOGGER.info(action + " " + timings.size() + " plugins in " + waves.size() + " waves in "
+                + stopwatch.elapsed(TimeUnit.MILLISECONDS) + "ms");
+        if (!slowest.isEmpty()) {
+            CarbonImpl.LOGGER.info("Plugin timings: " + slowest.stream()
+                    .map(entry -> entry.getKey() + " " + TimeUnit.NANOSECONDS.toMillis(entry.getValue()) + "ms")
+                    .collect(Collectors.joining(", ")));
+        }
+    }
 
-        return pluginClasses;
+    /**
+     * Marks the plugin index as invalid, so that every plugin jar is
+     * scanned again the next time plugins are loaded.
+     *
+     * <p>The index may also be invalidated on start, by setting the
+     * {@code carbon.plugins.reindex} system property.</p>
+     *
+     * @since 2.0.0
+     */
+    public void invalidateIndex() {
+        PluginIndex.invalidate(INDEX_PATH);
     }
 
     /**
@@ -177,13 +531,39 @@ public final class CarbonPluginManager implements PluginManager {
      */
     public void loadPlugin(PluginContainer container, Object object) {
         CarbonImpl.LOGGER.info("Found plugin: " + container.getName() + " (" + container.getId() + ")");
+        final PluginLoadEvent recorded = CarbonFlightRecorder.isRecording()
+                ? CarbonFlightRecorder.pluginLoad() : null;
         Carbon.getCarbon().getEventBus().register(object);
         this.plugins.put(container.getId(), container);
         this.instanceToContainer.put(object, container);
         this.containerToInstance.put(container, object);
+        if (recorded != null) {
+            recorded.finish(container.getId(), "register");
+        }
     }
 
     public Optional<Object> getInstance(PluginContainer container) {
         return Optional.ofNullable(this.containerToInstance.get(container));
     }
+
+    private static final class PluginSource {
+
+        private final File jar;
+        private final URLClassLoader classLoader;
+
+        private PluginSource(File jar, URLClassLoader classLoader) {
+            this.jar = jar;
+            this.classLoader = classLoader;
+        }
+
+        private static PluginSource of(File jar) {
+            try {
+                return new PluginSource(jar, new URLClassLoader(
+                        new URL[]{jar.toURI().toURL()}, CarbonPluginManager.class.getClassLoader()));
+            } catch (MalformedURLException e) {
+                ExceptionReporter.report("Exception while loading plugin!", e);
+                return null;
+            }
+        }
+    }
 }
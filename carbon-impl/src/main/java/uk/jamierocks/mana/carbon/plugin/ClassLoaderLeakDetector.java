@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.plugin;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import uk.jamierocks.mana.carbon.CarbonImpl;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the class loaders of unloaded plugins, warning should one still
+ * be reachable a while after it was unloaded.
+ *
+ * <p>A class loader is only reachable once unloaded if something still
+ * references one of its classes or their instances - such as a thread the
+ * plugin started, or a listener it registered somewhere Carbon does not
+ * know of - which keeps every class of the plugin in memory.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class ClassLoaderLeakDetector {
+
+    private static final long GRACE_PERIOD = TimeUnit.MINUTES.toNanos(1);
+
+    private final Set<UnloadedClassLoader> unloaded = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("Carbon Leak Detector")
+                    .setDaemon(true)
+                    .build());
+
+    ClassLoaderLeakDetector() {
+        this.executor.scheduleWithFixedDelay(this::check, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Watches the given class loader, which should no longer be used.
+     *
+     * @param name The name of what the class loader was for, used when reporting
+     * @param classLoader The class loader
+     */
+    void watch(String name, ClassLoader classLoader) {
+        this.unloaded.add(new UnloadedClassLoader(name, classLoader, System.nanoTime()));
+    }
+
+    private void check() {
+        final long now = System.nanoTime();
+        if (this.unloaded.stream().noneMatch(loader -> loader.isDue(now))) {
+            return;
+        }
+
+        // Only collect when a loader is due, so the check is a fair one - unloads are rare
+        System.gc();
+
+        final Iterator<UnloadedClassLoader> iterator = this.unloaded.iterator();
+        while (iterator.hasNext()) {
+            final UnloadedClassLoader loader = iterator.next();
+            if (loader.reference.get() == null) {
+                CarbonImpl.LOGGER.debug("The class loader of " + loader.name + " has been collected");
+                iterator.remove();
+            } else if (loader.isDue(now)) {
+                CarbonImpl.LOGGER.warn("The class loader of " + loader.name + " is still reachable "
+                        + TimeUnit.NANOSECONDS.toSeconds(now - loader.unloadedAt) + " seconds after it was unloaded,"
+                        + " something is still holding onto one of its classes!");
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class UnloadedClassLoader {
+
+        private final String name;
+        private final WeakReference<ClassLoader> reference;
+        private final long unloadedAt;
+
+        private UnloadedClassLoader(String name, ClassLoader classLoader, long unloadedAt) {
+            this.name = name;
+            this.reference = new WeakReference<>(classLoader);
+            this.unloadedAt = unloadedAt;
+        }
+
+        private boolean isDue(long now) {
+            return now - this.unloadedAt >= GRACE_PERIOD;
+        }
+    }
+}
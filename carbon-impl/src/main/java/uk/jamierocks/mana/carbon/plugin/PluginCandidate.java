@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.plugin;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * A class found to be annotated with {@link Plugin}, before it is loaded.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class PluginCandidate {
+
+    private final String className;
+    private final String id;
+    private final String name;
+    private final String version;
+    private final ImmutableList<String> dependencies;
+    private final ImmutableList<String> loadAfter;
+    private final boolean concurrent;
+
+    PluginCandidate(String className, String id, String name, String version,
+            List<String> dependencies, List<String> loadAfter, boolean concurrent) {
+        this.className = className;
+        this.id = id;
+        this.name = name;
+        this.version = version;
+        this.dependencies = ImmutableList.copyOf(dependencies);
+        this.loadAfter = ImmutableList.copyOf(loadAfter);
+        this.concurrent = concurrent;
+    }
+
+    /**
+     * Gets the binary name of the plugin class.
+     *
+     * @return The class name
+     */
+    String getClassName() {
+        return this.className;
+    }
+
+    /**
+     * Gets the identifier of the plugin.
+     *
+     * @return The identifier
+     * @see Plugin#id()
+     */
+    String getId() {
+        return this.id;
+    }
+
+    /**
+     * Gets the name of the plugin.
+     *
+     * @return The name
+     * @see Plugin#name()
+     */
+    String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the version of the plugin.
+     *
+     * @return The version
+     * @see Plugin#version()
+     */
+    String getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Gets the identifiers of the plugins this plugin depends on.
+     *
+     * @return The dependencies
+     * @see Plugin#dependencies()
+     */
+    ImmutableList<String> getDependencies() {
+        return this.dependencies;
+    }
+
+    /**
+     * Gets the identifiers of the plugins this plugin should be loaded after.
+     *
+     * @return The plugins to load after
+     * @see Plugin#loadAfter()
+     */
+    ImmutableList<String> getLoadAfter() {
+        return this.loadAfter;
+    }
+
+    /**
+     * Gets whether the plugin may be handled concurrently with others.
+     *
+     * @return {@code True} if the plugin may be handled concurrently
+     * @see Plugin#concurrent()
+     */
+    boolean isConcurrent() {
+        return this.concurrent;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.plugin;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import uk.jamierocks.mana.carbon.CarbonImpl;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Orders plugins by their dependencies, into waves of plugins that may
+ * be loaded in parallel.
+ *
+ * <p>Each wave only holds plugins whose dependencies, and the plugins
+ * they load after, are within earlier waves. Plugins missing one of
+ * their dependencies, or within a dependency cycle, are left out.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class PluginGraph {
+
+    private PluginGraph() {
+    }
+
+    /**
+     * Orders the given plugins into waves.
+     *
+     * @param candidates The plugins to order
+     * @param loaded The identifiers of the plugins already loaded
+     * @return The waves of plugins, in the order they should be loaded
+     */
+    static List<List<PluginCandidate>> sort(Collection<PluginCandidate> candidates, Set<String> loaded) {
+        final Map<String, PluginCandidate> plugins = Maps.newHashMap();
+        for (PluginCandidate candidate : candidates) {
+            if (loaded.contains(candidate.getId()) || plugins.containsKey(candidate.getId())) {
+                CarbonImpl.LOGGER.error("Duplicate plugin " + candidate.getId() + " (" + candidate.getClassName()
+                        + "), skipping!");
+                continue;
+            }
+            plugins.put(candidate.getId(), candidate);
+        }
+
+        // Removing a plugin may leave another missing a dependency, so repeat until none are removed
+        boolean removed = true;
+        while (removed) {
+            removed = false;
+            for (PluginCandidate candidate : Lists.newArrayList(plugins.values())) {
+                for (String dependency : candidate.getDependencies()) {
+                    if (!loaded.contains(dependency) && !plugins.containsKey(dependency)) {
+                        CarbonImpl.LOGGER.error("Plugin " + candidate.getId() + " is missing its dependency "
+                                + dependency + ", skipping!");
+                        plugins.remove(candidate.getId());
+                        removed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        final Map<String, Set<String>> after = Maps.newHashMap();
+        final Map<String, Set<String>> dependents = Maps.newHashMap();
+        for (PluginCandidate candidate : plugins.values()) {
+            final Set<String> edges = Sets.newHashSet();
+            for (String id : Iterables.concat(candidate.getDependencies(), candidate.getLoadAfter())) {
+                if (plugins.containsKey(id) && !id.equals(candidate.getId())) {
+                    edges.add(id);
+                    dependents.computeIfAbsent(id, k -> Sets.newHashSet()).add(candidate.getId());
+                }
+            }
+            after.put(candidate.getId(), edges);
+        }
+
+        final List<List<PluginCandidate>> waves = Lists.newArrayList();
+        final Map<String, Integer> remaining = Maps.newHashMap();
+        List<String> ready = Lists.newArrayList();
+        for (Map.Entry<String, Set<String>> entry : after.entrySet()) {
+            remaining.put(entry.getKey(), entry.getValue().size());
+            if (entry.getValue().isEmpty()) {
+                ready.add(entry.getKey());
+            }
+        }
+
+        while (!ready.isEmpty()) {
+            final List<PluginCandidate> wave = Lists.newArrayList();
+            final List<String> next = Lists.newArrayList();
+            for (String id : ready) {
+                remaining.remove(id);
+                wave.add(plugins.get(id));
+                for (String dependent : dependents.getOrDefault(id, ImmutableSet.of())) {
+                    if (remaining.merge(dependent, -1, Integer::sum) == 0) {
+                        next.add(dependent);
+                    }
+                }
+            }
+            wave.sort(Comparator.comparing(PluginCandidate::getId));
+            waves.add(ImmutableList.copyOf(wave));
+            ready = next;
+        }
+
+        if (!remaining.isEmpty()) {
+            CarbonImpl.LOGGER.error("Found a dependency cycle between plugins: "
+                    + Joiner.on(" -> ").join(cycle(remaining.keySet(), after))
+                    + ", skipping " + Joiner.on(", ").join(Sets.newTreeSet(remaining.keySet())) + "!");
+        }
+
+        return waves;
+    }
+
+    private static List<String> cycle(Set<String> remaining, Map<String, Set<String>> after) {
+        // Every remaining plugin waits on another remaining plugin, so following them must revisit one
+        final List<String> path = Lists.newArrayList();
+        String current = Sets.newTreeSet(remaining).first();
+        while (!path.contains(current)) {
+            path.add(current);
+            for (String id : after.get(current)) {
+                if (remaining.contains(id)) {
+                    current = id;
+                    break;
+                }
+            }
+        }
+        final List<String> cycle = Lists.newArrayList(path.subList(path.indexOf(current), path.size()));
+        cycle.add(current);
+        return cycle;
+    }
+}
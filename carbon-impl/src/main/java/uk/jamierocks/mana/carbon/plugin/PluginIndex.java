@@ -0,0 +1,250 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.plugin;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import ninja.leaping.configurate.ConfigurationNode;
+import uk.jamierocks.mana.carbon.CarbonImpl;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+import uk.jamierocks.mana.carbon.util.Configs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * A persistent index of the plugins found within each jar, so that jars
+ * are only scanned again once they have changed.
+ *
+ * <p>Jars are matched by their size and modification time, and should
+ * either differ, by the hash of their contents - so a jar that has only
+ * been touched, or copied in again by a deploy, is not scanned again.</p>
+ *
+ * <p>The index is written to a temporary file and moved into place, so
+ * a crash part way through leaves the previous index intact. An index
+ * that cannot be read, or is of another format, is simply rebuilt.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class PluginIndex {
+
+    private static final int FORMAT = 2;
+
+    private final Path path;
+    private final Map<String, Entry> entries = Maps.newHashMap();
+    private boolean dirty;
+
+    private PluginIndex(Path path) {
+        this.path = path.toAbsolutePath();
+    }
+
+    /**
+     * Loads the index from the given path, starting an empty index should
+     * it not exist or be invalid.
+     *
+     * @param path The path of the index
+     * @return The index
+     */
+    static PluginIndex load(Path path) {
+        final PluginIndex index = new PluginIndex(path);
+        if (Files.notExists(index.path)) {
+            index.dirty = true;
+            return index;
+        }
+
+        try {
+            final ConfigurationNode node = Configs.loader(index.path).load();
+            if (node.getNode("format").getInt() != FORMAT) {
+                CarbonImpl.LOGGER.info("The plugin index is invalid, all plugin jars will be scanned");
+                index.dirty = true;
+                return index;
+            }
+
+            for (Map.Entry<Object, ? extends ConfigurationNode> jar : node.getNode("jars").getChildrenMap().entrySet()) {
+                index.entries.put(String.valueOf(jar.getKey()), Entry.read(jar.getValue()));
+            }
+        } catch (IOException | RuntimeException e) {
+            ExceptionReporter.report("Failed to read the plugin index, all plugin jars will be scanned", e);
+            index.entries.clear();
+            index.dirty = true;
+        }
+
+        return index;
+    }
+
+    /**
+     * Marks the index at the given path as invalid, so that every jar is
+     * scanned again on the next start.
+     *
+     * @param path The path of the index
+     */
+    static void invalidate(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            ExceptionReporter.report("Failed to invalidate the plugin index!", e);
+        }
+    }
+
+    /**
+     * Gets the plugin candidates within each of the given jars, scanning
+     * those that are not in the index, or have changed, in parallel.
+     *
+     * @param jars The jar files
+     * @return The plugin candidates of each jar, in the order given
+     */
+    Map<File, List<PluginCandidate>> scan(List<File> jars) {
+        final List<Entry> results = jars.parallelStream()
+                .map(jar -> this.lookup(jar, this.entries.get(jar.getName())))
+                .collect(Collectors.toList());
+
+        final Map<File, List<PluginCandidate>> candidates = Maps.newLinkedHashMap();
+        final Map<String, Entry> entries = Maps.newHashMap();
+        int scanned = 0;
+        for (int i = 0; i < jars.size(); i++) {
+            final File jar = jars.get(i);
+            final Entry entry = results.get(i);
+            if (entry == null) {
+                candidates.put(jar, ImmutableList.of());
+                continue;
+            }
+
+            candidates.put(jar, entry.candidates);
+            entries.put(jar.getName(), entry);
+            if (entry != this.entries.get(jar.getName())) {
+                scanned++;
+            }
+        }
+
+        if (scanned > 0 || !entries.keySet().equals(this.entries.keySet())) {
+            this.entries.clear();
+            this.entries.putAll(entries);
+            this.dirty = true;
+        }
+        CarbonImpl.LOGGER.info("Scanned " + scanned + " of " + jars.size() + " plugin jars");
+
+        return candidates;
+    }
+
+    /**
+     * Writes the index, should it have changed.
+     */
+    void save() {
+        if (!this.dirty) {
+            return;
+        }
+
+        try {
+            Configs.saveAtomically(this.path, node -> {
+                node.getNode("format").setValue(FORMAT);
+                for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+                    entry.getValue().write(node.getNode("jars", entry.getKey()));
+                }
+            });
+            this.dirty = false;
+        } catch (IOException e) {
+            ExceptionReporter.report("Failed to save the plugin index!", e);
+        }
+    }
+
+    private Entry lookup(File jar, Entry entry) {
+        final long size = jar.length();
+        final long modified = jar.lastModified();
+        if (entry != null && entry.size == size && entry.modified == modified) {
+            return entry;
+        }
+
+        try {
+            final String hash = com.google.common.io.Files.hash(jar, Hashing.sha256()).toString();
+            if (entry != null && entry.hash.equals(hash)) {
+                return new Entry(size, modified, hash, entry.candidates);
+            }
+            return new Entry(size, modified, hash, ImmutableList.copyOf(PluginScanner.scan(jar)));
+        } catch (IOException e) {
+            ExceptionReporter.report("Exception while loading plugin!", e);
+            return null;
+        }
+    }
+
+    private static final class Entry {
+
+        private final long size;
+        private final long modified;
+        private final String hash;
+        private final ImmutableList<PluginCandidate> candidates;
+
+        private Entry(long size, long modified, String hash, ImmutableList<PluginCandidate> candidates) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.candidates = candidates;
+        }
+
+        private static Entry read(ConfigurationNode node) {
+            final List<PluginCandidate> candidates = Lists.newArrayList();
+            for (ConfigurationNode plugin : node.getNode("plugins").getChildrenList()) {
+                candidates.add(new PluginCandidate(
+                        Objects.requireNonNull(plugin.getNode("class").getString(), "class"),
+                        plugin.getNode("id").getString(),
+                        plugin.getNode("name").getString(),
+                        plugin.getNode("version").getString(),
+                        strings(plugin.getNode("dependencies")),
+                        strings(plugin.getNode("load-after")),
+                        plugin.getNode("concurrent").getBoolean(false)));
+            }
+
+            return new Entry(node.getNode("size").getLong(-1), node.getNode("modified").getLong(-1),
+                    Objects.requireNonNull(node.getNode("hash").getString(), "hash"), ImmutableList.copyOf(candidates));
+        }
+
+        private static List<String> strings(ConfigurationNode node) {
+            // Absent lists are not written, and reading one would transform its null value
+            return node.isVirtual() ? ImmutableList.of() : node.getList(Object::toString);
+        }
+
+        private void write(ConfigurationNode node) {
+            node.getNode("size").setValue(this.size);
+            node.getNode("modified").setValue(this.modified);
+            node.getNode("hash").setValue(this.hash);
+            for (PluginCandidate candidate : this.candidates) {
+                final ConfigurationNode plugin = node.getNode("plugins").getAppendedNode();
+                plugin.getNode("class").setValue(candidate.getClassName());
+                plugin.getNode("id").setValue(candidate.getId());
+                plugin.getNode("name").setValue(candidate.getName());
+                plugin.getNode("version").setValue(candidate.getVersion());
+                if (!candidate.getDependencies().isEmpty()) {
+                    plugin.getNode("dependencies").setValue(candidate.getDependencies());
+                }
+                if (!candidate.getLoadAfter().isEmpty()) {
+                    plugin.getNode("load-after").setValue(candidate.getLoadAfter());
+                }
+                if (candidate.isConcurrent()) {
+                    plugin.getNode("concurrent").setValue(true);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.plugin;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Finds the {@link Plugin} classes within jars, by reading the class files
+ * directly rather than loading every class.
+ *
+ * <p>Each class file's constant pool is checked for the {@link Plugin}
+ * descriptor, which rejects almost every class without reading further.
+ * Only for the classes that reference it are the class annotations read,
+ * along with the values of the {@link Plugin} annotation.</p>
+ *
+ * <p>Scans are usually served from the {@link PluginIndex}, so this is
+ * only used for jars that have changed.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class PluginScanner {
+
+    private static final byte[] PLUGIN_DESCRIPTOR =
+            ('L' + Plugin.class.getName().replace('.', '/') + ';').getBytes(StandardCharsets.UTF_8);
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+    private PluginScanner() {
+    }
+
+    /**
+     * Scans the given jar for plugin classes.
+     *
+     * @param jar The jar file
+     * @return The plugin candidates
+     * @throws IOException If the jar could not be read
+     */
+    static List<PluginCandidate> scan(File jar) throws IOException {
+        final List<PluginCandidate> candidates = Lists.newArrayList();
+
+        try (JarFile jarFile = new JarFile(jar)) {
+            final Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                final JarEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")
+                        || entry.getName().startsWith("META-INF/") || entry.getName().endsWith("module-info.class")) {
+                    continue;
+                }
+
+                final byte[] bytes;
+                try (InputStream in = jarFile.getInputStream(entry)) {
+                    bytes = ByteStreams.toByteArray(in);
+                }
+
+                try {
+                    final PluginCandidate candidate = read(bytes);
+                    if (candidate != null) {
+                        candidates.add(candidate);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    ExceptionReporter.report("Failed to read class " + entry.getName() + " in " + jar.getName(), e);
+                }
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Reads the given class file, returning a candidate should the class
+     * be annotated with {@link Plugin}.
+     *
+     * @param bytes The class file
+     * @return The candidate, or {@code null} if the class isn't a plugin
+     * @throws IOException If the class file is malformed
+     */
+    static PluginCandidate read(byte[] bytes) throws IOException {
+        final ClassFile classFile = new ClassFile(bytes);
+        if (classFile.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        classFile.skip(4);
+
+        // Constant pool, remembering where each entry starts
+        final int poolSize = classFile.readUnsignedShort();
+        final int[] offsets = new int[poolSize];
+        boolean referencesPlugin = false;
+        for (int i = 1; i < poolSize; i++) {
+            offsets[i] = classFile.position;
+            final int tag = classFile.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    final int length = classFile.readUnsignedShort();
+                    if (!referencesPlugin && classFile.matches(PLUGIN_DESCRIPTOR, length)) {
+                        referencesPlugin = true;
+                    }
+                    classFile.skip(length);
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    classFile.skip(2);
+                    break;
+                case 15: // MethodHandle
+                    classFile.skip(3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    classFile.skip(4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    classFile.skip(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        // The vast majority of classes are rejected here
+        if (!referencesPlugin) {
+            return null;
+        }
+
+        classFile.skip(2);
+        final String className = classFile.utf8(offsets, classFile.utf8Index(offsets, classFile.readUnsignedShort()));
+        classFile.skip(2);
+        classFile.skip(classFile.readUnsignedShort() * 2);
+
+        // Fields and methods
+        for (int i = 0; i < 2; i++) {
+            final int members = classFile.readUnsignedShort();
+            for (int j = 0; j < members; j++) {
+                classFile.skip(6);
+                classFile.skipAttributes();
+            }
+        }
+
+        final int attributes = classFile.readUnsignedShort();
+        for (int i = 0; i < attributes; i++) {
+            final String attributeName = classFile.utf8(offsets, classFile.readUnsignedShort());
+            final int length = classFile.readInt();
+            if (!RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)) {
+                classFile.skip(length);
+                continue;
+            }
+
+            final int annotations = classFile.readUnsignedShort();
+            for (int j = 0; j < annotations; j++) {
+                final boolean plugin = classFile.matchesUtf8(offsets, classFile.readUnsignedShort(), PLUGIN_DESCRIPTOR);
+                final Map<String, Object> values = classFile.readAnnotationValues(offsets);
+                if (plugin) {
+                    return new PluginCandidate(className.replace('/', '.'),
+                            (String) values.get("id"), (String) values.get("name"), (String) values.get("version"),
+                            strings(values.get("dependencies")), strings(values.get("loadAfter")),
+                            Boolean.TRUE.equals(values.get("concurrent")));
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> strings(Object value) {
+        return value instanceof List ? (List<String>) value : Collections.emptyList();
+    }
+
+    private static final class ClassFile {
+
+        private final byte[] bytes;
+        private int position;
+
+        private ClassFile(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private int readUnsignedByte() throws IOException {
+            if (this.position >= this.bytes.length) {
+                throw new IOException("Unexpected end of class file");
+            }
+            return this.bytes[this.position++] & 0xFF;
+        }
+
+        private int readUnsignedShort() throws IOException {
+            return (this.readUnsignedByte() << 8) | this.readUnsignedByte();
+        }
+
+        private int readInt() throws IOException {
+            return (this.readUnsignedShort() << 16) | this.readUnsignedShort();
+        }
+
+        private void skip(int length) throws IOException {
+            if (length < 0 || this.position + length > this.bytes.length) {
+                throw new IOException("Unexpected end of class file");
+            }
+            this.position += length;
+        }
+
+        private void skipAttributes() throws IOException {
+            final int attributes = this.readUnsignedShort();
+            for (int i = 0; i < attributes; i++) {
+                this.skip(2);
+                this.skip(this.readInt());
+            }
+        }
+
+        private boolean matches(byte[] expected, int length) {
+            if (length != expected.length || this.position + length > this.bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (this.bytes[this.position + i] != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matchesUtf8(int[] offsets, int index, byte[] expected) {
+            final int offset = offsets[index];
+            final int length = ((this.bytes[offset + 1] & 0xFF) << 8) | (this.bytes[offset + 2] & 0xFF);
+            if (length != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (this.bytes[offset + 3 + i] != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int utf8Index(int[] offsets, int classIndex) {
+            final int offset = offsets[classIndex];
+            return ((this.bytes[offset + 1] & 0xFF) << 8) | (this.bytes[offset + 2] & 0xFF);
+        }
+
+        private int integer(int[] offsets, int index) throws IOException {
+            if (index <= 0 || index >= offsets.length || this.bytes[offsets[index]] != 3) {
+                throw new IOException("Invalid constant pool index " + index);
+            }
+            final int offset = offsets[index] + 1;
+            return ((this.bytes[offset] & 0xFF) << 24) | ((this.bytes[offset + 1] & 0xFF) << 16)
+                    | ((this.bytes[offset + 2] & 0xFF) << 8) | (this.bytes[offset + 3] & 0xFF);
+        }
+
+        private String utf8(int[] offsets, int index) throws IOException {
+            if (index <= 0 || index >= offsets.length || this.bytes[offsets[index]] != 1) {
+                throw new IOException("Invalid constant pool index " + index);
+            }
+            final int offset = offsets[index] + 1;
+            final int length = ((this.bytes[offset] & 0xFF) << 8) | (this.bytes[offset + 1] & 0xFF);
+            return new DataInputStream(new ByteArrayInputStream(this.bytes, offset, length + 2)).readUTF();
+        }
+
+        private Map<String, Object> readAnnotationValues(int[] offsets) throws IOException {
+            final Map<String, Object> values = Maps.newHashMap();
+            final int pairs = this.readUnsignedShort();
+            for (int i = 0; i < pairs; i++) {
+                final String name = this.utf8(offsets, this.readUnsignedShort());
+                values.put(name, this.readElementValue(offsets));
+            }
+            return values;
+        }
+
+        /**
+         * Reads an element value, returning strings, booleans and arrays of
+         * strings - all that {@link Plugin} uses - and skipping anything else.
+         */
+        private Object readElementValue(int[] offsets) throws IOException {
+            final int tag = this.readUnsignedByte();
+            switch (tag) {
+                case 's':
+                    return this.utf8(offsets, this.readUnsignedShort());
+                case 'Z':
+                    return this.integer(offsets, this.readUnsignedShort()) != 0;
+                case 'e':
+                    this.skip(4);
+                    return null;
+                case '@':
+                    this.skip(2);
+                    this.readAnnotationValues(offsets);
+                    return null;
+                case '[':
+                    final int length = this.readUnsignedShort();
+                    final List<String> values = Lists.newArrayListWithCapacity(length);
+                    for (int i = 0; i < length; i++) {
+                        final Object value = this.readElementValue(offsets);
+                        if (value instanceof String) {
+                            values.add((String) value);
+                        }
+                    }
+                    return Collections.unmodifiableList(values);
+                default:
+                    this.skip(2);
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The implementation of {@link ServiceRef} for Carbon.
+ *
+ * <p>All of the state for the service is held in a single immutable
+ * snapshot, which is replaced by the registry whenever the providers
+ * change.</p>
+ *
+ * @param <T> The type of the service
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class CarbonServiceRef<T> implements ServiceRef<T> {
+
+    private static final Comparator<ProviderRegistration<?>> RANK_ORDER =
+            Comparator.<ProviderRegistration<?>>comparingInt(ProviderRegistration::getRank).reversed();
+
+    private final Class<T> service;
+    private volatile Snapshot<T> snapshot = new Snapshot<>(ImmutableList.of());
+
+    CarbonServiceRef(Class<T> service) {
+        this.service = service;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<T> getService() {
+        return this.service;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<T> get() {
+        return this.snapshot.provider;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T orElse(T fallback) {
+        return this.snapshot.provider.orElse(fallback);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<ProviderRegistration<T>> getRegistration() {
+        return this.snapshot.registration;
+    }
+
+    /**
+     * Gets all the registrations, from the most preferred to the least.
+     *
+     * @return The registrations
+     */
+    ImmutableList<ProviderRegistration<T>> getRegistrations() {
+        return this.snapshot.registrations;
+    }
+
+    /**
+     * Replaces the registrations, which are ordered by rank.
+     * Callers must hold the registry's lock.
+     *
+     * @param registrations The new registrations
+     */
+    void setRegistrations(List<ProviderRegistration<T>> registrations) {
+        final List<ProviderRegistration<T>> sorted = Lists.newArrayList(registrations);
+        sorted.sort(RANK_ORDER);
+        this.snapshot = new Snapshot<>(ImmutableList.copyOf(sorted));
+    }
+
+    private static final class Snapshot<T> {
+
+        private final ImmutableList<ProviderRegistration<T>> registrations;
+        private final Optional<ProviderRegistration<T>> registration;
+        private final Optional<T> provider;
+
+        private Snapshot(ImmutableList<ProviderRegistration<T>> registrations) {
+            this.registrations = registrations;
+            this.registration = registrations.isEmpty() ? Optional.empty() : Optional.of(registrations.get(0));
+            this.provider = this.registration.map(ProviderRegistration::getProvider);
+        }
+    }
+}
@@ -18,38 +18,91 @@ package uk.jamierocks.mana.carbon.service;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import uk.jamierocks.mana.carbon.module.ModuleRecorder;
 import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
 
-import java.util.Map;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * The implementation of {@link ServiceRegistry} for Carbon.
  *
+ * <p>Each service is backed by a single {@link CarbonServiceRef}, which
+ * holds an immutable snapshot of its providers. Lookups read the snapshot
+ * without locking, while changes to providers are serialised.</p>
+ *
+ * <p>A service's ref is kept for as long as the service's class, even
+ * once it is left without providers, so handles to it always see the
+ * providers registered later.</p>
+ *
  * @author Jamie Mansfield
  * @since 1.0.0
  */
 public final class CarbonServiceRegistry implements ServiceRegistry {
 
-    private final Map<Class<?>, ProviderRegistration<?>> providers = Maps.newHashMap();
+    // A class value, rather than a map, so that plugin classes can still be unloaded
+    private final ClassValue<CarbonServiceRef<?>> refs = new ClassValue<CarbonServiceRef<?>>() {
+        @Override
+        protected CarbonServiceRef<?> computeValue(Class<?> type) {
+            return new CarbonServiceRef<>(type);
+        }
+    };
+    // The refs with providers, so unregistering need not know every service
+    private final Set<CarbonServiceRef<?>> provided = Sets.newIdentityHashSet();
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public <T> void registerProvider(Object plugin, Class<T> service, T provider) {
+    public <T> void registerProvider(Object plugin, Class<T> service, T provider, int rank) {
         checkNotNull(plugin, "plugin is null!");
         checkNotNull(service, "service is null!");
         checkNotNull(provider, "provider is null!");
 
+        final ProviderRegistration<T> registration;
         try {
-            this.providers.put(service, ProviderRegistration.of(plugin, service, provider));
+            registration = ProviderRegistration.of(plugin, service, provider, rank);
         } catch (ProviderRegistrationException e) {
             ExceptionReporter.report("Failed to register provider!", e);
+            return;
+        }
+
+        ModuleRecorder.record(provider);
+        synchronized (this) {
+            final CarbonServiceRef<T> ref = this.ref(service);
+            final List<ProviderRegistration<T>> registrations = Lists.newArrayList(ref.getRegistrations());
+            registrations.add(registration);
+            ref.setRegistrations(registrations);
+            this.provided.add(ref);
         }
     }
 
+    /**
+     * Unregisters every provider matching the given filter.
+     *
+     * @param registrations The filter for provider registrations
+     * @return The number of providers unregistered
+     * @since 2.0.0
+     */
+    public synchronized int unregisterProviders(Predicate<ProviderRegistration<?>> registrations) {
+        checkNotNull(registrations, "registrations is null!");
+
+        int removed = 0;
+        for (Iterator<CarbonServiceRef<?>> it = this.provided.iterator(); it.hasNext(); ) {
+            final CarbonServiceRef<?> ref = it.next();
+            removed += unregisterProviders(ref, registrations);
+            if (ref.getRegistrations().isEmpty()) {
+                it.remove();
+            }
+        }
+        return removed;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -57,11 +110,7 @@ public final class CarbonServiceRegistry implements ServiceRegistry {
     public <T> Optional<T> provide(Class<T> service) {
         checkNotNull(service, "service is null!");
 
-        Optional<ProviderRegistration<T>> providerRegistration = this.provideRegistration(service);
-        if (providerRegistration.isPresent()) {
-            return Optional.of(providerRegistration.get().getProvider());
-        }
-        return Optional.empty();
+        return this.ref(service).get();
     }
 
     /**
@@ -70,6 +119,42 @@ public final class CarbonServiceRegistry implements ServiceRegistry {
     @Override
     public <T> Optional<ProviderRegistration<T>> provideRegistration(Class<T> service) {
         checkNotNull(service, "service is null!");
-        return Optional.ofNullable((ProviderRegistration<T>) this.providers.get(service));
+
+        return this.ref(service).getRegistration();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<ProviderRegistration<T>> provideAllRegistrations(Class<T> service) {
+        checkNotNull(service, "service is null!");
+
+        return this.ref(service).getRegistrations();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> ServiceRef<T> getRef(Class<T> service) {
+        checkNotNull(service, "service is null!");
+        return this.ref(service);
+    }
+
+    private static <T> int unregisterProviders(CarbonServiceRef<T> ref, Predicate<ProviderRegistration<?>> filter) {
+        final List<ProviderRegistration<T>> registrations = Lists.newArrayList(ref.getRegistrations());
+        if (!registrations.removeIf(filter)) {
+            return 0;
+        }
+
+        final int removed = ref.getRegistrations().size() - registrations.size();
+        ref.setRegistrations(registrations);
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CarbonServiceRef<T> ref(Class<T> service) {
+        return (CarbonServiceRef<T>) this.refs.get(service);
     }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import uk.jamierocks.mana.carbon.module.ModuleRecorder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import java.util.function.Predicate;
+
+/**
+ * The implementation of {@link MetricsService}, used by Carbon itself and
+ * provided to plugins through the service registry.
+ *
+ * <p>Exporters are told whenever a metric is created or a gauge changes,
+ * so they need only rebuild their view of the metrics then, rather than
+ * on every scrape.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class CarbonMetricsService implements MetricsService {
+
+    private final ConcurrentMap<String, Counter> counters = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Histogram> histograms = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, DoubleSupplier> gauges = Maps.newConcurrentMap();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Counter counter(String name) {
+        checkNotNull(name, "name is null!");
+        final Counter counter = this.counters.get(name);
+        if (counter != null) {
+            return counter;
+        }
+
+        final Counter created = new LongAdderCounter();
+        final Counter existing = this.counters.putIfAbsent(name, created);
+        if (existing != null) {
+            return existing;
+        }
+        this.changed();
+        return created;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Histogram histogram(String name) {
+        checkNotNull(name, "name is null!");
+        final Histogram histogram = this.histograms.get(name);
+        if (histogram != null) {
+            return histogram;
+        }
+
+        final Histogram created = new LogLinearHistogram();
+        final Histogram existing = this.histograms.putIfAbsent(name, created);
+        if (existing != null) {
+            return existing;
+        }
+        this.changed();
+        return created;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void gauge(String name, DoubleSupplier gauge) {
+        checkNotNull(name, "name is null!");
+        checkNotNull(gauge, "gauge is null!");
+        ModuleRecorder.record(gauge);
+        this.gauges.put(name, gauge);
+        this.changed();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeGauge(String name) {
+        checkNotNull(name, "name is null!");
+        if (this.gauges.remove(name) != null) {
+            this.changed();
+        }
+    }
+
+    /**
+     * Removes every gauge matching the given filter, such as those of a
+     * plugin being unloaded.
+     *
+     * @param gauges The filter for gauges
+     * @return The number of gauges removed
+     */
+    public int removeGauges(Predicate<Object> gauges) {
+        checkNotNull(gauges, "gauges is null!");
+        int removed = 0;
+        for (Map.Entry<String, DoubleSupplier> entry : this.gauges.entrySet()) {
+            if (gauges.test(entry.getValue()) && this.gauges.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            this.changed();
+        }
+        return removed;
+    }
+
+    /**
+     * Gets the version of the metrics, which changes whenever a metric is
+     * created or a gauge is registered or removed.
+     *
+     * @return The version
+     */
+    long getVersion() {
+        return this.version.get();
+    }
+
+    /**
+     * Adds a listener, to be run whenever the version changes.
+     *
+     * <p>Listeners are run on the thread making the change, which is often
+     * on a hot path, so must return quickly.</p>
+     *
+     * @param listener The listener
+     */
+    void addListener(Runnable listener) {
+        this.listeners.add(checkNotNull(listener, "listener is null!"));
+    }
+
+    private void changed() {
+        this.version.incrementAndGet();
+        this.listeners.forEach(Runnable::run);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Counter> getCounters() {
+        return ImmutableMap.copyOf(this.counters);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Histogram> getHistograms() {
+        return ImmutableMap.copyOf(this.histograms);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, DoubleSupplier> getGauges() {
+        return ImmutableMap.copyOf(this.gauges);
+    }
+}
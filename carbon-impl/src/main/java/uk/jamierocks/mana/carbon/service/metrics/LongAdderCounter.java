@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Counter} backed by a {@link LongAdder}, so threads incrementing
+ * it concurrently do not contend.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class LongAdderCounter implements Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void increment() {
+        this.count.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(long amount) {
+        this.count.add(amount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCount() {
+        return this.count.sum();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service.metrics;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ReflectionException;
+
+/**
+ * A read-only MBean exposing a single metric, each of its values as an
+ * attribute.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class MetricMBean implements DynamicMBean {
+
+    private final ImmutableMap<String, Supplier<Object>> attributes;
+    private final MBeanInfo info;
+
+    private MetricMBean(String type, String description, ImmutableMap<String, Supplier<Object>> attributes,
+            Map<String, Class<?>> types) {
+        this.attributes = attributes;
+
+        final MBeanAttributeInfo[] infos = new MBeanAttributeInfo[attributes.size()];
+        int i = 0;
+        for (String attribute : attributes.keySet()) {
+            infos[i++] = new MBeanAttributeInfo(attribute, types.get(attribute).getName(), attribute,
+                    true, false, false);
+        }
+        this.info = new MBeanInfo(MetricMBean.class.getName(), type + ' ' + description, infos, null, null, null);
+    }
+
+    static MetricMBean of(String name, Counter counter) {
+        return new MetricMBean("Counter", name, ImmutableMap.of("Count", counter::getCount),
+                ImmutableMap.of("Count", long.class));
+    }
+
+    static MetricMBean of(String name, DoubleSupplier gauge) {
+        return new MetricMBean("Gauge", name, ImmutableMap.of("Value", gauge::getAsDouble),
+                ImmutableMap.of("Value", double.class));
+    }
+
+    static MetricMBean of(String name, Histogram histogram) {
+        return new MetricMBean("Histogram", name, ImmutableMap.<String, Supplier<Object>>builder()
+                .put("Count", histogram::getCount)
+                .put("Sum", histogram::getSum)
+                .put("Max", histogram::getMax)
+                .put("50thPercentile", () -> histogram.getValueAtPercentile(50))
+                .put("90thPercentile", () -> histogram.getValueAtPercentile(90))
+                .put("99thPercentile", () -> histogram.getValueAtPercentile(99))
+                .put("999thPercentile", () -> histogram.getValueAtPercentile(99.9))
+                .build(), ImmutableMap.<String, Class<?>>builder()
+                .put("Count", long.class)
+                .put("Sum", long.class)
+                .put("Max", long.class)
+                .put("50thPercentile", long.class)
+                .put("90thPercentile", long.class)
+                .put("99thPercentile", long.class)
+                .put("999thPercentile", long.class)
+                .build());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        final Supplier<Object> value = this.attributes.get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        final AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            final Supplier<Object> value = this.attributes.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value.get()));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return this.info;
+    }
+}
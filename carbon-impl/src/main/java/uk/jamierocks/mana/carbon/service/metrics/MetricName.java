@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service.metrics;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+/**
+ * The name of a metric, split into its base name and its labels, as
+ * created by {@link MetricsService#name(String, String...)}.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class MetricName {
+
+    private final String base;
+    private final String labels;
+    private final ImmutableMap<String, String> labelMap;
+
+    private MetricName(String base, String labels, ImmutableMap<String, String> labelMap) {
+        this.base = base;
+        this.labels = labels;
+        this.labelMap = labelMap;
+    }
+
+    /**
+     * Parses the given name, treating anything malformed after the base
+     * name as having no labels.
+     *
+     * @param name The name
+     * @return The parsed name
+     */
+    static MetricName parse(String name) {
+        final int open = name.indexOf('{');
+        if (open < 0 || !name.endsWith("}")) {
+            return new MetricName(name, "", ImmutableMap.of());
+        }
+
+        final String labels = name.substring(open + 1, name.length() - 1);
+        final ImmutableMap.Builder<String, String> labelMap = ImmutableMap.builder();
+        int i = 0;
+        while (i < labels.length()) {
+            final int equals = labels.indexOf("=\"", i);
+            if (equals < 0) {
+                return new MetricName(name.substring(0, open), "", ImmutableMap.of());
+            }
+            final String key = labels.substring(i, equals);
+
+            final StringBuilder value = new StringBuilder();
+            int j = equals + 2;
+            for (; j < labels.length() && labels.charAt(j) != '"'; j++) {
+                char c = labels.charAt(j);
+                if (c == '\\' && j + 1 < labels.length()) {
+                    c = labels.charAt(++j);
+                    value.append(c == 'n' ? '\n' : c);
+                } else {
+                    value.append(c);
+                }
+            }
+            labelMap.put(key, value.toString());
+            i = j + 2; // The closing quote, and the comma
+        }
+        return new MetricName(name.substring(0, open), labels, labelMap.build());
+    }
+
+    /**
+     * Gets the name, without its labels.
+     *
+     * @return The base name
+     */
+    String getBase() {
+        return this.base;
+    }
+
+    /**
+     * Gets the labels, as written within the braces of the name.
+     *
+     * @return The labels, or an empty string if there are none
+     */
+    String getLabels() {
+        return this.labels;
+    }
+
+    /**
+     * Gets the labels, by key.
+     *
+     * @return The labels
+     */
+    Map<String, String> getLabelMap() {
+        return this.labelMap;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A minimal HTTP server, serving Carbon's metrics in the OpenMetrics text
+ * format from {@code /metrics}, for Prometheus and the like to scrape.
+ *
+ * <p>Requests are handled one at a time, on a thread of the server's
+ * own - scrapes are infrequent, and so never need to be concurrent.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class MetricsHttpServer implements AutoCloseable {
+
+    private static final String PATH = "/metrics";
+
+    private final OpenMetricsWriter writer;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("Carbon Metrics HTTP Server")
+            .setDaemon(true)
+            .build());
+
+    /**
+     * Creates a server for the given metrics, bound to the given address.
+     *
+     * @param metrics The metrics
+     * @param address The address
+     * @throws IOException If the address could not be bound
+     */
+    public MetricsHttpServer(CarbonMetricsService metrics, InetSocketAddress address) throws IOException {
+        checkNotNull(metrics, "metrics is null!");
+        checkNotNull(address, "address is null!");
+        this.writer = new OpenMetricsWriter(metrics);
+        this.server = HttpServer.create(address, 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(this.executor);
+    }
+
+    /**
+     * Starts serving requests.
+     */
+    public void start() {
+        this.server.start();
+    }
+
+    /**
+     * Gets the address the server is bound to.
+     *
+     * @return The address
+     */
+    public InetSocketAddress getAddress() {
+        return this.server.getAddress();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestURI().getPath().equals(PATH)) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", OpenMetricsWriter.CONTENT_TYPE);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                this.writer.write(out);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import uk.jamierocks.mana.carbon.service.exception.ExceptionReporter;
+
+import java.lang.management.ManagementFactory;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Mirrors the metrics of a {@link CarbonMetricsService} as MBeans, on the
+ * platform MBean server.
+ *
+ * <p>Each metric is registered under the {@value #DOMAIN} domain, with
+ * its kind as the {@code type}, its name without labels as the
+ * {@code name}, and each of its labels as a further key. MBeans are
+ * registered and unregistered as the metrics change.</p>
+ *
+ * <p>As metrics are often created on hot paths, a change only marks the
+ * MBeans as stale, and they are brought up to date on the exporter's own
+ * thread. A burst of changes is handled by a single update.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class MetricsJmxExporter implements AutoCloseable {
+
+    private static final String DOMAIN = "uk.jamierocks.mana.carbon";
+
+    private final CarbonMetricsService metrics;
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final Map<ObjectName, Object> registered = Maps.newHashMap();
+    private final AtomicBoolean stale = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("Carbon Metrics JMX Exporter")
+            .setDaemon(true)
+            .build());
+    private boolean closed;
+
+    /**
+     * Creates an exporter for the given metrics.
+     *
+     * @param metrics The metrics
+     */
+    public MetricsJmxExporter(CarbonMetricsService metrics) {
+        this.metrics = checkNotNull(metrics, "metrics is null!");
+    }
+
+    /**
+     * Registers the MBeans of every metric, and keeps them up to date.
+     */
+    public void start() {
+        this.metrics.addListener(this::changed);
+        this.sync();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close() {
+        this.executor.shutdownNow();
+        this.closed = true;
+        this.registered.keySet().forEach(this::unregister);
+        this.registered.clear();
+    }
+
+    private void changed() {
+        if (this.stale.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(() -> {
+                    // Cleared first, so a change made during the update is not missed
+                    this.stale.set(false);
+                    this.sync();
+                });
+            } catch (RejectedExecutionException ignored) {
+                // The exporter has been closed
+            }
+        }
+    }
+
+    private synchronized void sync() {
+        if (this.closed) {
+            return;
+        }
+
+        // Keyed by the metric itself, so a replaced gauge is registered anew
+        final Map<ObjectName, Object> current = Maps.newHashMap();
+        for (Map.Entry<String, Counter> entry : this.metrics.getCounters().entrySet()) {
+            put(current, "Counter", entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : this.metrics.getGauges().entrySet()) {
+            put(current, "Gauge", entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Histogram> entry : this.metrics.getHistograms().entrySet()) {
+            put(current, "Histogram", entry.getKey(), entry.getValue());
+        }
+
+        this.registered.entrySet().removeIf(entry -> {
+            if (current.get(entry.getKey()) == entry.getValue()) {
+                return false;
+            }
+            this.unregister(entry.getKey());
+            return true;
+        });
+        for (Map.Entry<ObjectName, Object> entry : current.entrySet()) {
+            if (!this.registered.containsKey(entry.getKey())) {
+                this.register(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void register(ObjectName name, Object metric) {
+        final String description = name.getKeyProperty("name");
+        final MetricMBean bean;
+        if (metric instanceof Counter) {
+            bean = MetricMBean.of(description, (Counter) metric);
+        } else if (metric instanceof Histogram) {
+            bean = MetricMBean.of(description, (Histogram) metric);
+        } else {
+            bean = MetricMBean.of(description, (DoubleSupplier) metric);
+        }
+
+        try {
+            this.server.registerMBean(bean, name);
+            this.registered.put(name, metric);
+        } catch (JMException e) {
+            ExceptionReporter.report("Failed to register the MBean " + name, e);
+        }
+    }
+
+    private void unregister(ObjectName name) {
+        try {
+            this.server.unregisterMBean(name);
+        } catch (JMException e) {
+            ExceptionReporter.report("Failed to unregister the MBean " + name, e);
+        }
+    }
+
+    private static void put(Map<ObjectName, Object> names, String type, String key, Object metric) {
+        final MetricName name = MetricName.parse(key);
+        final Hashtable<String, String> properties = new Hashtable<>();
+        properties.put("type", type);
+        properties.put("name", ObjectName.quote(name.getBase()));
+        name.getLabelMap().forEach((label, value) -> properties.putIfAbsent(label, ObjectName.quote(value)));
+
+        try {
+            names.put(new ObjectName(DOMAIN, properties), metric);
+        } catch (JMException e) {
+            ExceptionReporter.report("Failed to name the MBean for metric " + key, e);
+        }
+    }
+}
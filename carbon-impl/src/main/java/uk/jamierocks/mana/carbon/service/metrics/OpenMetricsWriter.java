@@ -0,0 +1,274 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.service.metrics;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Writes the metrics of a {@link CarbonMetricsService} in the OpenMetrics
+ * text format.
+ *
+ * <p>The families, and the text of every line but its value, are only
+ * rebuilt when the metrics change. A scrape then appends values to a
+ * reused buffer, so frequent scrapes create next to no garbage.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class OpenMetricsWriter {
+
+    static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final CarbonMetricsService metrics;
+    private final StringBuilder text = new StringBuilder(4096);
+    private byte[] bytes = new byte[4096];
+    private long version = -1;
+    private Series[] series = new Series[0];
+
+    OpenMetricsWriter(CarbonMetricsService metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Writes the current value of every metric to the given stream.
+     *
+     * @param out The stream
+     * @throws IOException If the stream could not be written to
+     */
+    synchronized void write(OutputStream out) throws IOException {
+        final int length = this.encode();
+        out.write(this.bytes, 0, length);
+    }
+
+    private int encode() {
+        if (this.version != this.metrics.getVersion()) {
+            this.rebuild();
+        }
+
+        final StringBuilder text = this.text;
+        text.setLength(0);
+        for (Series series : this.series) {
+            series.append(text);
+        }
+        text.append("# EOF\n");
+        return this.toBytes(text);
+    }
+
+    private void rebuild() {
+        // Read before the metrics, so any change while rebuilding causes another rebuild
+        this.version = this.metrics.getVersion();
+
+        // Every series of a family must be written together, under the family's metadata
+        final Map<String, List<Series>> families = Maps.newTreeMap();
+        final Map<String, String> types = Maps.newHashMap();
+        for (Map.Entry<String, Counter> entry : this.metrics.getCounters().entrySet()) {
+            add(families, types, entry.getKey(), "counter",
+                    (family, labels) -> new CounterSeries(family, labels, entry.getValue()));
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : this.metrics.getGauges().entrySet()) {
+            add(families, types, entry.getKey(), "gauge",
+                    (family, labels) -> new GaugeSeries(family, labels, entry.getValue()));
+        }
+        for (Map.Entry<String, Histogram> entry : this.metrics.getHistograms().entrySet()) {
+            add(families, types, entry.getKey(), "summary",
+                    (family, labels) -> new SummarySeries(family, labels, entry.getValue()));
+        }
+
+        final List<Series> series = Lists.newArrayList();
+        for (Map.Entry<String, List<Series>> family : families.entrySet()) {
+            series.add(new Metadata("# TYPE " + family.getKey() + ' ' + types.get(family.getKey()) + '\n'));
+            series.addAll(family.getValue());
+        }
+        this.series = series.toArray(new Series[series.size()]);
+    }
+
+    private static void add(Map<String, List<Series>> families, Map<String, String> types, String key, String type,
+            SeriesFactory factory) {
+        final MetricName name = MetricName.parse(key);
+        final String family = sanitise(name.getBase());
+
+        // A family may only be of one type, so any metric of another type sharing its name is left out
+        if (!types.computeIfAbsent(family, f -> type).equals(type)) {
+            return;
+        }
+        families.computeIfAbsent(family, f -> Lists.newArrayList()).add(factory.create(family, name.getLabels()));
+    }
+
+    private static String sanitise(String name) {
+        final char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            final char c = chars[i];
+            final boolean valid = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c == ':'
+                    || (i > 0 && c >= '0' && c <= '9');
+            if (!valid) {
+                chars[i] = '_';
+            }
+        }
+        return new String(chars);
+    }
+
+    private static String sample(String name, String labels, String extra) {
+        final StringBuilder builder = new StringBuilder(name);
+        if (!labels.isEmpty() || !extra.isEmpty()) {
+            builder.append('{').append(labels);
+            if (!labels.isEmpty() && !extra.isEmpty()) {
+                builder.append(',');
+            }
+            builder.append(extra).append('}');
+        }
+        return builder.append(' ').toString();
+    }
+
+    private int toBytes(StringBuilder text) {
+        // At most three bytes for each char, as surrogate pairs take four bytes for two chars
+        if (this.bytes.length < text.length() * 3) {
+            this.bytes = Arrays.copyOf(this.bytes, text.length() * 3);
+        }
+
+        final byte[] bytes = this.bytes;
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | c >> 6);
+                bytes[length++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                bytes[length++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[length++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                bytes[length++] = (byte) (0xE0 | c >> 12);
+                bytes[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[length++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return length;
+    }
+
+    private static void appendValue(StringBuilder text, double value) {
+        if (value == (long) value) {
+            text.append((long) value);
+        } else if (Double.isNaN(value)) {
+            text.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            text.append(value > 0 ? "+Inf" : "-Inf");
+        } else {
+            text.append(value);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SeriesFactory {
+
+        Series create(String family, String labels);
+    }
+
+    private interface Series {
+
+        void append(StringBuilder text);
+    }
+
+    private static final class Metadata implements Series {
+
+        private final String line;
+
+        private Metadata(String line) {
+            this.line = line;
+        }
+
+        @Override
+        public void append(StringBuilder text) {
+            text.append(this.line);
+        }
+    }
+
+    private static final class CounterSeries implements Series {
+
+        private final String prefix;
+        private final Counter counter;
+
+        private CounterSeries(String family, String labels, Counter counter) {
+            this.prefix = sample(family + "_total", labels, "");
+            this.counter = counter;
+        }
+
+        @Override
+        public void append(StringBuilder text) {
+            text.append(this.prefix).append(this.counter.getCount()).append('\n');
+        }
+    }
+
+    private static final class GaugeSeries implements Series {
+
+        private final String prefix;
+        private final DoubleSupplier gauge;
+
+        private GaugeSeries(String family, String labels, DoubleSupplier gauge) {
+            this.prefix = sample(family, labels, "");
+            this.gauge = gauge;
+        }
+
+        @Override
+        public void append(StringBuilder text) {
+            text.append(this.prefix);
+            appendValue(text, this.gauge.getAsDouble());
+            text.append('\n');
+        }
+    }
+
+    private static final class SummarySeries implements Series {
+
+        private final String[] quantiles = new String[QUANTILES.length];
+        private final String count;
+        private final String sum;
+        private final Histogram histogram;
+
+        private SummarySeries(String family, String labels, Histogram histogram) {
+            for (int i = 0; i < QUANTILES.length; i++) {
+                this.quantiles[i] = sample(family, labels, "quantile=\"" + QUANTILES[i] + '"');
+            }
+            this.count = sample(family + "_count", labels, "");
+            this.sum = sample(family + "_sum", labels, "");
+            this.histogram = histogram;
+        }
+
+        @Override
+        public void append(StringBuilder text) {
+            for (int i = 0; i < QUANTILES.length; i++) {
+                text.append(this.quantiles[i]).append(this.histogram.getValueAtPercentile(QUANTILES[i] * 100))
+                        .append('\n');
+            }
+            text.append(this.count).append(this.histogram.getCount()).append('\n');
+            text.append(this.sum).append(this.histogram.getSum()).append('\n');
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.jamierocks.mana.carbon.util;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.gson.GsonConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+
+/**
+ * Helpers for the JSON files Carbon writes at runtime.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class Configs {
+
+    /**
+     * Creates a JSON loader for the given path.
+     *
+     * @param path The path
+     * @return The loader
+     */
+    public static ConfigurationLoader<ConfigurationNode> loader(Path path) {
+        return GsonConfigurationLoader.builder().setPath(path).build();
+    }
+
+    /**
+     * Writes a JSON file, populated by the given writer, through a
+     * temporary file, so the file is never seen half written.
+     *
+     * @param path The path to write to
+     * @param writer The writer, populating an empty node
+     * @throws IOException If the file could not be written
+     */
+    public static void saveAtomically(Path path, Consumer<ConfigurationNode> writer) throws IOException {
+        final Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            final ConfigurationLoader<ConfigurationNode> loader = loader(temp);
+            final ConfigurationNode node = loader.createEmptyNode();
+            writer.accept(node);
+            loader.save(node);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Configs() {
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.jamierocks.mana.carbon.modules.help;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.sk89q.intake.CommandMapping;
+import com.sk89q.intake.context.CommandLocals;
+import org.kitteh.irc.client.library.element.User;
+import uk.jamierocks.mana.carbon.Carbon;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A cache of the rendered listing of every command, split into pages
+ * which each fit within a single IRC line.
+ *
+ * <p>Carbon only tells administrators apart from everyone else, so the
+ * listing is rendered once for each of the two, with the permissions of
+ * the first user of that role to ask, and kept until the dispatcher's
+ * commands change. Commands whose permission depends on anything else
+ * are listed as they were for that first user.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class HelpCache {
+
+    private static final String HEADER = "Commands: ";
+    private static final String PAGED_HEADER = "Commands (%d/%d, see help <page>): ";
+    private static final String ELLIPSIS = "...";
+    private static final int USER = 0;
+    private static final int ADMINISTRATOR = 1;
+
+    private final int maxMessageLength;
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile Listing listing;
+
+    public HelpCache(int maxMessageLength) {
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    /**
+     * Gets the pages of the command listing, for the user of the given
+     * namespace.
+     *
+     * @param namespace The namespace, of the user
+     * @return The pages, of which there is always at least one
+     * @since 2.0.0
+     */
+    public List<String> getPages(CommandLocals namespace) {
+        checkNotNull(namespace, "namespace is null!");
+
+        final Listing listing = this.getListing();
+        final int role = Carbon.getCarbon().getIRCManager().isAdministrator(namespace.get(User.class).getName())
+                ? ADMINISTRATOR : USER;
+        final List<String> pages = listing.pages.get(role);
+        if (pages != null) {
+            return pages;
+        }
+
+        // Rendering twice should two users race is harmless, the results are the same
+        final List<CommandMapping> permitted = Lists.newArrayList();
+        for (CommandMapping mapping : listing.mappings) {
+            if (mapping.getCallable().testPermission(namespace)) {
+                permitted.add(mapping);
+            }
+        }
+        final List<String> rendered = this.render(permitted);
+        listing.pages.compareAndSet(role, null, rendered);
+        return rendered;
+    }
+
+    /**
+     * Discards every rendered listing, as the commands have changed.
+     *
+     * @since 2.0.0
+     */
+    public void invalidate() {
+        this.generation.incrementAndGet();
+    }
+
+    private Listing getListing() {
+        final int generation = this.generation.get();
+        final Listing listing = this.listing;
+        if (listing != null && listing.generation == generation) {
+            return listing;
+        }
+
+        // Built against the generation read beforehand, so a change while building is never hidden
+        final List<CommandMapping> mappings =
+                Lists.newArrayList(Carbon.getCarbon().getCommandDispatcher().getCommands());
+        mappings.sort(Comparator.comparing(CommandMapping::getPrimaryAlias));
+        final Listing built = new Listing(generation, ImmutableList.copyOf(mappings));
+        this.listing = built;
+        return built;
+    }
+
+    private List<String> render(List<CommandMapping> mappings) {
+        // The header is longest when paged, so every page is filled as though it is
+        final int budget = this.maxMessageLength - utf8Length(String.format(PAGED_HEADER, 999, 999));
+        final List<String> bodies = Lists.newArrayList();
+        StringBuilder page = new StringBuilder();
+        int length = 0;
+        for (CommandMapping mapping : mappings) {
+            String entry = mapping.getPrimaryAlias() + " (" + mapping.getCallable().getDescription().getHelp() + ")";
+            int entryLength = utf8Length(entry);
+            if (entryLength > budget) {
+                // Would not fit even on a page of its own
+                entry = truncate(entry, budget - ELLIPSIS.length()) + ELLIPSIS;
+                entryLength = utf8Length(entry);
+            }
+            if (length > 0 && length + 1 + entryLength > budget) {
+                bodies.add(page.toString());
+                page = new StringBuilder();
+                length = 0;
+            }
+            if (length > 0) {
+                page.append(' ');
+                length++;
+            }
+            page.append(entry);
+            length += entryLength;
+        }
+        bodies.add(page.toString());
+
+        if (bodies.size() == 1) {
+            return ImmutableList.of(HEADER + bodies.get(0));
+        }
+        final ImmutableList.Builder<String> pages = ImmutableList.builder();
+        for (int i = 0; i < bodies.size(); i++) {
+            pages.add(String.format(PAGED_HEADER, i + 1, bodies.size()) + bodies.get(i));
+        }
+        return pages.build();
+    }
+
+    private static int utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static String truncate(String text, int maxLength) {
+        int length = 0;
+        int end = 0;
+        while (end < text.length()) {
+            final int codePoint = text.codePointAt(end);
+            length += codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (length > maxLength) {
+                break;
+            }
+            end += Character.charCount(codePoint);
+        }
+        return text.substring(0, end);
+    }
+
+    private static final class Listing {
+
+        private final int generation;
+        private final List<CommandMapping> mappings;
+
+        // Indexed by role, rendered when first asked for
+        private final AtomicReferenceArray<List<String>> pages = new AtomicReferenceArray<>(2);
+
+        private Listing(int generation, List<CommandMapping> mappings) {
+            this.generation = generation;
+            this.mappings = mappings;
+        }
+    }
+}
@@ -17,6 +17,8 @@
 package uk.jamierocks.mana.carbon.modules.help;
 
 import com.google.common.eventbus.Subscribe;
+import uk.jamierocks.mana.carbon.Carbon;
+import uk.jamierocks.mana.carbon.event.command.CommandsChangedEvent;
 import uk.jamierocks.mana.carbon.event.state.PostInitialisationEvent;
 import uk.jamierocks.mana.carbon.module.Module;
 import uk.jamierocks.mana.carbon.modules.help.command.HelpCommand;
@@ -30,9 +32,23 @@ import uk.jamierocks.mana.carbon.modules.help.command.HelpCommand;
 @Module(id = "help", name = "Help")
 public final class HelpModule {
 
+    private final HelpCache cache =
+            new HelpCache(Carbon.getCarbon().getConfiguration().getIrc().getOutbound().getMaxMessageLength());
+    private final HelpSearchIndex index = new HelpSearchIndex();
+
     @Subscribe
     public void onPostInitialisation(PostInitialisationEvent event) {
+        // Commands registered before now are indexed here, and those after as they are registered
+        event.getCarbon().getCommandDispatcher().getCommands().forEach(this.index::add);
+
         // Register commands
-        event.getCarbon().getCommandDispatcher().registerCommand(new HelpCommand(), "help");
+        event.getCarbon().getCommandDispatcher().registerCommand(new HelpCommand(this.cache, this.index), "help");
+    }
+
+    @Subscribe
+    public void onCommandsChanged(CommandsChangedEvent event) {
+        this.cache.invalidate();
+        event.getUnregistered().forEach(this.index::remove);
+        event.getRegistered().forEach(this.index::add);
     }
 }
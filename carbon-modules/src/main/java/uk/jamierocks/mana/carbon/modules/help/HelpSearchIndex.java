@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package uk.jamierocks.mana.carbon.modules.help;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sk89q.intake.CommandMapping;
+import com.sk89q.intake.Description;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.function.Predicate;
+
+/**
+ * An inverted index over the aliases, help text and usage of commands, for
+ * searching them.
+ *
+ * <p>Each term maps to the commands it appears in, weighted by the field
+ * it appears in - an alias says far more about a command than a word in
+ * its help text. Results are ranked with BM25, so rare terms count for
+ * more than common ones, and commands with long descriptions are not
+ * favoured for merely having more words. A term which is not in the index
+ * matches the terms it begins, at half the weight.</p>
+ *
+ * <p>Commands are added and removed one at a time, as they are registered
+ * and unregistered, touching only the terms they contain.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class HelpSearchIndex {
+
+    private static final float ALIAS_WEIGHT = 4;
+    private static final float HELP_WEIGHT = 1;
+    private static final float USAGE_WEIGHT = 0.5f;
+    private static final float PREFIX_WEIGHT = 0.5f;
+    private static final int MIN_PREFIX = 3;
+
+    // The usual BM25 parameters, for term frequency saturation and length normalisation
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private final Map<String, Document> documents = Maps.newHashMap();
+    private final NavigableMap<String, Map<Document, Float>> postings = Maps.newTreeMap();
+    private float totalLength;
+
+    /**
+     * Adds the given command to the index, replacing any command with the
+     * same primary alias.
+     *
+     * @param mapping The command
+     * @since 2.0.0
+     */
+    public synchronized void add(CommandMapping mapping) {
+        checkNotNull(mapping, "mapping is null!");
+        this.remove(mapping);
+
+        final Document document = new Document(mapping);
+        for (String alias : mapping.getAllAliases()) {
+            document.addTerms(alias, ALIAS_WEIGHT);
+        }
+        final Description description = mapping.getCallable().getDescription();
+        if (description != null) {
+            document.addTerms(description.getHelp(), HELP_WEIGHT);
+            document.addTerms(description.getUsage(), USAGE_WEIGHT);
+        }
+
+        this.documents.put(key(mapping), document);
+        this.totalLength += document.length;
+        for (Map.Entry<String, Float> term : document.terms.entrySet()) {
+            this.postings.computeIfAbsent(term.getKey(), t -> Maps.newHashMap()).put(document, term.getValue());
+        }
+    }
+
+    /**
+     * Removes the command with the primary alias of the given command
+     * from the index, if it is present.
+     *
+     * @param mapping The command
+     * @since 2.0.0
+     */
+    public synchronized void remove(CommandMapping mapping) {
+        checkNotNull(mapping, "mapping is null!");
+
+        final Document document = this.documents.remove(key(mapping));
+        if (document == null) {
+            return;
+        }
+        this.totalLength -= document.length;
+        for (String term : document.terms.keySet()) {
+            final Map<Document, Float> posting = this.postings.get(term);
+            posting.remove(document);
+            if (posting.isEmpty()) {
+                this.postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * Searches for the commands best matching the given query.
+     *
+     * @param query The query, as words separated by spaces
+     * @param filter The filter for commands, such as whether they may be used
+     * @param limit The greatest number of commands to return
+     * @return The commands, best first
+     * @since 2.0.0
+     */
+    public synchronized List<CommandMapping> search(String query, Predicate<CommandMapping> filter, int limit) {
+        checkNotNull(query, "query is null!");
+        checkNotNull(filter, "filter is null!");
+        if (this.documents.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        final Map<Document, Float> scores = Maps.newHashMap();
+        final float averageLength = this.totalLength / this.documents.size();
+        for (String term : tokenise(query)) {
+            final Map<Document, Float> posting = this.postings.get(term);
+            if (posting != null) {
+                this.score(posting, 1, averageLength, scores);
+            } else if (term.length() >= MIN_PREFIX) {
+                for (Map<Document, Float> prefixed : this.postings.subMap(term, term + Character.MAX_VALUE).values()) {
+                    this.score(prefixed, PREFIX_WEIGHT, averageLength, scores);
+                }
+            }
+        }
+
+        final List<Map.Entry<Document, Float>> ranked = Lists.newArrayList(scores.entrySet());
+        ranked.sort((a, b) -> Float.compare(b.getValue(), a.getValue()));
+        final List<CommandMapping> results = Lists.newArrayList();
+        for (Map.Entry<Document, Float> entry : ranked) {
+            if (results.size() == limit) {
+                break;
+            }
+            if (filter.test(entry.getKey().mapping)) {
+                results.add(entry.getKey().mapping);
+            }
+        }
+        return results;
+    }
+
+    private void score(Map<Document, Float> posting, float weight, float averageLength, Map<Document, Float> scores) {
+        final int count = this.documents.size();
+        final double idf = Math.log(1 + (count - posting.size() + 0.5) / (posting.size() + 0.5));
+        for (Map.Entry<Document, Float> entry : posting.entrySet()) {
+            final float frequency = entry.getValue();
+            final float norm = K1 * (1 - B + B * entry.getKey().length / averageLength);
+            final float score = (float) (weight * idf * frequency * (K1 + 1) / (frequency + norm));
+            scores.merge(entry.getKey(), score, Float::sum);
+        }
+    }
+
+    private static String key(CommandMapping mapping) {
+        return mapping.getPrimaryAlias().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static List<String> tokenise(String text) {
+        final List<String> tokens = Lists.newArrayList();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            final boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start == -1) {
+                start = i;
+            } else if (!word && start != -1) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ENGLISH));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static final class Document {
+
+        private final CommandMapping mapping;
+        private final Map<String, Float> terms = Maps.newHashMap();
+        private float length;
+
+        private Document(CommandMapping mapping) {
+            this.mapping = mapping;
+        }
+
+        private void addTerms(String text, float weight) {
+            if (text == null) {
+                return;
+            }
+            for (String term : tokenise(text)) {
+                this.terms.merge(term, weight, Float::sum);
+                this.length += weight;
+            }
+        }
+    }
+}
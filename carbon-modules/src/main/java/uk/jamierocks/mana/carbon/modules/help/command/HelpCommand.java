@@ -16,6 +16,8 @@
 
 package uk.jamierocks.mana.carbon.modules.help.command;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.collect.Lists;
 import com.sk89q.intake.CommandCallable;
 import com.sk89q.intake.CommandException;
@@ -25,6 +27,9 @@ import com.sk89q.intake.context.CommandLocals;
 import com.sk89q.intake.util.auth.AuthorizationException;
 import org.kitteh.irc.client.library.element.User;
 import uk.jamierocks.mana.carbon.Carbon;
+import uk.jamierocks.mana.carbon.irc.MessagePriority;
+import uk.jamierocks.mana.carbon.modules.help.HelpCache;
+import uk.jamierocks.mana.carbon.modules.help.HelpSearchIndex;
 import uk.jamierocks.mana.carbon.util.intake.DescriptionBuilder;
 
 import java.util.List;
@@ -39,8 +44,18 @@ public final class HelpCommand implements CommandCallable {
 
     private static final Description DESCRIPTION = new DescriptionBuilder()
             .help("Displays all commands, with their help text")
-            .usage("help [command]")
+            .usage("help [command|page|search <terms>]")
             .build();
+    private static final String SEARCH = "search ";
+    private static final int MAX_RESULTS = 5;
+
+    private final HelpCache cache;
+    private final HelpSearchIndex index;
+
+    public HelpCommand(HelpCache cache, HelpSearchIndex index) {
+        this.cache = checkNotNull(cache, "cache is null!");
+        this.index = checkNotNull(index, "index is null!");
+    }
 
     /**
      * {@inheritDoc}
@@ -48,7 +63,10 @@ public final class HelpCommand implements CommandCallable {
     @Override
     public boolean call(String arguments, CommandLocals namespace, String[] parentCommands) throws CommandException, AuthorizationException {
         if (arguments != null && !arguments.equals("")) {
-            if (Carbon.getCarbon().getCommandDispatcher().contains(arguments)) {
+            // No alias contains a space, so a search is never mistaken for a command
+            if (arguments.startsWith(SEARCH)) {
+                this.search(arguments.substring(SEARCH.length()).trim(), namespace);
+            } else if (Carbon.getCarbon().getCommandDispatcher().contains(arguments)) {
                 CommandMapping mapping = Carbon.getCarbon().getCommandDispatcher().get(arguments);
                 if (mapping.getCallable().testPermission(namespace)) {
                     StringBuilder builder = new StringBuilder();
@@ -61,33 +79,70 @@ public final class HelpCommand implements CommandCallable {
                     builder.append("Usage: ");
                     builder.append(mapping.getDescription().getUsage());
 
-                    namespace.get(User.class).sendMessage(builder.toString());
+                    reply(namespace, builder.toString(), MessagePriority.NORMAL);
                 } else {
-                    namespace.get(User.class)
-                            .sendMessage("You do not have permission to view the help for that command!");
+                    reply(namespace, "You do not have permission to view the help for that command!",
+                            MessagePriority.NORMAL);
+                }
+            } else if (isPage(arguments)) {
+                final List<String> pages = this.cache.getPages(namespace);
+                final int page = Integer.parseInt(arguments);
+                if (page >= 1 && page <= pages.size()) {
+                    reply(namespace, pages.get(page - 1), MessagePriority.BULK);
+                } else {
+                    reply(namespace, "There " + (pages.size() == 1 ? "is only 1 page" : "are only " + pages.size()
+                            + " pages") + "!", MessagePriority.NORMAL);
                 }
             } else {
-                namespace.get(User.class).sendMessage("Command not found!");
+                reply(namespace, "Command not found!", MessagePriority.NORMAL);
             }
         } else {
-            StringBuilder builder = new StringBuilder();
-            builder.append("Commands: ");
+            // The listing is long, so is sent behind other replies
+            reply(namespace, this.cache.getPages(namespace).get(0), MessagePriority.BULK);
+        }
 
-            for (CommandMapping mapping : Carbon.getCarbon().getCommandDispatcher().getCommands()) {
-                if (mapping.getCallable().testPermission(namespace)) {
-                    builder.append(mapping.getPrimaryAlias());
-                    builder.append(" (");
-                    builder.append(mapping.getCallable().getDescription().getHelp());
-                    builder.append(") ");
-                }
-            }
+        return true;
+    }
 
-            namespace.get(User.class).sendMessage(builder.toString());
+    private void search(String terms, CommandLocals namespace) {
+        final List<CommandMapping> results = this.index.search(terms,
+                mapping -> mapping.getCallable().testPermission(namespace), MAX_RESULTS);
+        if (results.isEmpty()) {
+            reply(namespace, "No commands found for: " + terms, MessagePriority.NORMAL);
+            return;
         }
 
+        // Results are added, best first, for as long as they fit on one line
+        final int maxLength = Carbon.getCarbon().getConfiguration().getIrc().getOutbound().getMaxMessageLength();
+        final StringBuilder builder = new StringBuilder("Results for ").append(terms).append(':');
+        for (CommandMapping mapping : results) {
+            final String entry = " " + mapping.getPrimaryAlias() + " ("
+                    + mapping.getCallable().getDescription().getHelp() + ")";
+            if (mapping != results.get(0) && builder.length() + entry.length() > maxLength) {
+                break;
+            }
+            builder.append(entry);
+        }
+        reply(namespace, builder.toString(), MessagePriority.NORMAL);
+    }
+
+    private static boolean isPage(String arguments) {
+        if (arguments.length() > 4) {
+            return false;
+        }
+        for (int i = 0; i < arguments.length(); i++) {
+            if (!Character.isDigit(arguments.charAt(i))) {
+                return false;
+            }
+        }
         return true;
     }
 
+    private static void reply(CommandLocals namespace, String message, MessagePriority priority) {
+        final User user = namespace.get(User.class);
+        Carbon.getCarbon().getIRCManager().sendMessage(user.getClient(), user.getNick(), message, priority);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -109,6 +164,9 @@ public final class HelpCommand implements CommandCallable {
      */
     @Override
     public List<String> getSuggestions(String arguments, CommandLocals locals) throws CommandException {
-        return Lists.newArrayList();
+        if (arguments.indexOf(' ') != -1) {
+            return Lists.newArrayList();
+        }
+        return Carbon.getCarbon().getCommandDispatcher().getSuggestions(arguments, locals);
     }
 }
@@ -48,7 +48,7 @@ public final class InviteModule {
     @Handler
     public void onInvite(ChannelInviteEvent event) {
         if (event.getTarget().equalsIgnoreCase(event.getClient().getNick()) &&
-                getCarbon().getIRCManager().getAdministrators().contains(event.getActor().getName())) {
+                getCarbon().getIRCManager().isAdministrator(event.getActor().getName())) {
             event.getChannel().join();
         }
     }
@@ -81,7 +81,7 @@ public final class JoinCommand implements CommandCallable {
      */
     @Override
     public boolean testPermission(CommandLocals namespace) {
-        return getCarbon().getIRCManager().getAdministrators().contains(namespace.get(User.class).getName());
+        return getCarbon().getIRCManager().isAdministrator(namespace.get(User.class).getName());
     }
 
     /**
@@ -25,6 +25,7 @@ import com.sk89q.intake.Description;
 import com.sk89q.intake.InvalidUsageException;
 import com.sk89q.intake.context.CommandLocals;
 import com.sk89q.intake.util.auth.AuthorizationException;
+import org.kitteh.irc.client.library.Client;
 import org.kitteh.irc.client.library.element.Channel;
 import org.kitteh.irc.client.library.element.User;
 import uk.jamierocks.mana.carbon.util.intake.DescriptionBuilder;
@@ -82,7 +83,7 @@ public final class PartCommand implements CommandCallable {
      */
     @Override
     public boolean testPermission(CommandLocals namespace) {
-        return getCarbon().getIRCManager().getAdministrators().contains(namespace.get(User.class).getName());
+        return getCarbon().getIRCManager().isAdministrator(namespace.get(User.class).getName());
     }
 
     /**
@@ -90,6 +91,19 @@ public final class PartCommand implements CommandCallable {
      */
     @Override
     public List<String> getSuggestions(String arguments, CommandLocals locals) throws CommandException {
-        return Lists.newArrayList();
+        final List<String> suggestions = Lists.newArrayList();
+        if (!this.testPermission(locals)) {
+            // The channels the bot is in are not for everyone to see
+            return suggestions;
+        }
+        for (Client client : getCarbon().getIRCManager().getClients()) {
+            for (Channel channel : client.getChannels()) {
+                final String name = client.getName() + '/' + channel.getName();
+                if (name.regionMatches(true, 0, arguments, 0, arguments.length())) {
+                    suggestions.add(name);
+                }
+            }
+        }
+        return suggestions;
     }
 }
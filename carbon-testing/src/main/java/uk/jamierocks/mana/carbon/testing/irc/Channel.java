@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.testing.irc;
+
+import com.google.common.collect.Sets;
+
+import java.util.Set;
+
+/**
+ * A channel of the {@link EmbeddedIrcServer}.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class Channel {
+
+    private final String name;
+    private final Set<Member> members = Sets.newLinkedHashSet();
+
+    Channel(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the name of the channel, as it was first joined.
+     *
+     * @return The name
+     */
+    String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the members of the channel.
+     *
+     * @return The members
+     */
+    Set<Member> getMembers() {
+        return this.members;
+    }
+
+    /**
+     * Sends the given raw line to every member of the channel, other than
+     * the given member.
+     *
+     * @param line The line
+     * @param except The member to skip, or {@code null}
+     */
+    void broadcast(String line, Member except) {
+        for (Member member : this.members) {
+            if (member != except) {
+                member.send(line);
+            }
+        }
+    }
+}
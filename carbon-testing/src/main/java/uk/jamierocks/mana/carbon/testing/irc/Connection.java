@@ -0,0 +1,364 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.testing.irc;
+
+import static uk.jamierocks.mana.carbon.testing.irc.EmbeddedIrcServer.NAME;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A client connected to the {@link EmbeddedIrcServer} over a socket.
+ *
+ * <p>Lines are read on a thread of the connection's own, and written on
+ * another, so a slow client never holds up the server.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+final class Connection implements Member {
+
+    private static final String CLOSE = "";
+    private static final int NAMES_LENGTH = 400;
+
+    private final EmbeddedIrcServer server;
+    private final Socket socket;
+    private final BlockingQueue<String> output = new LinkedBlockingQueue<>();
+    private volatile String nick;
+    private String user;
+    private String realName;
+    private boolean negotiating;
+    private volatile boolean registered;
+
+    Connection(EmbeddedIrcServer server, Socket socket) {
+        this.server = server;
+        this.socket = socket;
+    }
+
+    void start() {
+        final String name = "Embedded IRC Connection " + this.socket.getRemoteSocketAddress();
+
+        final Thread reader = new Thread(this::read, name + " Reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        final Thread writer = new Thread(this::write, name + " Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    void ping() {
+        if (this.registered) {
+            this.send("PING :" + System.nanoTime());
+        }
+    }
+
+    void close() {
+        this.output.add(CLOSE);
+    }
+
+    @Override
+    public String getNick() {
+        return this.nick == null ? "*" : this.nick;
+    }
+
+    @Override
+    public String getUser() {
+        return this.user;
+    }
+
+    @Override
+    public String getHost() {
+        return "localhost";
+    }
+
+    @Override
+    public String getRealName() {
+        return this.realName;
+    }
+
+    @Override
+    public void send(String line) {
+        this.output.add(line);
+    }
+
+    private void read() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(this.socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    this.handle(IrcMessage.parse(line));
+                }
+            }
+        } catch (IOException ignored) {
+            // The client has gone away
+        } finally {
+            this.server.quit(this, "Connection closed");
+            this.close();
+        }
+    }
+
+    private void write() {
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(this.socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            while (true) {
+                String line = this.output.take();
+                while (line != null) {
+                    if (line == CLOSE) {
+                        return;
+                    }
+                    writer.write(line);
+                    writer.write("\r\n");
+                    line = this.output.poll();
+                }
+                writer.flush();
+            }
+        } catch (IOException | InterruptedException ignored) {
+            // The client has gone away
+        } finally {
+            try {
+                this.socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void handle(IrcMessage message) {
+        final List<String> params = message.getParams();
+        switch (message.getCommand()) {
+            case "CAP":
+                this.handleCap(message);
+                return;
+            case "PASS":
+                return;
+            case "NICK":
+                if (params.isEmpty()) {
+                    this.reply("431", ":No nickname given");
+                } else {
+                    this.handleNick(params.get(0));
+                }
+                return;
+            case "USER":
+                if (params.size() < 4) {
+                    this.reply("461", "USER :Not enough parameters");
+                    return;
+                }
+                this.user = params.get(0);
+                this.realName = params.get(3);
+                this.register();
+                return;
+            case "PING":
+                this.send(':' + NAME + " PONG " + NAME + " :" + message.getParam(0).orElse(""));
+                return;
+            case "PONG":
+                if (!params.isEmpty()) {
+                    this.pong(params.get(params.size() - 1));
+                }
+                return;
+            case "QUIT":
+                this.server.quit(this, message.getParam(0).orElse("Quit"));
+                this.close();
+                return;
+            default:
+                break;
+        }
+
+        if (!this.registered) {
+            this.reply("451", ":You have not registered");
+            return;
+        }
+
+        switch (message.getCommand()) {
+            case "JOIN":
+                for (String channel : message.getParam(0).orElse("").split(",")) {
+                    if (channel.startsWith("#")) {
+                        this.server.join(this, channel);
+                    }
+                }
+                break;
+            case "PART":
+                for (String channel : message.getParam(0).orElse("").split(",")) {
+                    this.server.part(this, channel, message.getParam(1).orElse(this.getNick()));
+                }
+                break;
+            case "PRIVMSG":
+            case "NOTICE":
+                if (params.size() < 2) {
+                    this.reply("412", ":No text to send");
+                } else if (!this.server.deliver(this, message.getCommand(), params.get(0), params.get(1))
+                        && message.getCommand().equals("PRIVMSG")) {
+                    this.reply("401", params.get(0) + " :No such nick/channel");
+                }
+                break;
+            case "NAMES":
+                final Channel channel = this.server.getChannel(message.getParam(0).orElse(""));
+                if (channel != null) {
+                    synchronized (this.server) {
+                        this.sendNames(channel);
+                    }
+                }
+                break;
+            case "WHO":
+                this.handleWho(message.getParam(0).orElse("*"));
+                break;
+            case "MODE":
+                this.handleMode(message);
+                break;
+            case "TOPIC":
+                this.reply("331", message.getParam(0).orElse("*") + " :No topic is set");
+                break;
+            case "INVITE":
+                if (params.size() < 2) {
+                    this.reply("461", "INVITE :Not enough parameters");
+                    break;
+                }
+                if (this.server.invite(this, params.get(0), params.get(1))) {
+                    this.reply("341", params.get(0) + ' ' + params.get(1));
+                } else {
+                    this.reply("401", params.get(0) + " :No such nick/channel");
+                }
+                break;
+            case "WHOIS":
+                this.reply("318", message.getParam(0).orElse("*") + " :End of /WHOIS list.");
+                break;
+            default:
+                this.reply("421", message.getCommand() + " :Unknown command");
+                break;
+        }
+    }
+
+    private void handleCap(IrcMessage message) {
+        switch (message.getParam(0).orElse("")) {
+            case "LS":
+                // No capabilities are offered, which every client must cope with
+                this.negotiating = true;
+                this.send(':' + NAME + " CAP " + this.getNick() + " LS :");
+                break;
+            case "REQ":
+                this.send(':' + NAME + " CAP " + this.getNick() + " NAK :" + message.getParam(1).orElse(""));
+                break;
+            case "END":
+                this.negotiating = false;
+                this.register();
+                break;
+            default:
+                this.reply("410", message.getParam(0).orElse("*") + " :Invalid CAP command");
+                break;
+        }
+    }
+
+    private void handleNick(String nick) {
+        if (!this.server.isAvailable(nick)) {
+            this.reply("433", nick + " :Nickname is already in use");
+            return;
+        }
+
+        if (!this.registered) {
+            this.nick = nick;
+            this.register();
+            return;
+        }
+
+        final String oldNick = this.nick;
+        this.nick = nick;
+        if (!this.server.rename(this, oldNick)) {
+            this.nick = oldNick;
+            this.reply("433", nick + " :Nickname is already in use");
+        }
+    }
+
+    private void handleWho(String mask) {
+        for (Member member : this.server.getMembers(mask)) {
+            this.reply("352", mask + ' ' + member.getUser() + ' ' + member.getHost() + ' ' + NAME + ' '
+                    + member.getNick() + " H :0 " + member.getRealName());
+        }
+        this.reply("315", mask + " :End of /WHO list.");
+    }
+
+    private void handleMode(IrcMessage message) {
+        final String target = message.getParam(0).orElse("");
+        if (!target.startsWith("#")) {
+            this.reply("221", "+i");
+        } else if (message.getParam(1).map(mode -> mode.contains("b")).orElse(false)) {
+            this.reply("368", target + " :End of channel ban list");
+        } else {
+            this.reply("324", target + " +nt");
+        }
+    }
+
+    private void register() {
+        if (this.registered || this.negotiating || this.nick == null || this.user == null) {
+            return;
+        }
+        if (!this.server.register(this)) {
+            this.reply("433", this.nick + " :Nickname is already in use");
+            this.nick = null;
+            return;
+        }
+        this.registered = true;
+
+        this.reply("001", ":Welcome to the Embedded IRC Network " + this.getMask());
+        this.reply("002", ":Your host is " + NAME + ", running version carbon-testing");
+        this.reply("003", ":This server was created for testing");
+        this.reply("004", NAME + " carbon-testing i bklmnopstv");
+        this.reply("005", "CHANTYPES=# PREFIX=(ov)@+ CHANMODES=b,k,l,imnpst NETWORK=Embedded CASEMAPPING=ascii"
+                + " NICKLEN=30 :are supported by this server");
+        this.reply("422", ":MOTD File is missing");
+    }
+
+    /**
+     * Sends the names of the given channel, which must be called with the
+     * server's lock held.
+     */
+    void sendNames(Channel channel) {
+        final String prefix = "= " + channel.getName() + " :";
+        StringBuilder names = new StringBuilder();
+        for (Member member : channel.getMembers()) {
+            if (names.length() + member.getNick().length() > NAMES_LENGTH) {
+                this.reply("353", prefix + names.toString().trim());
+                names = new StringBuilder();
+            }
+            names.append(member.getNick()).append(' ');
+        }
+        if (names.length() != 0) {
+            this.reply("353", prefix + names.toString().trim());
+        }
+        this.reply("366", channel.getName() + " :End of /NAMES list.");
+    }
+
+    private void pong(String token) {
+        try {
+            this.server.pong(System.nanoTime() - Long.parseLong(token));
+        } catch (NumberFormatException ignored) {
+            // Not a ping the server sent
+        }
+    }
+
+    private void reply(String numeric, String text) {
+        this.send(':' + NAME + ' ' + numeric + ' ' + this.getNick() + ' ' + text);
+    }
+}
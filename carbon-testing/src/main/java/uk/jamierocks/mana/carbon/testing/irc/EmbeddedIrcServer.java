@@ -0,0 +1,356 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.testing.irc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * An in-process IRC server, listening on the loopback address, which
+ * speaks enough of RFC 1459 and IRCv3 capability negotiation for a bot
+ * to register, join channels and exchange messages.
+ *
+ * <p>Alongside clients connected over a socket, the server can simulate
+ * any number of {@link VirtualUser}s, which take part in channels without
+ * a connection of their own - so thousands of users can be simulated on
+ * one machine.</p>
+ *
+ * <p>Every connected client is sent a {@code PING} periodically, and the
+ * time taken for each {@code PONG} is reported to the ping listener.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class EmbeddedIrcServer implements AutoCloseable {
+
+    static final String NAME = "irc.embedded.test";
+
+    private final ServerSocket socket;
+    private final Map<String, Member> users = Maps.newHashMap();
+    private final Map<String, Channel> channels = Maps.newHashMap();
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService pinger = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("Embedded IRC Pinger")
+                    .setDaemon(true)
+                    .build());
+    private volatile LongConsumer pingListener = rtt -> {};
+    private volatile Consumer<IOException> errorListener = e -> {
+        final Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    };
+
+    /**
+     * Creates a server on the given port of the loopback address.
+     *
+     * @param port The port, or {@code 0} for any free port
+     * @throws IOException If the port could not be bound
+     * @since 2.0.0
+     */
+    public EmbeddedIrcServer(int port) throws IOException {
+        this.socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Starts accepting connections, and pinging connected clients at the
+     * given interval.
+     *
+     * @param pingInterval The interval between pings
+     * @param unit The unit of the interval
+     * @since 2.0.0
+     */
+    public void start(long pingInterval, TimeUnit unit) {
+        final Thread acceptor = new Thread(this::accept, "Embedded IRC Acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        this.pinger.scheduleAtFixedRate(() -> this.connections.forEach(Connection::ping),
+                pingInterval, pingInterval, unit);
+    }
+
+    private void accept() {
+        while (!this.socket.isClosed()) {
+            try {
+                final Socket client = this.socket.accept();
+                client.setTcpNoDelay(true);
+
+                final Connection connection = new Connection(this, client);
+                this.connections.add(connection);
+                connection.start();
+            } catch (IOException e) {
+                if (!this.socket.isClosed()) {
+                    this.errorListener.accept(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     *
+     * @return The port
+     * @since 2.0.0
+     */
+    public int getPort() {
+        return this.socket.getLocalPort();
+    }
+
+    /**
+     * Sets the listener for the round trip time, in nanoseconds, of every
+     * ping answered by a connected client.
+     *
+     * @param pingListener The ping listener
+     * @since 2.0.0
+     */
+    public void setPingListener(LongConsumer pingListener) {
+        this.pingListener = checkNotNull(pingListener, "pingListener is null!");
+    }
+
+    /**
+     * Sets the listener for every error met while accepting connections,
+     * which by default are passed to the acceptor thread's uncaught
+     * exception handler.
+     *
+     * @param errorListener The error listener
+     * @since 2.0.0
+     */
+    public void setErrorListener(Consumer<IOException> errorListener) {
+        this.errorListener = checkNotNull(errorListener, "errorListener is null!");
+    }
+
+    /**
+     * Creates a simulated user, with the given nick.
+     *
+     * @param nick The nick
+     * @param listener The listener for every line sent to the user
+     * @return The user
+     * @throws IllegalArgumentException If the nick is in use
+     * @since 2.0.0
+     */
+    public synchronized VirtualUser createUser(String nick, Consumer<IrcMessage> listener) {
+        checkNotNull(nick, "nick is null!");
+        checkNotNull(listener, "listener is null!");
+        final VirtualUser user = new VirtualUser(this, nick, listener);
+        checkArgument(this.register(user), "nick is in use!");
+        return user;
+    }
+
+    /**
+     * Waits until a user with the given nick has registered.
+     *
+     * @param nick The nick
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout
+     * @return {@code True} if the user registered, {@code false} otherwise
+     * @throws InterruptedException If interrupted while waiting
+     * @since 2.0.0
+     */
+    public synchronized boolean awaitUser(String nick, long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!this.users.containsKey(key(nick))) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Joins the user with the given nick to a channel, as though they had
+     * joined it themselves.
+     *
+     * @param nick The nick
+     * @param channel The channel
+     * @return {@code True} if the user exists, {@code false} otherwise
+     * @since 2.0.0
+     */
+    public synchronized boolean join(String nick, String channel) {
+        final Member member = this.users.get(key(nick));
+        if (member == null) {
+            return false;
+        }
+        this.join(member, channel);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        this.pinger.shutdownNow();
+        this.socket.close();
+        this.connections.forEach(Connection::close);
+    }
+
+    void pong(long rtt) {
+        this.pingListener.accept(rtt);
+    }
+
+    synchronized boolean isAvailable(String nick) {
+        return !this.users.containsKey(key(nick));
+    }
+
+    synchronized boolean register(Member member) {
+        if (this.users.putIfAbsent(key(member.getNick()), member) != null) {
+            return false;
+        }
+        this.notifyAll();
+        return true;
+    }
+
+    synchronized boolean rename(Member member, String oldNick) {
+        if (this.users.putIfAbsent(key(member.getNick()), member) != null) {
+            return false;
+        }
+        this.users.remove(key(oldNick));
+
+        final String line = ':' + oldNick + '!' + member.getUser() + '@' + member.getHost()
+                + " NICK :" + member.getNick();
+        this.neighbours(member).forEach(neighbour -> neighbour.send(line));
+        member.send(line);
+        return true;
+    }
+
+    synchronized void join(Member member, String name) {
+        final Channel channel = this.channels.computeIfAbsent(key(name), k -> new Channel(name));
+        if (!channel.getMembers().add(member)) {
+            return;
+        }
+
+        channel.broadcast(':' + member.getMask() + " JOIN " + channel.getName(), null);
+        if (member instanceof Connection) {
+            ((Connection) member).sendNames(channel);
+        }
+    }
+
+    synchronized void part(Member member, String name, String reason) {
+        final Channel channel = this.channels.get(key(name));
+        if (channel == null || !channel.getMembers().contains(member)) {
+            return;
+        }
+
+        channel.broadcast(':' + member.getMask() + " PART " + channel.getName() + " :" + reason, null);
+        channel.getMembers().remove(member);
+        if (channel.getMembers().isEmpty()) {
+            this.channels.remove(key(name));
+        }
+    }
+
+    synchronized void quit(Member member, String reason) {
+        if (this.users.get(key(member.getNick())) != member) {
+            return;
+        }
+
+        final String line = ':' + member.getMask() + " QUIT :" + reason;
+        this.neighbours(member).forEach(neighbour -> neighbour.send(line));
+        this.users.remove(key(member.getNick()));
+        this.channels.values().removeIf(channel ->
+                channel.getMembers().remove(member) && channel.getMembers().isEmpty());
+        if (member instanceof Connection) {
+            this.connections.remove(member);
+        }
+    }
+
+    /**
+     * Delivers a {@code PRIVMSG} or {@code NOTICE} to its target.
+     *
+     * @return {@code True} if the target exists, {@code false} otherwise
+     */
+    synchronized boolean deliver(Member from, String command, String target, String text) {
+        final String line = ':' + from.getMask() + ' ' + command + ' ' + target + " :" + text;
+        if (target.startsWith("#")) {
+            final Channel channel = this.channels.get(key(target));
+            if (channel == null) {
+                return false;
+            }
+            channel.broadcast(line, from);
+            return true;
+        }
+
+        final Member member = this.users.get(key(target));
+        if (member == null) {
+            return false;
+        }
+        member.send(line);
+        return true;
+    }
+
+    /**
+     * Sends an {@code INVITE} to the given channel to its target.
+     *
+     * @return {@code True} if the target exists, {@code false} otherwise
+     */
+    synchronized boolean invite(Member from, String nick, String channel) {
+        final Member member = this.users.get(key(nick));
+        if (member == null) {
+            return false;
+        }
+        member.send(':' + from.getMask() + " INVITE " + member.getNick() + " :" + channel);
+        return true;
+    }
+
+    synchronized Channel getChannel(String name) {
+        return this.channels.get(key(name));
+    }
+
+    /**
+     * Takes a copy of the members of the given channel, which may be used
+     * outside of the server's lock.
+     */
+    synchronized List<Member> getMembers(String name) {
+        final Channel channel = this.channels.get(key(name));
+        return channel == null ? Lists.newArrayList() : Lists.newArrayList(channel.getMembers());
+    }
+
+    private Set<Member> neighbours(Member member) {
+        final Set<Member> neighbours = Sets.newHashSet();
+        for (Channel channel : this.channels.values()) {
+            if (channel.getMembers().contains(member)) {
+                neighbours.addAll(channel.getMembers());
+            }
+        }
+        neighbours.remove(member);
+        return neighbours;
+    }
+
+    static String key(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.testing.irc;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * A line of the IRC protocol, split into its prefix, command and
+ * parameters.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class IrcMessage {
+
+    private final String prefix;
+    private final String command;
+    private final List<String> params;
+
+    private IrcMessage(String prefix, String command, List<String> params) {
+        this.prefix = prefix;
+        this.command = command;
+        this.params = params;
+    }
+
+    /**
+     * Parses the given line, ignoring any IRCv3 message tags.
+     *
+     * @param line The raw line
+     * @return The message
+     * @since 2.0.0
+     */
+    public static IrcMessage parse(String line) {
+        int index = 0;
+        if (line.startsWith("@")) {
+            index = next(line, line.indexOf(' '));
+        }
+
+        String prefix = null;
+        if (line.startsWith(":", index)) {
+            final int end = line.indexOf(' ', index);
+            prefix = line.substring(index + 1, end < 0 ? line.length() : end);
+            index = next(line, end);
+        }
+
+        final ImmutableList.Builder<String> params = ImmutableList.builder();
+        String command = "";
+        while (index < line.length()) {
+            if (line.charAt(index) == ':' && !command.isEmpty()) {
+                params.add(line.substring(index + 1));
+                break;
+            }
+
+            final int end = line.indexOf(' ', index);
+            final String token = line.substring(index, end < 0 ? line.length() : end);
+            if (command.isEmpty()) {
+                command = token.toUpperCase(Locale.ENGLISH);
+            } else {
+                params.add(token);
+            }
+            index = next(line, end);
+        }
+
+        return new IrcMessage(prefix, command, params.build());
+    }
+
+    private static int next(String line, int space) {
+        if (space < 0) {
+            return line.length();
+        }
+        while (space < line.length() && line.charAt(space) == ' ') {
+            space++;
+        }
+        return space;
+    }
+
+    /**
+     * Gets the prefix of the message, the server or user who sent it.
+     *
+     * @return The prefix
+     * @since 2.0.0
+     */
+    public Optional<String> getPrefix() {
+        return Optional.ofNullable(this.prefix);
+    }
+
+    /**
+     * Gets the nick of the user who sent the message, from its prefix.
+     *
+     * @return The nick
+     * @since 2.0.0
+     */
+    public Optional<String> getNick() {
+        return this.getPrefix().map(prefix -> {
+            final int end = prefix.indexOf('!');
+            return end < 0 ? prefix : prefix.substring(0, end);
+        });
+    }
+
+    /**
+     * Gets the command of the message, in upper case.
+     *
+     * @return The command
+     * @since 2.0.0
+     */
+    public String getCommand() {
+        return this.command;
+    }
+
+    /**
+     * Gets an immutable list of the parameters of the message.
+     *
+     * @return The parameters
+     * @since 2.0.0
+     */
+    public List<String> getParams() {
+        return this.params;
+    }
+
+    /**
+     * Gets the parameter at the given index, if present.
+     *
+     * @param index The index
+     * @return The parameter
+     * @since 2.0.0
+     */
+    public Optional<String> getParam(int index) {
+        return index < this.params.size() ? Optional.of(this.params.get(index)) : Optional.empty();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.testing.irc;
+
+/**
+ * A user of the {@link EmbeddedIrcServer}, either connected over a socket
+ * or simulated within the server.
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+interface Member {
+
+    /**
+     * Gets the nick of the user.
+     *
+     * @return The nick
+     */
+    String getNick();
+
+    /**
+     * Gets the username of the user.
+     *
+     * @return The username
+     */
+    String getUser();
+
+    /**
+     * Gets the host of the user.
+     *
+     * @return The host
+     */
+    String getHost();
+
+    /**
+     * Gets the real name of the user.
+     *
+     * @return The real name
+     */
+    String getRealName();
+
+    /**
+     * Gets the full mask of the user, as used in prefixes.
+     *
+     * @return The mask
+     */
+    default String getMask() {
+        return this.getNick() + '!' + this.getUser() + '@' + this.getHost();
+    }
+
+    /**
+     * Sends the given raw line to the user.
+     *
+     * @param line The line
+     */
+    void send(String line);
+}
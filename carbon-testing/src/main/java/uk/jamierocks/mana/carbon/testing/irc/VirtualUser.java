@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.testing.irc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.function.Consumer;
+
+/**
+ * A user simulated within the {@link EmbeddedIrcServer}, without a
+ * connection of its own.
+ *
+ * <p>Lines sent to the user are parsed and passed to its listener, on the
+ * thread that sent them.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class VirtualUser implements Member {
+
+    private final EmbeddedIrcServer server;
+    private final String nick;
+    private final Consumer<IrcMessage> listener;
+
+    VirtualUser(EmbeddedIrcServer server, String nick, Consumer<IrcMessage> listener) {
+        this.server = server;
+        this.nick = nick;
+        this.listener = listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNick() {
+        return this.nick;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getUser() {
+        return this.nick;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getHost() {
+        return "virtual." + EmbeddedIrcServer.NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getRealName() {
+        return this.nick;
+    }
+
+    /**
+     * Joins the given channel.
+     *
+     * @param channel The channel
+     * @since 2.0.0
+     */
+    public void join(String channel) {
+        checkNotNull(channel, "channel is null!");
+        this.server.join(this, channel);
+    }
+
+    /**
+     * Parts the given channel.
+     *
+     * @param channel The channel
+     * @since 2.0.0
+     */
+    public void part(String channel) {
+        checkNotNull(channel, "channel is null!");
+        this.server.part(this, channel, this.nick);
+    }
+
+    /**
+     * Sends a message to the given channel or user.
+     *
+     * @param target The channel or nick
+     * @param message The message
+     * @return {@code True} if the target exists, {@code false} otherwise
+     * @since 2.0.0
+     */
+    public boolean sendMessage(String target, String message) {
+        checkNotNull(target, "target is null!");
+        checkNotNull(message, "message is null!");
+        return this.server.deliver(this, "PRIVMSG", target, message);
+    }
+
+    /**
+     * Sends a notice to the given channel or user.
+     *
+     * @param target The channel or nick
+     * @param message The message
+     * @return {@code True} if the target exists, {@code false} otherwise
+     * @since 2.0.0
+     */
+    public boolean sendNotice(String target, String message) {
+        checkNotNull(target, "target is null!");
+        checkNotNull(message, "message is null!");
+        return this.server.deliver(this, "NOTICE", target, message);
+    }
+
+    /**
+     * Invites the given user to a channel.
+     *
+     * @param nick The nick of the user
+     * @param channel The channel
+     * @return {@code True} if the user exists, {@code false} otherwise
+     * @since 2.0.0
+     */
+    public boolean invite(String nick, String channel) {
+        checkNotNull(nick, "nick is null!");
+        checkNotNull(channel, "channel is null!");
+        return this.server.invite(this, nick, channel);
+    }
+
+    /**
+     * Quits the server.
+     *
+     * @since 2.0.0
+     */
+    public void quit() {
+        this.server.quit(this, "Quit");
+    }
+
+    @Override
+    public void send(String line) {
+        this.listener.accept(IrcMessage.parse(line));
+    }
+}
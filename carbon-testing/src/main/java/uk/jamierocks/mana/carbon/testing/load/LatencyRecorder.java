@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.testing.load;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records latencies, for their percentiles to be reported.
+ *
+ * <p>Every latency is kept, so the percentiles are exact - a run of the
+ * load generator records at most a few million.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class LatencyRecorder {
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private long[] latencies = new long[1024];
+    private int count;
+
+    /**
+     * Records the given latency.
+     *
+     * @param nanos The latency, in nanoseconds
+     * @since 2.0.0
+     */
+    public synchronized void record(long nanos) {
+        if (this.count == this.latencies.length) {
+            this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+        }
+        this.latencies[this.count++] = nanos;
+    }
+
+    /**
+     * Gets the number of latencies recorded.
+     *
+     * @return The count
+     * @since 2.0.0
+     */
+    public synchronized int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Gets the latency at the given percentile, in nanoseconds.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The latency, or {@code 0} if none were recorded
+     * @since 2.0.0
+     */
+    public long getPercentile(double percentile) {
+        return percentile(this.sorted(), percentile);
+    }
+
+    /**
+     * Summarises the recorded latencies, in milliseconds.
+     *
+     * @return The summary
+     * @since 2.0.0
+     */
+    public String summarise() {
+        final long[] sorted = this.sorted();
+        if (sorted.length == 0) {
+            return "none recorded";
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        for (double percentile : PERCENTILES) {
+            builder.append('p').append(percentile % 1 == 0 ? String.valueOf((int) percentile) : String.valueOf(percentile))
+                    .append('=').append(millis(percentile(sorted, percentile))).append("ms ");
+        }
+        builder.append("max=").append(millis(sorted[sorted.length - 1])).append("ms");
+        builder.append(" (").append(sorted.length).append(" samples)");
+        return builder.toString();
+    }
+
+    private synchronized long[] sorted() {
+        final long[] sorted = Arrays.copyOf(this.latencies, this.count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon.testing.load;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import uk.jamierocks.mana.carbon.testing.irc.EmbeddedIrcServer;
+import uk.jamierocks.mana.carbon.testing.irc.IrcMessage;
+import uk.jamierocks.mana.carbon.testing.irc.VirtualUser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates a busy network against a bot, such as Carbon, connected to an
+ * {@link EmbeddedIrcServer}, reporting the latency of its command
+ * responses and the throughput it sustains.
+ *
+ * <p>Run with options of the form {@code --name value}:</p>
+ * <ul>
+ *     <li>{@code port} - the port to listen on (6667)</li>
+ *     <li>{@code bot} - the nick of the bot under test (Carbon)</li>
+ *     <li>{@code users} - the number of simulated users (2000)</li>
+ *     <li>{@code channels} - the number of channels (200)</li>
+ *     <li>{@code rate} - the messages sent per second, by all users (500)</li>
+ *     <li>{@code command-ratio} - the fraction of messages which are commands (0.1)</li>
+ *     <li>{@code commands} - comma separated commands to send (.help)</li>
+ *     <li>{@code timeout} - seconds a command may go without a response (10)</li>
+ *     <li>{@code warmup} - seconds to run before measuring (10)</li>
+ *     <li>{@code duration} - seconds to measure for (60)</li>
+ * </ul>
+ *
+ * <p>The bot is joined to every channel by the server once it has
+ * registered, so needs no configuration beyond the server's address.</p>
+ *
+ * <p>Replies carry nothing identifying the command they answer, so each
+ * user has at most one command awaiting a response - a user with one
+ * outstanding chats instead - and the first reply from the bot to that
+ * user answers it. A command without a response within the timeout is
+ * counted as timed out, and the user waits out a further timeout before
+ * sending another, so a late reply isn't taken for the next command's.
+ * Replies with no command outstanding are counted as unmatched, rather
+ * than answering any command.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public final class LoadGenerator {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final String[] CHATTER = {
+            "hello everyone",
+            "has anyone seen the latest release?",
+            "brb",
+            "that build is taking forever",
+            "lol",
+            "does anyone know how to configure the bot?"
+    };
+
+    private final String bot;
+    private final double rate;
+    private final double commandRatio;
+    private final String[] commands;
+    private final long timeout;
+    private final List<SimulatedUser> users = Lists.newArrayList();
+    private final LatencyRecorder commandLatency = new LatencyRecorder();
+    private final LatencyRecorder pingLatency = new LatencyRecorder();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong commandsSent = new AtomicLong();
+    private final AtomicLong responses = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong unmatched = new AtomicLong();
+    private volatile boolean measuring;
+    private double owed;
+
+    private LoadGenerator(EmbeddedIrcServer server, Map<String, String> options) {
+        this.bot = options.getOrDefault("bot", "Carbon");
+        this.rate = Double.parseDouble(options.getOrDefault("rate", "500"));
+        this.commandRatio = Double.parseDouble(options.getOrDefault("command-ratio", "0.1"));
+        this.commands = options.getOrDefault("commands", ".help").split(",");
+        this.timeout = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("timeout", "10")));
+
+        final int users = Integer.parseInt(options.getOrDefault("users", "2000"));
+        final int channels = Integer.parseInt(options.getOrDefault("channels", "200"));
+        for (int i = 0; i < channels; i++) {
+            server.join(this.bot, "#load" + i);
+        }
+        for (int i = 0; i < users; i++) {
+            final SimulatedUser user = new SimulatedUser("#load" + (i % channels));
+            user.user = server.createUser("user" + i, user::receive);
+            user.user.join(user.channel);
+            this.users.add(user);
+        }
+
+        server.setPingListener(rtt -> {
+            if (this.measuring) {
+                this.pingLatency.record(rtt);
+            }
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = Maps.newHashMap();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+
+        final int port = Integer.parseInt(options.getOrDefault("port", "6667"));
+        final String bot = options.getOrDefault("bot", "Carbon");
+        try (EmbeddedIrcServer server = new EmbeddedIrcServer(port)) {
+            server.start(5, TimeUnit.SECONDS);
+            System.out.println("Listening on localhost:" + server.getPort() + ", waiting for " + bot + " to connect");
+            if (!server.awaitUser(bot, 5, TimeUnit.MINUTES)) {
+                System.err.println(bot + " did not connect!");
+                System.exit(1);
+            }
+
+            // Give the bot a moment to finish registering, before joining it to channels
+            Thread.sleep(TimeUnit.SECONDS.toMillis(2));
+            new LoadGenerator(server, options).run(
+                    Long.parseLong(options.getOrDefault("warmup", "10")),
+                    Long.parseLong(options.getOrDefault("duration", "60")));
+        }
+    }
+
+    private void run(long warmup, long duration) throws InterruptedException {
+        System.out.println("Simulating " + this.users.size() + " users, sending " + this.rate + " messages per second ("
+                + this.commandRatio * 100 + "% commands)");
+
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("Load Generator")
+                .setDaemon(true)
+                .build());
+        executor.scheduleAtFixedRate(this::tick, TICK, TICK, TimeUnit.NANOSECONDS);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmup));
+        final long sent = this.sent.get();
+        final long commands = this.commandsSent.get();
+        final long responses = this.responses.get();
+        final long timedOut = this.timedOut.get();
+        final long unmatched = this.unmatched.get();
+        final long started = System.nanoTime();
+        this.measuring = true;
+
+        for (long elapsed = 0; elapsed < duration; elapsed += 5) {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(Math.min(5, duration - elapsed)));
+            System.out.println("[" + Math.min(elapsed + 5, duration) + "s] sent " + (this.sent.get() - sent)
+                    + ", commands " + (this.commandsSent.get() - commands)
+                    + ", responses " + (this.responses.get() - responses)
+                    + ", timed out " + (this.timedOut.get() - timedOut)
+                    + ", awaiting " + this.getPending());
+        }
+
+        this.measuring = false;
+        executor.shutdownNow();
+        final double seconds = (System.nanoTime() - started) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        System.out.println();
+        System.out.println(String.format("Throughput: %.1f messages/s, %.1f commands/s, %.1f responses/s",
+                (this.sent.get() - sent) / seconds,
+                (this.commandsSent.get() - commands) / seconds,
+                (this.responses.get() - responses) / seconds));
+        System.out.println("Command latency: " + this.commandLatency.summarise());
+        System.out.println("Ping latency: " + this.pingLatency.summarise());
+        System.out.println("Commands without a response: " + (this.timedOut.get() - timedOut) + " timed out, "
+                + this.getPending() + " still awaiting");
+        System.out.println("Responses without a command: " + (this.unmatched.get() - unmatched));
+    }
+
+    private synchronized void tick() {
+        this.owed += this.rate * TICK / TimeUnit.SECONDS.toNanos(1);
+
+        final long now = System.nanoTime();
+        for (SimulatedUser user : this.users) {
+            user.expire(now);
+        }
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (; this.owed >= 1; this.owed--) {
+            final SimulatedUser user = this.users.get(random.nextInt(this.users.size()));
+            if (random.nextDouble() < this.commandRatio && user.await(System.nanoTime())) {
+                user.user.sendMessage(user.channel, this.commands[random.nextInt(this.commands.length)]);
+                this.commandsSent.incrementAndGet();
+            } else {
+                user.user.sendMessage(user.channel, CHATTER[random.nextInt(CHATTER.length)]);
+            }
+            this.sent.incrementAndGet();
+        }
+    }
+
+    private long getPending() {
+        long pending = 0;
+        for (SimulatedUser user : this.users) {
+            synchronized (user) {
+                if (user.sentAt != 0) {
+                    pending++;
+                }
+            }
+        }
+        return pending;
+    }
+
+    private final class SimulatedUser {
+
+        private final String channel;
+        private VirtualUser user;
+        // The time the outstanding command was sent at, or 0 for none
+        private long sentAt;
+        private long quietUntil = System.nanoTime();
+
+        private SimulatedUser(String channel) {
+            this.channel = channel;
+        }
+
+        private void receive(IrcMessage message) {
+            if (!message.getCommand().equals("PRIVMSG") && !message.getCommand().equals("NOTICE")) {
+                return;
+            }
+            if (!message.getNick().map(LoadGenerator.this.bot::equalsIgnoreCase).orElse(false)) {
+                return;
+            }
+
+            // Replies in the channel are addressed to the user, replies to the user are sent to them directly
+            final String target = message.getParam(0).orElse("");
+            if (target.startsWith("#") && !message.getParam(1).orElse("").startsWith(this.user.getNick() + ":")) {
+                return;
+            }
+
+            final long sentAt;
+            synchronized (this) {
+                sentAt = this.sentAt;
+                this.sentAt = 0;
+            }
+            if (sentAt == 0) {
+                LoadGenerator.this.unmatched.incrementAndGet();
+                return;
+            }
+
+            LoadGenerator.this.responses.incrementAndGet();
+            if (LoadGenerator.this.measuring) {
+                LoadGenerator.this.commandLatency.record(System.nanoTime() - sentAt);
+            }
+        }
+
+        /**
+         * Marks a command as sent now, should the user be free to send one.
+         *
+         * @return {@code True} if the user may send a command
+         */
+        private synchronized boolean await(long now) {
+            if (this.sentAt != 0 || now - this.quietUntil < 0) {
+                return false;
+            }
+            this.sentAt = now;
+            return true;
+        }
+
+        private synchronized void expire(long now) {
+            if (this.sentAt != 0 && now - this.sentAt > LoadGenerator.this.timeout) {
+                this.sentAt = 0;
+                this.quietUntil = now + LoadGenerator.this.timeout;
+                LoadGenerator.this.timedOut.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Jamie Mansfield
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package uk.jamierocks.mana.carbon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static uk.jamierocks.mana.carbon.util.Constants.CONFIG_PATH;
+import static uk.jamierocks.mana.carbon.util.Constants.OPS_PATH;
+
+import com.google.common.collect.ImmutableList;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.gson.GsonConfigurationLoader;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.jamierocks.mana.carbon.testing.irc.EmbeddedIrcServer;
+import uk.jamierocks.mana.carbon.testing.irc.IrcMessage;
+import uk.jamierocks.mana.carbon.testing.irc.VirtualUser;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Runs Carbon, as {@link Main} does, against an {@link EmbeddedIrcServer},
+ * and talks to it as a user would.
+ *
+ * <p>Carbon's configuration and ops file are written to the working
+ * directory before it starts, pointing it at the embedded server.</p>
+ *
+ * @author Jamie Mansfield
+ * @since 2.0.0
+ */
+public class CarbonIntegrationTest {
+
+    private static final String BOT = "Carbon";
+    private static final String CHANNEL = "#carbon";
+    private static final long TIMEOUT = 30;
+
+    private static final BlockingQueue<IrcMessage> received = new LinkedBlockingQueue<>();
+    private static final List<IOException> errors = new CopyOnWriteArrayList<>();
+    private static EmbeddedIrcServer server;
+    private static VirtualUser user;
+
+    @BeforeClass
+    public static void startCarbon() throws Exception {
+        server = new EmbeddedIrcServer(0);
+        server.setErrorListener(errors::add);
+        server.start(5, TimeUnit.SECONDS);
+        user = server.createUser("alice", received::add);
+        user.join(CHANNEL);
+
+        writeConfiguration(server.getPort());
+        writeOps(user.getNick() + '!' + user.getUser() + '@' + user.getHost());
+
+        Main.main(new String[0]);
+        assertTrue(BOT + " did not connect", server.awaitUser(BOT, TIMEOUT, TimeUnit.SECONDS));
+        server.join(BOT, CHANNEL);
+    }
+
+    @AfterClass
+    public static void stopServer() throws IOException {
+        server.close();
+        assertEquals("The server failed to accept connections", Collections.emptyList(), errors);
+    }
+
+    @Test
+    public void helpIsSentToTheUser() throws InterruptedException {
+        user.sendMessage(CHANNEL, ".help");
+
+        final IrcMessage reply = await(message -> message.getCommand().equals("PRIVMSG")
+                && message.getParam(0).orElse("").equals(user.getNick()));
+        assertTrue(reply.getParam(1).orElse(""), reply.getParam(1).orElse("").startsWith("Commands"));
+        // Registered by the invite module
+        assertTrue(reply.getParam(1).orElse(""), reply.getParam(1).orElse("").contains("join"));
+    }
+
+    @Test
+    public void unknownCommandIsAnsweredInTheChannel() throws InterruptedException {
+        user.sendMessage(CHANNEL, ".hepl");
+
+        final IrcMessage reply = await(message -> message.getCommand().equals("PRIVMSG")
+                && message.getParam(0).orElse("").equals(CHANNEL));
+        assertEquals("alice: Unknown command, did you mean .help?", reply.getParam(1).orElse(""));
+    }
+
+    @Test
+    public void inviteFromAdministratorIsAccepted() throws InterruptedException {
+        user.join("#invited");
+        assertTrue(user.invite(BOT, "#invited"));
+
+        await(message -> message.getCommand().equals("JOIN") && message.getParam(0).orElse("").equals("#invited"));
+    }
+
+    /**
+     * Waits for a message from Carbon matching the given filter, skipping
+     * any others.
+     */
+    private static IrcMessage await(Predicate<IrcMessage> filter) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime()) {
+            final IrcMessage message = received.poll(remaining, TimeUnit.NANOSECONDS);
+            if (message != null && message.getNick().map(BOT::equalsIgnoreCase).orElse(false) && filter.test(message)) {
+                return message;
+            }
+        }
+        throw new AssertionError("No reply from " + BOT + " within " + TIMEOUT + " seconds");
+    }
+
+    private static void writeConfiguration(int port) throws IOException {
+        final ConfigurationNode node = HoconConfigurationLoader.builder()
+                .setURL(Carbon.class.getResource("/carbon.conf"))
+                .build()
+                .load();
+
+        final ConfigurationNode network = node.getNode("irc", "networks").getChildrenList().get(0);
+        network.getNode("id").setValue("embedded");
+        network.getNode("host").setValue("127.0.0.1");
+        network.getNode("port").setValue(port);
+        network.getNode("secure").setValue(false);
+        network.getNode("username").setValue(BOT);
+        network.getNode("nickname").setValue(BOT);
+
+        // Replies shouldn't wait on the outbound rate limit, nor metrics be exported
+        node.getNode("irc", "outbound", "rate").setValue(100);
+        node.getNode("metrics", "jmx").setValue(false);
+
+        // Absolute, as the loader writes through a temporary file beside it
+        HoconConfigurationLoader.builder().setPath(CONFIG_PATH.toAbsolutePath()).build().save(node);
+    }
+
+    private static void writeOps(String administrator) throws IOException {
+        final GsonConfigurationLoader loader = GsonConfigurationLoader.builder()
+                .setPath(OPS_PATH.toAbsolutePath())
+                .build();
+        loader.save(loader.createEmptyNode().setValue(ImmutableList.of(administrator)));
+    }
+}